@@ -0,0 +1,85 @@
+package benchmark;
+
+import java.awt.geom.Point2D;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import geometry.Bisector;
+import geometry.ConicKernel;
+import geometry.HilbertGeometry;
+import geometry.Voronoi;
+import trapmap.Segment;
+
+/*
+ * Conic coefficients of the bisector of two random sites, for the sector
+ * bounded by four edges of the domain, intersection of two bisectors, and
+ * intersection of a bisector with a fan of theta rays.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BisectorBenchmark {
+	/* Number of theta rays in the fan */
+	private static final int RAYS = 64;
+
+	@Param({ "8", "64" })
+	public int hullSize;
+
+	private Point2D.Double site1, site2;
+	private Segment edge1, edge2, edge3, edge4;
+	private final double[] conic1 = new double[6], conic2 = new double[6];
+	private final double[] points = new double[8];
+	private double[] rays;
+	private final double[] rayPoints = new double[4 * RAYS];
+	private final int[] rayIndex = new int[2 * RAYS];
+
+	@Setup
+	public void setup() {
+		Random random = new Random(Domains.SEED);
+		HilbertGeometry geometry = Domains.randomDomain(this.hullSize, random);
+		Point2D.Double[] sites = Domains.randomPoints(geometry, 3, random);
+		Segment[] edges = Domains.hullEdges(geometry);
+		int n = edges.length;
+		this.site1 = sites[0];
+		this.site2 = sites[1];
+		this.edge1 = edges[0];
+		this.edge2 = edges[n / 2];
+		this.edge3 = edges[n / 4];
+		this.edge4 = edges[3 * n / 4];
+		new Bisector(this.site1, this.site2, this.edge1, this.edge2, this.edge3, this.edge4)
+				.getCoefficients(this.conic1);
+		new Bisector(this.site1, sites[2], this.edge1, this.edge2, this.edge2, this.edge1)
+				.getCoefficients(this.conic2);
+		this.rays = Voronoi.thetaRayLines(this.site1, RAYS);
+	}
+
+	@Benchmark
+	public Bisector computeBisector() {
+		return new Bisector(this.site1, this.site2, this.edge1, this.edge2, this.edge3, this.edge4);
+	}
+
+	@Benchmark
+	public int intersectBisectors() {
+		return ConicKernel.intersectConics(this.conic1, this.conic2, this.points);
+	}
+
+	@Benchmark
+	public int intersectThetaRays() {
+		return ConicKernel.intersectLines(this.conic1, this.rays, RAYS, this.rayPoints, this.rayIndex);
+	}
+}
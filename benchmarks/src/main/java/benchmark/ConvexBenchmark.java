@@ -0,0 +1,51 @@
+package benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import geometry.Convex;
+
+/*
+ * Construction of a domain from a cloud of control points spread around the
+ * center of the benchmark domains.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConvexBenchmark {
+	@Param({ "10000", "1000000" })
+	public int pointCount;
+
+	private double[] xs, ys;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(Domains.SEED);
+		this.xs = new double[this.pointCount];
+		this.ys = new double[this.pointCount];
+		for (int i = 0; i < this.pointCount; i++) {
+			this.xs[i] = Domains.CENTER + Domains.RADIUS * random.nextGaussian();
+			this.ys[i] = Domains.CENTER + Domains.RADIUS * random.nextGaussian();
+		}
+	}
+
+	@Benchmark
+	public Convex fromPoints() {
+		return Convex.fromPoints(this.xs, this.ys, this.pointCount);
+	}
+}
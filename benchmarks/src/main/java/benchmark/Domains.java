@@ -0,0 +1,63 @@
+package benchmark;
+
+import java.awt.geom.Point2D;
+import java.util.LinkedList;
+import java.util.Random;
+
+import geometry.Convex;
+import geometry.HilbertGeometry;
+import trapmap.Segment;
+
+/*
+ * Seeded random inputs shared by the benchmarks, so that every run measures
+ * the same domains and sites.
+ */
+final class Domains {
+	static final long SEED = 20240601L;
+	/* Domains are inscribed in a circle of this radius around CENTER */
+	static final double RADIUS = 300;
+	static final double CENTER = 400;
+
+	private Domains() {
+	}
+
+	/*
+	 * Random convex domain with given number of vertices: the vertices are on a
+	 * circle, so that all of them are on the hull, at angles jittered from a
+	 * regular polygon so that the domain stays round.
+	 */
+	static HilbertGeometry randomDomain(int hullSize, Random random) {
+		LinkedList<Point2D.Double> points = new LinkedList<Point2D.Double>();
+		for (int i = 0; i < hullSize; i++) {
+			double angle = 2 * Math.PI * (i + 0.8 * random.nextDouble()) / hullSize;
+			points.add(new Point2D.Double(CENTER + RADIUS * Math.cos(angle), CENTER + RADIUS * Math.sin(angle)));
+		}
+		HilbertGeometry geometry = new HilbertGeometry();
+		geometry.convex = new Convex(points);
+		return geometry;
+	}
+
+	/* Random points inside the domain */
+	static Point2D.Double[] randomPoints(HilbertGeometry geometry, int count, Random random) {
+		Point2D.Double[] points = new Point2D.Double[count];
+		for (int i = 0; i < count;) {
+			Point2D.Double p = new Point2D.Double(CENTER + RADIUS * (2 * random.nextDouble() - 1),
+					CENTER + RADIUS * (2 * random.nextDouble() - 1));
+			if (geometry.isInConvex(p)) {
+				points[i++] = p;
+			}
+		}
+		return points;
+	}
+
+	/* Edges of the domain, in hull order */
+	static Segment[] hullEdges(HilbertGeometry geometry) {
+		Point2D.Double[] hull = geometry.convex.convexHull;
+		int n = hull.length - 1;
+		Segment[] edges = new Segment[n];
+		for (int i = 0; i < n; i++) {
+			edges[i] = new Segment((float) hull[i].x, (float) hull[i].y, (float) hull[i + 1].x, (float) hull[i + 1].y);
+		}
+		return edges;
+	}
+}
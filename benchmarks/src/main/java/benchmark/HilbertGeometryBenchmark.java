@@ -0,0 +1,70 @@
+package benchmark;
+
+import java.awt.geom.Point2D;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import geometry.HilbertGeometry;
+
+/*
+ * Hilbert distance and domain membership, over a fixed batch of random
+ * points of the domain.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HilbertGeometryBenchmark {
+	private static final int POINTS = 1024;
+
+	@Param({ "8", "64", "512" })
+	public int hullSize;
+
+	private HilbertGeometry geometry;
+	private Point2D.Double[] points;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(Domains.SEED);
+		this.geometry = Domains.randomDomain(this.hullSize, random);
+		this.points = Domains.randomPoints(this.geometry, POINTS, random);
+	}
+
+	/* Distances between consecutive points of the batch */
+	@Benchmark
+	@OperationsPerInvocation(POINTS)
+	public void distance(Blackhole blackhole) {
+		for (int i = 0; i < POINTS; i++) {
+			Point2D.Double p = this.points[i];
+			Point2D.Double q = this.points[(i + 1) % POINTS];
+			blackhole.consume(this.geometry.distance(p.x, p.y, q.x, q.y));
+		}
+	}
+
+	/* Membership of the points of the batch, every other one shifted by the radius of the domain */
+	@Benchmark
+	@OperationsPerInvocation(POINTS)
+	public void isInConvex(Blackhole blackhole) {
+		for (int i = 0; i < POINTS; i++) {
+			Point2D.Double p = this.points[i];
+			double shift = ((i & 1) == 0) ? 0 : Domains.RADIUS;
+			blackhole.consume(this.geometry.convex.isInConvex(p.x + shift, p.y));
+		}
+	}
+}
@@ -0,0 +1,121 @@
+package benchmark;
+
+import java.awt.geom.Point2D;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import geometry.FlatKdTree;
+import geometry.HilbertGeometry;
+import geometry.KdTree;
+
+/*
+ * Insertion into the k-d tree used as the vertex graph of the sectors, and
+ * lookup of the inserted points. Bulk building and k-nearest queries compare
+ * KdTree with FlatKdTree.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KdTreeBenchmark {
+	private static final int NEIGHBOURS = 8;
+	private static final double RADIUS = 20;
+
+	@Param({ "100", "1000", "10000" })
+	public int siteCount;
+
+	private KdTree.XYZPoint[] points;
+	private KdTree<KdTree.XYZPoint> tree;
+	private FlatKdTree<KdTree.XYZPoint> flatTree;
+	private FlatKdTree.Neighbours neighbours;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(Domains.SEED);
+		HilbertGeometry geometry = Domains.randomDomain(64, random);
+		Point2D.Double[] sites = Domains.randomPoints(geometry, this.siteCount, random);
+		this.points = new KdTree.XYZPoint[this.siteCount];
+		for (int i = 0; i < this.siteCount; i++) {
+			this.points[i] = new KdTree.XYZPoint(sites[i].x, sites[i].y);
+		}
+		this.tree = new KdTree<KdTree.XYZPoint>();
+		for (KdTree.XYZPoint p : this.points) {
+			this.tree.add(p);
+		}
+		this.flatTree = new FlatKdTree<KdTree.XYZPoint>(Arrays.asList(this.points));
+		this.neighbours = new FlatKdTree.Neighbours(NEIGHBOURS);
+	}
+
+	/* Builds a tree by inserting all points */
+	@Benchmark
+	public KdTree<KdTree.XYZPoint> add() {
+		KdTree<KdTree.XYZPoint> tree = new KdTree<KdTree.XYZPoint>();
+		for (KdTree.XYZPoint p : this.points) {
+			tree.add(p);
+		}
+		return tree;
+	}
+
+	/* Looks up every point of the tree */
+	@Benchmark
+	public void getNode(Blackhole blackhole) {
+		for (KdTree.XYZPoint p : this.points) {
+			blackhole.consume(KdTree.getNode(this.tree, p));
+		}
+	}
+
+	/* Builds a balanced tree from all points at once */
+	@Benchmark
+	public KdTree<KdTree.XYZPoint> build() {
+		return new KdTree<KdTree.XYZPoint>(Arrays.asList(this.points), 2);
+	}
+
+	@Benchmark
+	public FlatKdTree<KdTree.XYZPoint> buildFlat() {
+		return new FlatKdTree<KdTree.XYZPoint>(Arrays.asList(this.points));
+	}
+
+	/* Finds the nearest neighbours of every point of the tree */
+	@Benchmark
+	public void nearestNeighbourSearch(Blackhole blackhole) {
+		for (KdTree.XYZPoint p : this.points) {
+			blackhole.consume(this.tree.nearestNeighbourSearch(NEIGHBOURS, p));
+		}
+	}
+
+	@Benchmark
+	public void nearestFlat(Blackhole blackhole) {
+		for (KdTree.XYZPoint p : this.points) {
+			blackhole.consume(this.flatTree.nearest(p.getX(), p.getY(), this.neighbours));
+		}
+	}
+
+	/* Counts the points near every point of the tree */
+	@Benchmark
+	public int radiusSearch() {
+		int[] count = new int[1];
+		for (KdTree.XYZPoint p : this.points) {
+			this.tree.radiusSearch(p.getX(), p.getY(), RADIUS, q -> {
+				count[0]++;
+				return true;
+			});
+		}
+		return count[0];
+	}
+}
@@ -0,0 +1,59 @@
+package benchmark;
+
+import java.awt.geom.Point2D;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import geometry.HilbertGeometry;
+import geometry.KdTree;
+import geometry.SectorGraph;
+import geometry.Voronoi;
+
+/*
+ * Graph of the spokes of two sites, subdivided by their crossings and by the
+ * hull edges, as a KdTree of adjacency lists and as a doubly-connected edge
+ * list.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpokeBenchmark {
+	@Param({ "8", "64", "256" })
+	public int hullSize;
+
+	private Voronoi voronoi;
+	private Point2D.Double[] sites;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(Domains.SEED);
+		HilbertGeometry geometry = Domains.randomDomain(this.hullSize, random);
+		this.sites = Domains.randomPoints(geometry, 2, random);
+		this.voronoi = new Voronoi(geometry);
+	}
+
+	@Benchmark
+	public KdTree<KdTree.XYZPoint> constructGraph() {
+		return this.voronoi.constructGraph(this.sites[0], this.sites[1]);
+	}
+
+	@Benchmark
+	public SectorGraph constructSectorGraph() {
+		return this.voronoi.constructSectorGraph(this.sites[0], this.sites[1]);
+	}
+}
@@ -0,0 +1,113 @@
+package benchmark;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import geometry.HilbertGeometry;
+import trapmap.Segment;
+import trapmap.TrapMap;
+
+/*
+ * Construction of a trapezoidal map and point location in it. The segments
+ * are the edges of the domain and one random segment per site, each in its
+ * own cell of a grid so that segments do not cross.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrapMapBenchmark {
+	private static final int QUERIES = 1024;
+
+	@Param({ "8", "64" })
+	public int hullSize;
+
+	@Param({ "100", "1000" })
+	public int siteCount;
+
+	private List<Segment> segments;
+	private TrapMap map;
+	private Point2D.Double[] queries;
+	private double[] queryX, queryY;
+	private int[] ids;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(Domains.SEED);
+		HilbertGeometry geometry = Domains.randomDomain(this.hullSize, random);
+		this.segments = new ArrayList<Segment>(Arrays.asList(Domains.hullEdges(geometry)));
+		// twice as many grid cells as segments, so that enough of them are in the domain
+		int grid = (int) Math.ceil(Math.sqrt(2 * this.siteCount));
+		double cell = 2 * Domains.RADIUS / grid;
+		double left = Domains.CENTER - Domains.RADIUS, top = Domains.CENTER - Domains.RADIUS;
+		boolean[] used = new boolean[grid * grid];
+		for (int added = 0; added < this.siteCount;) {
+			int i = random.nextInt(grid), j = random.nextInt(grid);
+			float x1 = (float) (left + (i + 0.1 + 0.8 * random.nextDouble()) * cell);
+			float y1 = (float) (top + (j + 0.1 + 0.8 * random.nextDouble()) * cell);
+			float x2 = (float) (left + (i + 0.1 + 0.8 * random.nextDouble()) * cell);
+			float y2 = (float) (top + (j + 0.1 + 0.8 * random.nextDouble()) * cell);
+			if (!used[i * grid + j] && geometry.convex.isInConvex(x1, y1) && geometry.convex.isInConvex(x2, y2)) {
+				used[i * grid + j] = true;
+				this.segments.add(new Segment(x1, y1, x2, y2));
+				added++;
+			}
+		}
+		this.map = new TrapMap(this.segments);
+		this.queries = Domains.randomPoints(geometry, QUERIES, random);
+		this.queryX = new double[QUERIES];
+		this.queryY = new double[QUERIES];
+		for (int i = 0; i < QUERIES; i++) {
+			this.queryX[i] = this.queries[i].x;
+			this.queryY[i] = this.queries[i].y;
+		}
+		this.ids = new int[QUERIES];
+	}
+
+	@Benchmark
+	public TrapMap construct() {
+		return new TrapMap(this.segments);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(QUERIES)
+	public void findNearestTrapezoid(Blackhole blackhole) {
+		for (Point2D.Double q : this.queries) {
+			blackhole.consume(this.map.findNearestTrapezoid(q.x, q.y));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(QUERIES)
+	public int[] findContainingTrapezoidIds() {
+		this.map.findContainingTrapezoidIds(this.queryX, this.queryY, QUERIES, this.ids, false);
+		return this.ids;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(QUERIES)
+	public int[] findContainingTrapezoidIdsSorted() {
+		this.map.findContainingTrapezoidIds(this.queryX, this.queryY, QUERIES, this.ids, true);
+		return this.ids;
+	}
+}
@@ -0,0 +1,71 @@
+package benchmark;
+
+import java.awt.geom.Point2D;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import geometry.HilbertGeometry;
+import geometry.Voronoi;
+
+/*
+ * Full computation of the Voronoi raster, on the default stride.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VoronoiBenchmark {
+	@Param({ "8", "64" })
+	public int hullSize;
+
+	@Param({ "10", "100", "1000" })
+	public int siteCount;
+
+	@Param({ "true", "false" })
+	public boolean parallel;
+
+	private HilbertGeometry geometry;
+	private Point2D.Double[] sites;
+	private Voronoi voronoi;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(Domains.SEED);
+		this.geometry = Domains.randomDomain(this.hullSize, random);
+		this.sites = Domains.randomPoints(this.geometry, this.siteCount, random);
+	}
+
+	/*
+	 * A new diagram for every call: computeVoronoi keeps the raster up to date
+	 * incrementally, and would not recompute it on the same sites.
+	 */
+	@Setup(Level.Invocation)
+	public void newDiagram() {
+		this.voronoi = new Voronoi(this.geometry);
+		this.voronoi.setParallelRaster(this.parallel);
+		for (Point2D.Double p : this.sites) {
+			this.voronoi.addPoint(p);
+		}
+	}
+
+	@Benchmark
+	public Voronoi computeVoronoi() {
+		this.voronoi.computeVoronoi();
+		return this.voronoi;
+	}
+}
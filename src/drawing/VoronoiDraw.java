@@ -2,8 +2,10 @@ package drawing;
 
 import geometry.KdTree;
 import geometry.Point3d;
+import geometry.SiteStore;
 import geometry.Voronoi;
 import geometry.VoronoiCell;
+import geometry.VoronoiRaster;
 
 import java.awt.geom.Point2D;
 import java.util.ArrayList;
@@ -18,7 +20,8 @@ import java.io.FileReader;
 public class VoronoiDraw {
 	private DrawingApplet frame;
 	private Voronoi voronoi;
-	private LinkedList<Point3d> colors = new LinkedList<Point3d>();
+	/* Color of each center point, by stable site id */
+	private HashMap<Integer, Point3d> colors = new HashMap<Integer, Point3d>();
 	private final static Random RANDOM_INT = new Random();
 	protected boolean hasChanged = false;
 
@@ -44,7 +47,8 @@ public class VoronoiDraw {
 
 	public void addPoint(Point2D.Double p) {
 		this.voronoi.addPoint(p);
-		this.colors.add(new Point3d(RANDOM_INT.nextInt(255), RANDOM_INT.nextInt(255), RANDOM_INT.nextInt(255)));
+		int id = this.voronoi.sites.idAt(this.voronoi.sites.size() - 1);
+		this.colors.put(id, new Point3d(RANDOM_INT.nextInt(255), RANDOM_INT.nextInt(255), RANDOM_INT.nextInt(255)));
 		this.hasChanged = true;
 	}
 
@@ -53,7 +57,7 @@ public class VoronoiDraw {
 	}
 
 	public int numPoints() {
-		return this.voronoi.centerPoints.size();
+		return this.voronoi.numPoints();
 	}
 
 	public Point2D.Double getPoint(int index) {
@@ -63,24 +67,21 @@ public class VoronoiDraw {
 	public void removePoint(Point2D.Double p) {
 		int i = this.findPoint(p);
 		if (i >= 0) {
+			this.colors.remove(this.voronoi.sites.idAt(i));
 			this.voronoi.removePoint(p);
-			this.colors.remove(i);
 		}
 		this.hasChanged = true;
 	}
 
 	public void movePoint(int index, Point2D.Double p) {
 		this.voronoi.movePoint(index, p);
-		Point3d colors = this.colors.get(index);
-		this.colors.remove(index);
-		this.colors.add(colors);
 		this.hasChanged = true;
 		this.computeVoronoi();
 	}
 
 	public void reset() {
 		this.voronoi.reset();
-		this.colors = new LinkedList<Point3d>();
+		this.colors = new HashMap<Integer, Point3d>();
 		this.hasChanged = true;
 	}
 
@@ -112,21 +113,37 @@ public class VoronoiDraw {
 
 	public void drawPoints() {
 		synchronized (this) {
-			int N = this.voronoi.centerPoints.size();
+			SiteStore sites = this.voronoi.sites;
+			int N = sites.size();
 			if (N == 0)
 				return;
+			VoronoiRaster raster = this.voronoi.raster;
+			if (raster != null) {
+				for (int j = 0; j < raster.getHeight(); j++) {
+					for (int i = 0; i < raster.getWidth(); i++) {
+						int siteIndex = raster.label(i, j);
+						// outside of the domain, or labelled before a site was removed
+						if (siteIndex < 0 || siteIndex >= N)
+							continue;
+						Point3d color = colorOf(siteIndex);
+						this.frame.fill((float) color.x, (float) color.y, (float) color.z);
+						this.frame.stroke((float) color.x, (float) color.y, (float) color.z);
+						this.frame.ellipse(raster.x(i), raster.y(j), 1, 1);
+					}
+				}
+			}
 			for (Point2D.Double p : this.voronoi.voronoiPoints.keySet()) {
 				int siteIndex = this.voronoi.voronoiPoints.get(p);
 				Point3d color;
 				// if our selected point is equidistant between two sites
-				if (siteIndex == this.voronoi.centerPoints.size()) {
+				if (siteIndex == N) {
 					color = new Point3d(0, 0, 0);
 					// System.out.println("Found equidistant points");
 					this.frame.fill((float) color.x, (float) color.y, (float) color.z);
 					this.frame.stroke((float) color.x, (float) color.y, (float) color.z);
 					this.frame.ellipse((float) p.x, (float) p.y, 1, 1);
 				} else {
-					color = this.colors.get(siteIndex);
+					color = colorOf(siteIndex);
 					this.frame.fill((float) color.x, (float) color.y, (float) color.z);
 					this.frame.stroke((float) color.x, (float) color.y, (float) color.z);
 					this.frame.ellipse((float) p.x, (float) p.y, 1, 1);
@@ -135,17 +152,30 @@ public class VoronoiDraw {
 			}
 
 			for (int i = 0; i < N; i++) {
-				Point3d color = this.colors.get(i);
-				Point2D.Double p = this.voronoi.centerPoints.get(i);
+				Point3d color = colorOf(i);
 				this.frame.fill((float) color.x, (float) color.y, (float) color.z);
 				this.frame.stroke(255, 255, 255);
-				this.frame.ellipse((float) p.x, (float) p.y, 10, 10);
+				this.frame.ellipse((float) sites.getX(i), (float) sites.getY(i), 10, 10);
 			}
 		}
 		this.frame.fill(0, 0, 0);
 		this.frame.stroke(255, 255, 255);
 	}
 
+	/*
+	 * Color of the center point of given index. Sites added directly to the
+	 * Voronoi object get a color the first time they are drawn.
+	 */
+	private Point3d colorOf(int siteIndex) {
+		int id = this.voronoi.sites.idAt(siteIndex);
+		Point3d color = this.colors.get(id);
+		if (color == null) {
+			color = new Point3d(RANDOM_INT.nextInt(255), RANDOM_INT.nextInt(255), RANDOM_INT.nextInt(255));
+			this.colors.put(id, color);
+		}
+		return color;
+	}
+
 	public void colorPoint(Point2D.Double p) {
 		int nearestPoint = this.voronoi.nearestPoint(p);
 		this.voronoi.voronoiPoints.put(p, nearestPoint);
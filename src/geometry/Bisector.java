@@ -8,8 +8,6 @@ import geometry.Point3d;
 
 import trapmap.Segment;
 
-import Jama.Matrix;
-
 /*
  * Class to store bisector for some given sector
  * Notation:
@@ -26,16 +24,16 @@ public class Bisector {
 	// constants for conic; equation for conic: Ax^2 + By^2 + Cxy + Dx + Ey + F = 0
 	// FOR NEW METHOD: these coefficients are for the bisector in the projected unit
 	// square
-	private Double A;
-	private Double B;
-	private Double C;
-	private Double D;
-	private Double E;
-	private Double F;
+	private double A;
+	private double B;
+	private double C;
+	private double D;
+	private double E;
+	private double F;
 
 	// other relevant constants
-	private Double K;
-	private Double s;
+	private double K;
+	private double s;
 
 	// check if constants are computed
 	private boolean constantsComputed;
@@ -108,11 +106,11 @@ public class Bisector {
 		this.computeBisector();
 	}
 
-	public Double returnA() {
+	public double returnA() {
 		return this.A;
 	}
 
-	public void setAValue(Double val) {
+	public void setAValue(double val) {
 		this.A = val;
 	}
 
@@ -134,49 +132,18 @@ public class Bisector {
 		// compute equations of relevant lines on the boundary of the convex body
 		this.computeEdgeLineEquations();
 
-		// compute constants
-		this.K = (Math.abs(line1.x * site1.x + line1.y * site1.y + line1.z)
-				/ Math.abs(line2.x * site1.x + line2.y * site1.y + line2.z))
-				* (Math.abs(line4.x * site2.x + line4.y * site2.y + line4.z)
-						/ Math.abs(line3.x * site2.x + line3.y * site2.y + line3.z));
+		// compute constants and coefficients
+		double[] lines = { line1.x, line1.y, line1.z, line2.x, line2.y, line2.z, line3.x, line3.y, line3.z, line4.x,
+				line4.y, line4.z };
+		double[] q = new double[6];
+		this.K = Bisector.computeConic(lines, 0, 1, 2, 3, site1.x, site1.y, site2.x, site2.y, q);
 		this.s = 1d;
-
-		System.out.println("-----------------------------");
-		System.out.println("Site1: " + site1);
-		System.out.println("Line1: " + line1.x + "x " + line1.y + "y " + line1.z + "z ");
-		System.out.println("Line2: " + line2.x + "x " + line2.y + "y " + line2.z + "z ");
-		System.out.println("Site2: " + site2);
-		System.out.println("Line3: " + line3.x + "x " + line3.y + "y " + line3.z + "z ");
-		System.out.println("Line4: " + line4.x + "x " + line4.y + "y " + line4.z + "z ");
-		System.out.println("-----------------------------");
-
-		if (lineDistance(line1, line3) < .00000001) {
-			System.out.println("test++++++++++++");
-			this.A = 0.0;
-			this.B = 0.0;
-			this.C = 0.0;
-			this.D = line4.x - this.K * line2.x;
-			this.E = line4.y - this.K * line2.y;
-			this.F = line4.z - this.K * line2.z;
-		} else if (lineDistance(line2, line4) < .00000001) {
-			System.out.println("test++++++++++++");
-			this.A = 0.0;
-			this.B = 0.0;
-			this.C = 0.0;
-			this.D = line1.x - this.K * line3.x;
-			this.E = line1.y - this.K * line3.y;
-			this.F = line1.z - this.K * line3.z;
-		} else {
-			this.A = line4.x * line1.x - this.K * this.s * (line3.x * line2.x);
-			this.B = line4.y * line1.y - this.K * this.s * (line3.y * line2.y);
-			this.C = line4.y * line1.x + line4.x * line1.y - this.K * this.s * (line3.y * line2.x + line3.x * line2.y);
-			this.D = line4.z * line1.x + line4.x * line1.z - this.K * this.s * (line3.z * line2.x + line3.x * line2.z);
-			this.E = line4.z * line1.y + line4.y * line1.z - this.K * this.s * (line3.z * line2.y + line3.y * line2.z);
-			this.F = line4.z * line1.z - this.K * this.s * (line3.z * line2.z);
-		}
-		System.out.println(this.A + "x^2 + " + this.B + "y^2 + " + this.C + "xy + " + this.D + "x + " + this.E + "y + "
-				+ this.F + " = 0");
-		System.out.println("-----------------------------");
+		this.A = q[0];
+		this.B = q[1];
+		this.C = q[2];
+		this.D = q[3];
+		this.E = q[4];
+		this.F = q[5];
 
 		// compute coefficients of bisector curve
 
@@ -187,6 +154,49 @@ public class Bisector {
 		this.classifyBisector();
 	}
 
+	/*
+	 * Computes the coefficients of the bisector of the sites (x1, y1) and
+	 * (x2, y2) into out[0..5], in a sector where the chords through the first
+	 * site hit the lines l1 forward and l2 backward, and the chords through the
+	 * second site the lines l3 and l4. Line i is a x + b y + c = 0 with a, b, c
+	 * in lines[3 i .. 3 i + 2]. The bisector is L4 L1 - K L3 L2 = 0, or a line
+	 * when both sites share their forward or their backward line; returns K.
+	 */
+	static double computeConic(double[] lines, int l1, int l2, int l3, int l4, double x1, double y1, double x2,
+			double y2, double[] out) {
+		int i1 = 3 * l1, i2 = 3 * l2, i3 = 3 * l3, i4 = 3 * l4;
+		double a1 = lines[i1], b1 = lines[i1 + 1], c1 = lines[i1 + 2];
+		double a2 = lines[i2], b2 = lines[i2 + 1], c2 = lines[i2 + 2];
+		double a3 = lines[i3], b3 = lines[i3 + 1], c3 = lines[i3 + 2];
+		double a4 = lines[i4], b4 = lines[i4 + 1], c4 = lines[i4 + 2];
+		double K = (Math.abs(a1 * x1 + b1 * y1 + c1) / Math.abs(a2 * x1 + b2 * y1 + c2))
+				* (Math.abs(a4 * x2 + b4 * y2 + c4) / Math.abs(a3 * x2 + b3 * y2 + c3));
+
+		if ((a1 - a3) * (a1 - a3) + (b1 - b3) * (b1 - b3) + (c1 - c3) * (c1 - c3) < .00000001) {
+			out[0] = 0.0;
+			out[1] = 0.0;
+			out[2] = 0.0;
+			out[3] = a4 - K * a2;
+			out[4] = b4 - K * b2;
+			out[5] = c4 - K * c2;
+		} else if ((a2 - a4) * (a2 - a4) + (b2 - b4) * (b2 - b4) + (c2 - c4) * (c2 - c4) < .00000001) {
+			out[0] = 0.0;
+			out[1] = 0.0;
+			out[2] = 0.0;
+			out[3] = a1 - K * a3;
+			out[4] = b1 - K * b3;
+			out[5] = c1 - K * c3;
+		} else {
+			out[0] = a4 * a1 - K * (a3 * a2);
+			out[1] = b4 * b1 - K * (b3 * b2);
+			out[2] = b4 * a1 + a4 * b1 - K * (b3 * a2 + a3 * b2);
+			out[3] = c4 * a1 + a4 * c1 - K * (c3 * a2 + a3 * c2);
+			out[4] = c4 * b1 + b4 * c1 - K * (c3 * b2 + b3 * c2);
+			out[5] = c4 * c1 - K * (c3 * c2);
+		}
+		return K;
+	}
+
 	/**
 	 * Given that the bisector coefficients are computed, determine the type of
 	 * conic the bisector is
@@ -200,24 +210,7 @@ public class Bisector {
 		 * Let -1 be when classification is not been performed Let 0 be a some type of
 		 * line Let 1 be a parabola Let 2 be a hyperbola Let 3 be a ellipse
 		 */
-
-		// determine if conic is degenerate
-		Matrix m = new Matrix(new double[] { this.A, this.B, this.D, this.B, this.C, this.E, this.D, this.E, this.F },
-				3);
-		if (m.det() < 1e-12) {
-			this.classifiction = 0;
-			return;
-		}
-
-		// conic must not be degenerate here, thus, use this equation and solve based on
-		// its value
-		double expression = Math.pow(this.C, 2) - 4 * this.A * this.B;
-		if (expression > 0)
-			this.classifiction = 2;
-		else if (expression < 0)
-			this.classifiction = 3;
-		else
-			this.classifiction = 1;
+		this.classifiction = ConicKernel.classify(this.A, this.B, this.C, this.D, this.E, this.F);
 	}
 
 	/*
@@ -319,93 +312,6 @@ public class Bisector {
 //			return - numerator / denominator;
 	}
 
-	/*
-	 * Compute discriminant for the intersection point between the bisector and a
-	 * line; this corresponds for solution of x
-	 */
-	private Double computeDiscriminantX(Point3d line) {
-		Double a = line.x;
-		Double b = line.y;
-		Double c = line.z;
-
-		// System.out.println("line: " + Util.printLineEq(new Double[] {a, b, c}));
-		Double first = Math.pow(-this.C * c * b + 2 * this.B * a * c + this.D * Math.pow(b, 2) - this.E * a * b, 2);
-		Double second = this.A * Math.pow(b, 2) - this.C * a * b + this.B * Math.pow(a, 2);
-		Double third = this.B * Math.pow(c, 2) - this.E * c * b + this.F * Math.pow(b, 2);
-
-		return first - 4 * second * third;
-	}
-
-	/*
-	 * Compute discriminant for the intersection point between the bisector and a
-	 * line; this corresponds for solution of y
-	 */
-	private Double computeDiscriminantY(Point3d line) {
-		Double a = line.x;
-		Double b = line.y;
-		Double c = line.z;
-
-		Double first = Math.pow(2 * this.A * b * c - this.C * c * a - this.D * b * a + this.E * Math.pow(a, 2), 2);
-		Double second = this.A * Math.pow(b, 2) - this.C * b * a + this.B * Math.pow(a, 2);
-		Double third = this.A * Math.pow(c, 2) - this.D * c * a + this.F * Math.pow(a, 2);
-
-		return first - 4 * second * third;
-	}
-
-	/*
-	 * Compute the x-values of any intersection points between a given line and the
-	 * bisector
-	 */
-	private Double[] intersectionBisectorLineX(Point3d line) {
-		Double[] solutions = new Double[2];
-		Double a = line.x;
-		Double b = line.y;
-		Double c = line.z;
-
-		// Double firstTerm = -(2 * this.B * a * c + this.D * Math.pow(b, 2) - this.E *
-		// a * b - this.C * c * b);
-		Double firstTerm = -(-this.C * b * c + 2 * this.B * a * c + this.D * Math.pow(b, 2) - this.E * a * b);
-		Double discriminant = this.computeDiscriminantX(line);
-		Double denominator = 2 * (this.A * Math.pow(b, 2) - this.C * a * b + this.B * Math.pow(a, 2));
-
-		solutions[0] = (firstTerm + Math.sqrt(discriminant)) / denominator;
-		solutions[1] = (firstTerm - Math.sqrt(discriminant)) / denominator;
-		if (Math.min(lineDistance(line1, line3), lineDistance(line2, line4)) < .0000000001) {// this needs to be set to
-																								// some confidence level
-																								// later
-			Point3d p = new Point3d(this.D, this.E, this.F);
-			solutions[0] = Util.lineIntersection(p, line).x;
-			solutions[1] = -100000000000000000.0;
-		}
-		return solutions;
-	}
-
-	/*
-	 * Compute the y-values of any intersection points between a given line and the
-	 * bisector
-	 */
-	private Double[] intersectionBisectorLineY(Point3d line) {
-		Double[] solutions = new Double[2];
-		Double a = line.x;
-		Double b = line.y;
-		Double c = line.z;
-
-		Double firstTerm = -(2 * this.A * b * c - this.C * c * a - this.D * b * a + this.E * Math.pow(a, 2));
-		Double discriminant = this.computeDiscriminantY(line);
-		Double denominator = 2 * (this.A * Math.pow(b, 2) - this.C * b * a + this.B * Math.pow(a, 2));
-
-		solutions[0] = (firstTerm + Math.sqrt(discriminant)) / denominator;
-		solutions[1] = (firstTerm - Math.sqrt(discriminant)) / denominator;
-		if (Math.min(lineDistance(line1, line3), lineDistance(line2, line4)) < .0000000001) {// this needs to be set to
-																								// some confidence level
-																								// later
-			Point3d p = new Point3d(this.D, this.E, this.F);
-			solutions[0] = Util.lineIntersection(p, line).y;
-			solutions[1] = -1000000000000000000.0;
-		}
-		return solutions;
-	}
-
 	/**
 	 * 
 	 * @param c
@@ -425,22 +331,14 @@ public class Bisector {
 		if (!this.constantsComputed)
 			this.computeBisector();
 
-		Double dX = this.computeDiscriminantX(line);
-		Double dY = this.computeDiscriminantY(line);
+		double[] q = new double[6];
+		double[] roots = new double[4];
+		this.getCoefficients(q);
+		int n = ConicKernel.intersectLine(q, line.x, line.y, line.z, roots);
 
 		LinkedList<Point2D.Double> intersect = new LinkedList<Point2D.Double>();
-
-		// compute the point of potential intersection
-		if (dX >= 0) {
-			Double[] solutionsX = this.intersectionBisectorLineX(line);
-			for (Double x : solutionsX)
-				intersect.add(new Point2D.Double(x, -line.x / line.y * x - line.z / line.y));
-		}
-		if (dY >= 0) {
-			Double[] solutionsY = this.intersectionBisectorLineY(line);
-			for (Double y : solutionsY)
-				intersect.add(new Point2D.Double(-line.y / line.x * y - line.z / line.x, y));
-		}
+		for (int i = 0; i < n; i++)
+			intersect.add(new Point2D.Double(roots[2 * i], roots[2 * i + 1]));
 
 		// check if the points computed above map to the same point using the conic
 		for (Point2D.Double p : intersect) {
@@ -458,107 +356,23 @@ public class Bisector {
 	}
 
 	/*
-	 * Computes an approximate solution to the intersection to two conics/bisectors
+	 * Computes the intersection points of the conics of two bisectors. Voronoi
+	 * vertices are among the intersections of the bisectors of three sites;
+	 * the points are not restricted to any sector or to the domain.
 	 */
 	public static LinkedList<Point2D.Double> computeTwoBisectorIntersection(Bisector b1, Bisector b2) {
-		// express all variables in a nice manner
-		Double A1 = b1.D;
-		Double B1 = b1.C;
-		Double C1 = b1.E;
-		Double D1 = b1.F;
-
-		Double A2 = b2.D;
-		Double B2 = b2.C;
-		Double C2 = b2.E;
-		Double D2 = b2.F;
+		double[] q1 = new double[6];
+		double[] q2 = new double[6];
+		double[] points = new double[8];
+		b1.getCoefficients(q1);
+		b2.getCoefficients(q2);
+		int n = ConicKernel.intersectConics(q1, q2, points);
 
 		// list of intersection points
 		LinkedList<Point2D.Double> intersectionPoints = new LinkedList<Point2D.Double>();
-
-		// coefficients of quadratic to solve
-		Double G1 = A1 * B2 - A2 * B1;
-		Double G2 = A1 * C2 + B2 * D1 - A2 * C1 - B1 * D2;
-		Double G3 = C2 * D1 - C1 * D2;
-
-		// compute discriminant
-		Double discriminant = Math.pow(G2, 2) - 4 * G1 * G3;
-
-		// determine if quadratic is solvable
-		if (G1 == 0 || discriminant < 0)
-			return intersectionPoints;
-
-		// if the quadratic is solvable, then solve the quadratic
-		Double x1 = (-G2 + Math.sqrt(discriminant)) / (2 * G1);
-		Double x2 = (-G2 - Math.sqrt(discriminant)) / (2 * G1);
-		Point2D.Double solution1 = new Point2D.Double(x1, b1.computeY(x1)[0]);
-		Point2D.Double solution2 = new Point2D.Double(x2, b1.computeY(x2)[0]);
-
-		// determine if solution is in the convex body
-		if ((solution1.x >= 0 && solution1.x <= 1) && (solution1.y >= 0 && solution1.y <= 1))
-			intersectionPoints.add(solution1);
-		if ((solution2.x >= 0 && solution2.x <= 1) && (solution2.y >= 0 && solution2.y <= 1))
-			intersectionPoints.add(solution2);
-
-		// return all intersection points
+		for (int i = 0; i < n; i++)
+			intersectionPoints.add(new Point2D.Double(points[2 * i], points[2 * i + 1]));
 		return intersectionPoints;
-
-		/*
-		 * // determine the coefficients of the quartic; expressed as Px^4 + Qx^3 + Rx^2
-		 * + Sx + T = 0 Double T = -16 * Math.pow(B1, 2) * Math.pow(B2, 3) * E1 * E2 *
-		 * F1 + 16 * Math.pow(B1, 3) * Math.pow(B2, 2) * Math.pow(E2, 2) * F1 + 16 *
-		 * Math.pow(B1, 2) * Math.pow(B2, 4) * Math.pow(F1, 2) + 16 * Math.pow(B1, 2) *
-		 * Math.pow(B2, 3) * Math.pow(E1, 2) * F2 - 16 * Math.pow(B1, 3) * Math.pow(B2,
-		 * 2) * E1 * E2 * F2 - 32 * Math.pow(B1, 3) * Math.pow(B2, 3) * F1 * F2 + 16 *
-		 * Math.pow(B1, 4) * Math.pow(B2, 2) * Math.pow(F2, 2);
-		 * 
-		 * Double S = 16 * Math.pow(B1, 2) * Math.pow(B2, 3) * D2 * Math.pow(E1, 2) - 16
-		 * * Math.pow(B1, 2) * Math.pow(B2, 3) * D1 * E1 * E2 - 16 * Math.pow(B1, 3) *
-		 * Math.pow(B2, 2) * D2 * E1 * E2 + 16 * Math.pow(B1, 3) * Math.pow(B2, 2) * D1
-		 * * Math.pow(E2, 2) + 32 * Math.pow(B1, 2) * Math.pow(B2, 4) * D1 * F1 - 32 *
-		 * Math.pow(B1, 3) * Math.pow(B2, 3) * D2 * F1 - 16 * Math.pow(B1, 2) *
-		 * Math.pow(B2, 3) * C2 * E1 * F1 - 16 * Math.pow(B1, 2) * Math.pow(B2, 3) * C1
-		 * * E2 * F1 + 32 * Math.pow(B1, 3) * Math.pow(B2, 2) * C2 * E2 * F1 - 32 *
-		 * Math.pow(B1, 3) * Math.pow(B2, 3) * D1 * F2 + 32 * Math.pow(B1, 4) *
-		 * Math.pow(B2, 2) * D2 * F2 + 32 * Math.pow(B1, 2) * Math.pow(B2, 3) * C1 * E1
-		 * * F2 - 16 * Math.pow(B1, 3) * Math.pow(B2, 2) * C2 * E1 * F2 - 16 *
-		 * Math.pow(B1, 3) * Math.pow(B2, 2) * C1 * E2 * F2;
-		 * 
-		 * Double R = 16 * Math.pow(B1, 2) * Math.pow(B2, 4) * Math.pow(D1, 2) - 32 *
-		 * Math.pow(B1, 3) * Math.pow(B2, 3) * D1 * D2 + 16 * Math.pow(B1, 4) *
-		 * Math.pow(B2, 2) * Math.pow(D2, 2) - 16 * Math.pow(B1, 2) * Math.pow(B2, 3) *
-		 * C2 * D1 * E1 + 32 * Math.pow(B1, 2) * Math.pow(B2, 3) * C1 * D2 * E1 - 16 *
-		 * Math.pow(B1, 3) * Math.pow(B2, 2) * C2 * D2 * E1 + 16 * A2 * Math.pow(B1, 2)
-		 * * Math.pow(B2, 3) * Math.pow(E1, 2) - 16 * Math.pow(B1, 2) * Math.pow(B2, 3)
-		 * * C1 * D1 * E2 + 32 * Math.pow(B1, 3) * Math.pow(B2, 2) * C2 * D1 * E2 - 16 *
-		 * Math.pow(B1, 3) * Math.pow(B2, 2) * C1 * D2 * E2 - 16 * A2 * Math.pow(B1, 3)
-		 * * Math.pow(B2, 2) * E1 * E2 - 16 * A1 * Math.pow(B1, 2) * Math.pow(B2, 3) *
-		 * E1 * E2 + 16 * A1 * Math.pow(B1, 3) * Math.pow(B2, 2) * Math.pow(E2, 2) - 32
-		 * * A2 * Math.pow(B1, 3) * Math.pow(B2, 3) * F1 + 32 * A1 * Math.pow(B1, 2) *
-		 * Math.pow(B2, 4) * F1 - 16 * Math.pow(B1, 2) * Math.pow(B2, 3) * C1 * C2 * F1
-		 * + 16 * Math.pow(B1, 3) * Math.pow(B2, 2) * Math.pow(C2, 2) * F1 + 32 * A2 *
-		 * Math.pow(B1, 4) * Math.pow(B2, 2) * F2 - 32 * A1 * Math.pow(B1, 3) *
-		 * Math.pow(B2, 3) * F2 + 16 * Math.pow(B1, 2) * Math.pow(B2, 3) * Math.pow(C1,
-		 * 2) * F2 - 16 * Math.pow(B1, 3) * Math.pow(B2, 2) * C1 * C2 * F2;
-		 * 
-		 * Double Q = -32 * A2 * Math.pow(B1, 3) * Math.pow(B2, 3) * D1 + 32 * A1 *
-		 * Math.pow(B1, 2) * Math.pow(B2, 4) * D1 - 16 * Math.pow(B1, 2) * Math.pow(B2,
-		 * 3) * C1 * C2 * D1 + 16 * Math.pow(B1, 3) * Math.pow(B2, 2) * Math.pow(C2, 2)
-		 * * D1 + 32 * A2 * Math.pow(B1, 4) * Math.pow(B2, 2) * D2 - 32 * A1 *
-		 * Math.pow(B1, 3) * Math.pow(B2, 3) * D2 + 16 * Math.pow(B1, 2) * Math.pow(B2,
-		 * 3) * Math.pow(C1, 2) * D2 - 16 * Math.pow(B1, 3) * Math.pow(B2, 2) * C1 * C2
-		 * * D2 + 32 * A2 * Math.pow(B1, 2) * Math.pow(B2, 3) * C1 * E1 - 16 * A2 *
-		 * Math.pow(B1, 3) * Math.pow(B2, 2) * C2 * E1 - 16 * A1 * Math.pow(B1, 2) *
-		 * Math.pow(B2, 3) * C2 * E1 - 16 * A2 * Math.pow(B1, 3) * Math.pow(B2, 2) * C1
-		 * * E2 - 16 * A1 * Math.pow(B1, 2) * Math.pow(B2, 3) * C1 * E2 + 32 * A1 *
-		 * Math.pow(B1, 3) * Math.pow(B2, 2) * C2 * E2;
-		 * 
-		 * Double P = 16 * Math.pow(A2, 2) * Math.pow(B1, 4) * Math.pow(B2, 2) - 32 * A1
-		 * * A2 * Math.pow(B1, 3) * Math.pow(B2, 3) + 16 * Math.pow(A1, 2) *
-		 * Math.pow(B1, 2) * Math.pow(B2, 4) + 16 * A2 * Math.pow(B1, 2) * Math.pow(B2,
-		 * 3) * Math.pow(C1, 2) - 16 * A2 * Math.pow(B1, 3) * Math.pow(B2, 2) * C1 * C2
-		 * - 16 * A1 * Math.pow(B1, 2) * Math.pow(B2, 3) * C1 * C2 + 16 * A1 *
-		 * Math.pow(B1, 3) * Math.pow(B2, 2) * Math.pow(C2, 2);
-		 */
 	}
 
 	public void setEndPoints(Point2D.Double p) {
@@ -600,6 +414,21 @@ public class Bisector {
 		return this.classifiction;
 	}
 
+	/*
+	 * Stores the coefficients A, B, C, D, E, F of the conic
+	 * Ax^2 + By^2 + Cxy + Dx + Ey + F = 0 in the 6 first entries of out.
+	 */
+	public void getCoefficients(double[] out) {
+		if (!this.constantsComputed)
+			this.computeBisector();
+		out[0] = this.A;
+		out[1] = this.B;
+		out[2] = this.C;
+		out[3] = this.D;
+		out[4] = this.E;
+		out[5] = this.F;
+	}
+
 	/*
 	 * Computes the coefficients of the equations of the segments on the boundary of
 	 * the convex body
@@ -780,11 +609,34 @@ public class Bisector {
 //	}
 
 	/**
-	 * Cloning method for bisector
+	 * Cloning method for bisector. The coefficients of the conic are copied
+	 * instead of being computed again; sites, edges and end points are shared.
 	 */
 	public Bisector clone() {
-		Bisector rtn = new Bisector(this.site1, this.site2, this.edge1, this.edge2, this.edge3, this.edge4,
-				this.leftEndPoint, this.rightEndPoint);
+		Bisector rtn = new Bisector();
+		rtn.A = this.A;
+		rtn.B = this.B;
+		rtn.C = this.C;
+		rtn.D = this.D;
+		rtn.E = this.E;
+		rtn.F = this.F;
+		rtn.K = this.K;
+		rtn.s = this.s;
+		rtn.constantsComputed = this.constantsComputed;
+		rtn.classifiction = this.classifiction;
+		rtn.site1 = this.site1;
+		rtn.site2 = this.site2;
+		rtn.edge1 = this.edge1;
+		rtn.edge2 = this.edge2;
+		rtn.edge3 = this.edge3;
+		rtn.edge4 = this.edge4;
+		rtn.uniqueEdges = this.uniqueEdges;
+		rtn.line1 = this.line1;
+		rtn.line2 = this.line2;
+		rtn.line3 = this.line3;
+		rtn.line4 = this.line4;
+		rtn.leftEndPoint = this.leftEndPoint;
+		rtn.rightEndPoint = this.rightEndPoint;
 		return rtn;
 	}
 
@@ -0,0 +1,105 @@
+package geometry;
+
+import java.awt.geom.Point2D;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import trapmap.Segment;
+
+/*
+ * Bounded cache of the bisectors of two sites in a sector, keyed by the sites
+ * and the four edges of the domain that define the sector. The least recently
+ * used bisector is evicted once the cache is full.
+ *
+ * Bisectors are mutable (end points, A coefficient), so the cache keeps its
+ * own copy of each bisector and hands out copies of it.
+ */
+class BisectorCache {
+	static final int DEFAULT_CAPACITY = 1024;
+
+	private final LinkedHashMap<Key, Bisector> bisectors;
+
+	BisectorCache() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	BisectorCache(final int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Cache capacity must be positive: " + capacity);
+		}
+		this.bisectors = new LinkedHashMap<Key, Bisector>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Bisector> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	int size() {
+		return this.bisectors.size();
+	}
+
+	void clear() {
+		this.bisectors.clear();
+	}
+
+	/*
+	 * Gives a copy of the bisector of site1 and site2 for the given edges,
+	 * computing it on the first request.
+	 */
+	Bisector get(Point2D.Double site1, Point2D.Double site2, Segment edge1, Segment edge2, Segment edge3,
+			Segment edge4) {
+		Key key = new Key(site1, site2, edge1, edge2, edge3, edge4);
+		Bisector b = this.bisectors.get(key);
+		if (b == null) {
+			b = new Bisector(site1, site2, edge1, edge2, edge3, edge4);
+			this.bisectors.put(key, b);
+		}
+		return b.clone();
+	}
+
+	private static final class Key {
+		final double x1, y1, x2, y2;
+		final Segment edge1, edge2, edge3, edge4;
+		final int hash;
+
+		Key(Point2D.Double site1, Point2D.Double site2, Segment edge1, Segment edge2, Segment edge3, Segment edge4) {
+			this.x1 = site1.x;
+			this.y1 = site1.y;
+			this.x2 = site2.x;
+			this.y2 = site2.y;
+			this.edge1 = edge1;
+			this.edge2 = edge2;
+			this.edge3 = edge3;
+			this.edge4 = edge4;
+			int h = Double.hashCode(this.x1);
+			h = 31 * h + Double.hashCode(this.y1);
+			h = 31 * h + Double.hashCode(this.x2);
+			h = 31 * h + Double.hashCode(this.y2);
+			h = 31 * h + edge1.hashCode();
+			h = 31 * h + edge2.hashCode();
+			h = 31 * h + edge3.hashCode();
+			h = 31 * h + edge4.hashCode();
+			this.hash = h;
+		}
+
+		@Override
+		public int hashCode() {
+			return this.hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key k = (Key) o;
+			return Double.compare(this.x1, k.x1) == 0 && Double.compare(this.y1, k.y1) == 0
+					&& Double.compare(this.x2, k.x2) == 0 && Double.compare(this.y2, k.y2) == 0
+					&& this.edge1.equals(k.edge1) && this.edge2.equals(k.edge2) && this.edge3.equals(k.edge3)
+					&& this.edge4.equals(k.edge4);
+		}
+	}
+}
@@ -0,0 +1,157 @@
+package geometry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import trapmap.Segment;
+
+/*
+ * Approximates a piece of conic by a polyline whose chords stay within a
+ * given distance of the conic.
+ *
+ * A chord PQ of the piece is refined by intersecting the conic with the
+ * normal of PQ at its midpoint M. The root closest to PQ gives the point of
+ * the piece above M, and its distance to M measures how far the chord is from
+ * the conic. Chords further than the tolerance are split at that point, so
+ * flat pieces get few vertices and strongly curved ones get many.
+ *
+ * The vertices are kept in primitive arrays that are reused from one piece to
+ * the next.
+ */
+public class BisectorTessellator {
+	/* Default distance allowed between a chord and the conic, in pixels */
+	public static final double DEFAULT_TOLERANCE = 0.25;
+	/* Chords are split at most that many times, 2^MAX_DEPTH chords per piece */
+	private static final int MAX_DEPTH = 16;
+
+	private final double tolerance;
+	private final double[] conic = new double[6];
+	private double[] xs = new double[16];
+	private double[] ys = new double[16];
+	private int size = 0;
+
+	public BisectorTessellator() {
+		this(DEFAULT_TOLERANCE);
+	}
+
+	public BisectorTessellator(double tolerance) {
+		if (!(tolerance > 0)) {
+			throw new IllegalArgumentException("Tolerance must be positive: " + tolerance);
+		}
+		this.tolerance = tolerance;
+	}
+
+	public double getTolerance() {
+		return this.tolerance;
+	}
+
+	/* Number of vertices of the last polyline */
+	public int size() {
+		return this.size;
+	}
+
+	public double getX(int index) {
+		return this.xs[index];
+	}
+
+	public double getY(int index) {
+		return this.ys[index];
+	}
+
+	/*
+	 * Direct access to the x coordinates of the vertices. Only the size first
+	 * entries are vertices, and the array is replaced when it grows.
+	 */
+	public double[] xs() {
+		return this.xs;
+	}
+
+	/* Direct access to the y coordinates, see xs() */
+	public double[] ys() {
+		return this.ys;
+	}
+
+	/*
+	 * Approximates the bisector between its end points. Returns the number of
+	 * vertices, end points included.
+	 */
+	public int tessellate(Bisector b) {
+		b.getCoefficients(this.conic);
+		return tessellate(this.conic, b.getLeftEndPoint().x, b.getLeftEndPoint().y, b.getRightEndPoint().x,
+				b.getRightEndPoint().y);
+	}
+
+	/*
+	 * Approximates the piece of the conic Ax^2 + By^2 + Cxy + Dx + Ey + F = 0,
+	 * of coefficients conic[0..5], going from (x0, y0) to (x1, y1). Returns the
+	 * number of vertices, end points included.
+	 */
+	public int tessellate(double[] conic, double x0, double y0, double x1, double y1) {
+		this.size = 0;
+		add(x0, y0);
+		refine(conic, x0, y0, x1, y1, 0);
+		return this.size;
+	}
+
+	/* Segments between consecutive vertices of the last polyline */
+	public ArrayList<Segment> toSegments() {
+		ArrayList<Segment> segments = new ArrayList<Segment>(Math.max(this.size - 1, 0));
+		for (int i = 0; i + 1 < this.size; i++) {
+			segments.add(new Segment((float) this.xs[i], (float) this.ys[i], (float) this.xs[i + 1],
+					(float) this.ys[i + 1]));
+		}
+		return segments;
+	}
+
+	/*
+	 * Appends the vertices of the chord from (x0, y0) to (x1, y1) after the
+	 * first one, which is already in the polyline.
+	 */
+	private void refine(double[] conic, double x0, double y0, double x1, double y1, int depth) {
+		double mx = 0.5 * (x0 + x1), my = 0.5 * (y0 + y1);
+		double length = Math.hypot(x1 - x0, y1 - y0);
+		if (depth < MAX_DEPTH && length > this.tolerance) {
+			double nx = (y0 - y1) / length, ny = (x1 - x0) / length;
+			double offset = normalOffset(conic, mx, my, nx, ny);
+			if (Math.abs(offset) > this.tolerance) {
+				double px = mx + offset * nx, py = my + offset * ny;
+				refine(conic, x0, y0, px, py, depth + 1);
+				refine(conic, px, py, x1, y1, depth + 1);
+				return;
+			}
+		}
+		add(x1, y1);
+	}
+
+	/*
+	 * Gives the s of smallest magnitude such that (mx, my) + s (nx, ny) is on
+	 * the conic, or 0 if the normal line does not meet the conic.
+	 */
+	private static double normalOffset(double[] conic, double mx, double my, double nx, double ny) {
+		double A = conic[0], B = conic[1], C = conic[2], D = conic[3], E = conic[4], F = conic[5];
+		// f(m + s n) = a s^2 + b s + c
+		double a = A * nx * nx + B * ny * ny + C * nx * ny;
+		double b = 2 * A * mx * nx + 2 * B * my * ny + C * (mx * ny + my * nx) + D * nx + E * ny;
+		double c = A * mx * mx + B * my * my + C * mx * my + D * mx + E * my + F;
+		if (a == 0) {
+			return (b == 0) ? 0 : -c / b;
+		}
+		double discriminant = b * b - 4 * a * c;
+		if (discriminant < 0) {
+			return 0;
+		}
+		// numerically stable roots; the smaller one in magnitude is c / q
+		double q = -0.5 * (b + Math.copySign(Math.sqrt(discriminant), b));
+		return (q == 0) ? 0 : c / q;
+	}
+
+	private void add(double x, double y) {
+		if (this.size == this.xs.length) {
+			this.xs = Arrays.copyOf(this.xs, 2 * this.size);
+			this.ys = Arrays.copyOf(this.ys, 2 * this.size);
+		}
+		this.xs[this.size] = x;
+		this.ys[this.size] = y;
+		this.size++;
+	}
+}
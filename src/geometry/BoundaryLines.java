@@ -0,0 +1,366 @@
+package geometry;
+
+import java.awt.geom.Point2D;
+
+/*
+ * Line equations of the edges of a convex hull, compiled once into flat arrays
+ * so that Hilbert distances can be evaluated without allocating.
+ *
+ * Vertices are stored counter-clockwise without the closing point. Edge i goes
+ * from vertex i to vertex i + 1 and its line a*x + b*y + c = 0 is stored at
+ * lines[3 * i], with the coefficients oriented so that a*x + b*y + c is
+ * positive inside the domain.
+ */
+public final class BoundaryLines {
+	/* Below this many vertices, edges are scanned linearly instead of searched */
+	private static final int LINEAR_SEARCH_SIZE = 16;
+	private static final double TWO_PI = 2 * Math.PI;
+
+	/* Hull this table was compiled from */
+	private final Point2D.Double[] hull;
+	/* Number of vertices (and edges) */
+	final int n;
+	/* Vertex coordinates */
+	final double[] xs, ys;
+	/* Edge lines, three coefficients per edge */
+	final double[] lines;
+	/*
+	 * Direction angles of the edges, in counter-clockwise order starting from
+	 * edge firstEdge, which has the smallest angle. The sequence is sorted.
+	 */
+	private final double[] angles;
+	private final int firstEdge;
+
+	public BoundaryLines(Point2D.Double[] hull) {
+		this.hull = hull;
+		double[] x = new double[hull.length];
+		double[] y = new double[hull.length];
+		int count = 0;
+		for (Point2D.Double p : hull) {
+			// skip repeated vertices, such as the closing point of the hull
+			if (count > 0 && x[count - 1] == p.x && y[count - 1] == p.y) {
+				continue;
+			}
+			x[count] = p.x;
+			y[count] = p.y;
+			count++;
+		}
+		while (count > 1 && x[count - 1] == x[0] && y[count - 1] == y[0]) {
+			count--;
+		}
+
+		double area = 0;
+		for (int i = 0; i < count; i++) {
+			int j = (i + 1 == count) ? 0 : i + 1;
+			area += x[i] * y[j] - x[j] * y[i];
+		}
+		this.n = count;
+		this.xs = new double[count];
+		this.ys = new double[count];
+		for (int i = 0; i < count; i++) {
+			int k = (area < 0) ? count - 1 - i : i;
+			this.xs[i] = x[k];
+			this.ys[i] = y[k];
+		}
+
+		this.lines = new double[3 * count];
+		for (int i = 0; i < count; i++) {
+			int j = (i + 1 == count) ? 0 : i + 1;
+			double ex = this.xs[j] - this.xs[i];
+			double ey = this.ys[j] - this.ys[i];
+			this.lines[3 * i] = -ey;
+			this.lines[3 * i + 1] = ex;
+			this.lines[3 * i + 2] = ey * this.xs[i] - ex * this.ys[i];
+		}
+
+		int smallest = 0;
+		double[] edgeAngles = new double[count];
+		for (int i = 0; i < count; i++) {
+			edgeAngles[i] = Math.atan2(-this.lines[3 * i], this.lines[3 * i + 1]);
+			if (edgeAngles[i] < edgeAngles[smallest]) {
+				smallest = i;
+			}
+		}
+		this.firstEdge = smallest;
+		this.angles = new double[count];
+		for (int k = 0; k < count; k++) {
+			this.angles[k] = edgeAngles[(smallest + k) % count];
+		}
+	}
+
+	/* True if this table was compiled from the given hull array */
+	boolean isCompiledFrom(Point2D.Double[] hull) {
+		return this.hull == hull;
+	}
+
+	/* Number of vertices of the hull */
+	public int size() {
+		return this.n;
+	}
+
+	public double getX(int i) {
+		return this.xs[i];
+	}
+
+	public double getY(int i) {
+		return this.ys[i];
+	}
+
+	/*
+	 * Hilbert distance between (px, py) and (qx, qy). With p at t = 0 and q at
+	 * t = 1 on the chord through both points, the boundary is hit at t0 <= 0 and
+	 * t1 >= 1 and the distance is |ln(t0 (t1 - 1) / (t1 (t0 - 1)))|. Returns NaN
+	 * for a degenerate hull.
+	 */
+	public double distance(double px, double py, double qx, double qy) {
+		if (px == qx && py == qy) {
+			return 0;
+		}
+		if (this.n < LINEAR_SEARCH_SIZE) {
+			return clippedDistance(px, py, qx, qy);
+		}
+		double dx = qx - px;
+		double dy = qy - py;
+		long edges = crossingEdges(-dy, dx, dy * px - dx * py);
+		if (edges < 0) {
+			return clippedDistance(px, py, qx, qy);
+		}
+		double tA = hitParameter((int) (edges >>> 32), px, py, dx, dy);
+		double tB = hitParameter((int) edges, px, py, dx, dy);
+		double t0 = Math.min(tA, tB);
+		double t1 = Math.max(tA, tB);
+		return Math.abs(Math.log((t0 * (t1 - 1)) / (t1 * (t0 - 1))));
+	}
+
+	/*
+	 * Parameter t at which the line (px, py) + t (dx, dy) meets the line of
+	 * edge e.
+	 */
+	private double hitParameter(int e, double px, double py, double dx, double dy) {
+		double a = this.lines[3 * e], b = this.lines[3 * e + 1];
+		return -(a * px + b * py + this.lines[3 * e + 2]) / (a * dx + b * dy);
+	}
+
+	/*
+	 * Same as distance, clipping the chord against every edge line.
+	 */
+	private double clippedDistance(double px, double py, double qx, double qy) {
+		double dx = qx - px;
+		double dy = qy - py;
+		double t0 = Double.NEGATIVE_INFINITY;
+		double t1 = Double.POSITIVE_INFINITY;
+		for (int k = 0; k < this.lines.length; k += 3) {
+			double a = this.lines[k], b = this.lines[k + 1];
+			double den = a * dx + b * dy;
+			if (den < 0) {
+				double t = -(a * px + b * py + this.lines[k + 2]) / den;
+				if (t < t1) {
+					t1 = t;
+				}
+			} else if (den > 0) {
+				double t = -(a * px + b * py + this.lines[k + 2]) / den;
+				if (t > t0) {
+					t0 = t;
+				}
+			}
+		}
+		return Math.abs(Math.log((t0 * (t1 - 1)) / (t1 * (t0 - 1))));
+	}
+
+	/*
+	 * Decides whether (px, py) lies in the domain or on its boundary. Vertices
+	 * 1 to n - 1 are sorted by angle around vertex 0, so the wedge of the fan
+	 * containing the point is found by binary search and the point is then
+	 * tested against the single edge closing that wedge.
+	 */
+	public boolean contains(double px, double py) {
+		if (this.n < 3) {
+			return degenerateContains(px, py);
+		}
+		if (this.n < LINEAR_SEARCH_SIZE) {
+			for (int k = 0; k < this.lines.length; k += 3) {
+				if (this.lines[k] * px + this.lines[k + 1] * py + this.lines[k + 2] < 0) {
+					return false;
+				}
+			}
+			return true;
+		}
+		double x0 = this.xs[0], y0 = this.ys[0];
+		double vx = px - x0, vy = py - y0;
+		// outside of the fan, beyond edge 0 or edge n - 1
+		if (this.lines[0] * px + this.lines[1] * py + this.lines[2] < 0) {
+			return false;
+		}
+		int last = 3 * (this.n - 1);
+		if (this.lines[last] * px + this.lines[last + 1] * py + this.lines[last + 2] < 0) {
+			return false;
+		}
+		// largest k with vertex k at or clockwise of the point, seen from vertex 0
+		int lo = 1, hi = this.n - 1;
+		while (hi - lo > 1) {
+			int mid = (lo + hi) >>> 1;
+			if ((this.xs[mid] - x0) * vy - (this.ys[mid] - y0) * vx >= 0) {
+				lo = mid;
+			} else {
+				hi = mid;
+			}
+		}
+		return this.lines[3 * lo] * px + this.lines[3 * lo + 1] * py + this.lines[3 * lo + 2] >= 0;
+	}
+
+	/*
+	 * Hulls with less than three vertices have no interior: keep the sign test
+	 * of Convex.isInConvex on the raw hull array.
+	 */
+	private boolean degenerateContains(double px, double py) {
+		int N = this.hull.length;
+		int out = 0, in = 0;
+		for (int i = 0; i < N; i++) {
+			Point2D.Double a = this.hull[i];
+			Point2D.Double b = this.hull[(i + 1 == N) ? 0 : i + 1];
+			double crossProduct = (b.x - a.x) * (py - a.y) - (b.y - a.y) * (px - a.x);
+			if (crossProduct > 0) {
+				out++;
+			} else if (crossProduct < 0) {
+				in++;
+			}
+			if (out > 0 && in > 0)
+				return false;
+		}
+		return true;
+	}
+
+	/*
+	 * Gives the two points where the line a*x + b*y + c = 0 crosses the
+	 * boundary. Both points are null if the line misses the domain.
+	 */
+	public Point2D.Double[] intersectionPoints(double a, double b, double c) {
+		Point2D.Double[] points = new Point2D.Double[2];
+		long edges = crossingEdges(a, b, c);
+		if (edges >= 0) {
+			points[0] = edgePoint((int) (edges >>> 32), a, b, c);
+			points[1] = edgePoint((int) edges, a, b, c);
+		}
+		return points;
+	}
+
+	/* Point of edge e on the line a*x + b*y + c = 0 */
+	private Point2D.Double edgePoint(int e, double a, double b, double c) {
+		int f = next(e);
+		double he = a * this.xs[e] + b * this.ys[e] + c;
+		double hf = a * this.xs[f] + b * this.ys[f] + c;
+		double s = he / (he - hf);
+		return new Point2D.Double(this.xs[e] + s * (this.xs[f] - this.xs[e]), this.ys[e] + s * (this.ys[f] - this.ys[e]));
+	}
+
+	/*
+	 * Finds the two edges crossed by the line a*x + b*y + c = 0. Along the
+	 * boundary, h = a*x + b*y + c increases from its minimum vertex to its
+	 * maximum vertex and decreases back, so both vertices are found by a binary
+	 * search on the edge angles, and each crossing by a binary search on one of
+	 * the two monotone chains.
+	 *
+	 * The result packs the edge where h becomes non-negative in the upper 32
+	 * bits and the edge where h becomes non-positive in the lower 32 bits. It is
+	 * negative if the line does not cross the interior of the domain.
+	 */
+	long crossingEdges(double a, double b, double c) {
+		if (this.n < 3) {
+			return -1;
+		}
+		if (this.n < LINEAR_SEARCH_SIZE) {
+			return scanCrossingEdges(a, b, c);
+		}
+		int max = extremeVertex(a, b);
+		int min = extremeVertex(-a, -b);
+		if (!(h(min, a, b, c) < 0 && h(max, a, b, c) > 0)) {
+			// near tangent lines may fool the angular search by a vertex
+			return scanCrossingEdges(a, b, c);
+		}
+
+		// chain from min to max: last vertex with h < 0
+		int length = (max - min + this.n) % this.n;
+		int lo = 0, hi = length;
+		while (hi - lo > 1) {
+			int mid = (lo + hi) >>> 1;
+			if (h((min + mid) % this.n, a, b, c) < 0) {
+				lo = mid;
+			} else {
+				hi = mid;
+			}
+		}
+		int up = (min + lo) % this.n;
+
+		// chain from max to min: last vertex with h > 0
+		length = (min - max + this.n) % this.n;
+		lo = 0;
+		hi = length;
+		while (hi - lo > 1) {
+			int mid = (lo + hi) >>> 1;
+			if (h((max + mid) % this.n, a, b, c) > 0) {
+				lo = mid;
+			} else {
+				hi = mid;
+			}
+		}
+		int down = (max + lo) % this.n;
+
+		if (!(h(up, a, b, c) < 0 && h(next(up), a, b, c) >= 0 && h(down, a, b, c) > 0 && h(next(down), a, b, c) <= 0)) {
+			return scanCrossingEdges(a, b, c);
+		}
+		return ((long) up << 32) | down;
+	}
+
+	/* Same as crossingEdges, testing every edge */
+	private long scanCrossingEdges(double a, double b, double c) {
+		int up = -1, down = -1;
+		double hi = h(0, a, b, c);
+		for (int i = 0; i < this.n; i++) {
+			double hj = h(next(i), a, b, c);
+			if (hi < 0 && hj >= 0) {
+				up = i;
+			} else if (hi > 0 && hj <= 0) {
+				down = i;
+			}
+			hi = hj;
+		}
+		if (up < 0 || down < 0) {
+			return -1;
+		}
+		return ((long) up << 32) | down;
+	}
+
+	/*
+	 * Vertex maximizing ux*x + uy*y. Walking counter-clockwise, the edges stop
+	 * going towards u once their direction passes the angle of u plus pi/2, so
+	 * the vertex starts the first edge whose angle is past that direction.
+	 */
+	int extremeVertex(double ux, double uy) {
+		double alpha = Math.atan2(uy, ux) + Math.PI / 2;
+		double base = this.angles[0];
+		while (alpha < base) {
+			alpha += TWO_PI;
+		}
+		while (alpha >= base + TWO_PI) {
+			alpha -= TWO_PI;
+		}
+		int lo = 0, hi = this.n;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (this.angles[mid] < alpha) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return (this.firstEdge + lo) % this.n;
+	}
+
+	private int next(int i) {
+		return (i + 1 == this.n) ? 0 : i + 1;
+	}
+
+	private double h(int i, double a, double b, double c) {
+		return a * this.xs[i] + b * this.ys[i] + c;
+	}
+}
@@ -0,0 +1,450 @@
+package geometry;
+
+/*
+ * Operations on a conic Ax^2 + By^2 + Cxy + Dx + Ey + F = 0 whose coefficients
+ * are stored in the 6 first entries of a double array, in the order
+ * A, B, C, D, E, F (see Bisector.getCoefficients).
+ *
+ * Results are written to arrays given by the caller and the number of results
+ * is returned. Apart from intersectConics, which needs a few scratch arrays,
+ * none of the methods allocate. Quadratics are solved with the cancellation
+ * free formula, which keeps the root near the region of interest accurate
+ * when the leading coefficient is tiny (for instance the A = 1e-7 given to
+ * degenerate bisectors).
+ */
+public final class ConicKernel {
+	/* Classifications, same values as Bisector.getClassification */
+	public static final short DEGENERATE = 0;
+	public static final short PARABOLA = 1;
+	public static final short HYPERBOLA = 2;
+	public static final short ELLIPSE = 3;
+
+	/* Relative size of the determinant under which a conic is degenerate */
+	private static final double DEGENERATE_EPSILON = 1e-12;
+	/*
+	 * Conics are intersected in coordinates rotated by this angle, so that two
+	 * intersection points are unlikely to be on a common vertical, for instance
+	 * on axis-aligned domains
+	 */
+	private static final double ROTATION_COS = Math.cos(0.1), ROTATION_SIN = Math.sin(0.1);
+	/* Relative distance to both conics under which a point is an intersection */
+	private static final double INTERSECTION_EPSILON = 1e-7;
+	/* Relative difference under which the quadratic parts of two conics are proportional */
+	private static final double PROPORTIONAL_EPSILON = 1e-9;
+	/* Relative value of the resultant at an extremum that may hide a double root */
+	private static final double NEAR_ROOT_EPSILON = 1e-6;
+	/* Relative distance under which two roots of the resultant may be a double root */
+	private static final double CLOSE_ROOT_EPSILON = 1e-4;
+	/* Relative distance under which two intersections are the same point */
+	private static final double DUPLICATE_EPSILON = 1e-6;
+	/*
+	 * Newton steps used to polish an intersection point, and halvings of a
+	 * step. Crossings converge in a few steps, tangencies only linearly.
+	 */
+	private static final int NEWTON_STEPS = 60;
+	private static final int DAMPING_STEPS = 10;
+
+	private ConicKernel() {
+	}
+
+	/*
+	 * Value of the left hand side of the conic equation at (x, y).
+	 */
+	public static double evaluate(double[] q, double x, double y) {
+		return (q[0] * x + q[2] * y + q[3]) * x + (q[1] * y + q[4]) * y + q[5];
+	}
+
+	/*
+	 * Gradient of the left hand side at (x, y), stored in out[0] and out[1].
+	 */
+	public static void gradient(double[] q, double x, double y, double[] out) {
+		out[0] = 2 * q[0] * x + q[2] * y + q[3];
+		out[1] = 2 * q[1] * y + q[2] * x + q[4];
+	}
+
+	/*
+	 * Solves the conic for y at the given x. The roots are stored in out[0] and
+	 * out[1]; returns their number.
+	 */
+	public static int solveY(double[] q, double x, double[] out) {
+		return solveQuadratic(q[1], q[2] * x + q[4], (q[0] * x + q[3]) * x + q[5], out, 0);
+	}
+
+	/*
+	 * Solves the conic for x at the given y. The roots are stored in out[0] and
+	 * out[1]; returns their number.
+	 */
+	public static int solveX(double[] q, double y, double[] out) {
+		return solveQuadratic(q[0], q[2] * y + q[3], (q[1] * y + q[4]) * y + q[5], out, 0);
+	}
+
+	/*
+	 * Intersects the conic with the line through (x0, y0) and (x1, y1). The
+	 * points are stored as x, y pairs in out[0..3], ordered from (x0, y0)
+	 * towards (x1, y1); returns their number.
+	 */
+	public static int intersectLine(double[] q, double x0, double y0, double x1, double y1, double[] out) {
+		double dx = x1 - x0, dy = y1 - y0;
+		// f((x0, y0) + t (dx, dy)) = a t^2 + b t + c
+		double a = (q[0] * dx + q[2] * dy) * dx + q[1] * dy * dy;
+		double b = (2 * q[0] * x0 + q[2] * y0 + q[3]) * dx + (2 * q[1] * y0 + q[2] * x0 + q[4]) * dy;
+		double c = evaluate(q, x0, y0);
+		int n = solveQuadratic(a, b, c, out, 0);
+		if (n == 2 && out[1] < out[0]) {
+			double t = out[0];
+			out[0] = out[1];
+			out[1] = t;
+		}
+		// expand the parameters in place, the last one first
+		for (int i = n - 1; i >= 0; i--) {
+			double t = out[i];
+			out[2 * i] = x0 + t * dx;
+			out[2 * i + 1] = y0 + t * dy;
+		}
+		return n;
+	}
+
+	/*
+	 * Intersects the conic with the line ax + by + c = 0. The points are stored
+	 * as x, y pairs in out[0..3]; returns their number.
+	 */
+	public static int intersectLine(double[] q, double a, double b, double c, double[] out) {
+		double norm = a * a + b * b;
+		if (norm == 0) {
+			return 0;
+		}
+		// foot of the perpendicular from the origin, and the direction of the line
+		double x0 = -a * c / norm, y0 = -b * c / norm;
+		return intersectLine(q, x0, y0, x0 - b, y0 + a, out);
+	}
+
+	/*
+	 * Intersects the conic with count lines at once. Line i is a x + b y + c = 0
+	 * with a, b, c in lines[3 i .. 3 i + 2]. The points are stored as x, y
+	 * pairs in points and the line of each point in lineIndex, grouped by line
+	 * in the order of the lines; returns their number. points must have room
+	 * for 4 count values and lineIndex for 2 count values.
+	 */
+	public static int intersectLines(double[] q, double[] lines, int count, double[] points, int[] lineIndex) {
+		double A = q[0], B = q[1], C = q[2], D = q[3], E = q[4], F = q[5];
+		int n = 0;
+		for (int i = 0; i < count; i++) {
+			double a = lines[3 * i], b = lines[3 * i + 1], c = lines[3 * i + 2];
+			double norm = a * a + b * b;
+			if (norm == 0) {
+				continue;
+			}
+			// foot of the perpendicular from the origin, and the direction of the line
+			double x0 = -a * c / norm, y0 = -b * c / norm;
+			n = intersect(A, B, C, D, E, F, x0, y0, -b, a, i, points, lineIndex, n);
+		}
+		return n;
+	}
+
+	/*
+	 * Intersects the conic with the edges of the polyline of vertices (xs[i],
+	 * ys[i]), for i < count. Edge i goes from vertex i to vertex i + 1 and its
+	 * points are taken on its whole supporting line, ordered from vertex i
+	 * towards vertex i + 1. The points are stored as in intersectLines, with
+	 * the edge of each point in edgeIndex; returns their number. points must
+	 * have room for 4 (count - 1) values and edgeIndex for 2 (count - 1) values.
+	 */
+	public static int intersectEdges(double[] q, double[] xs, double[] ys, int count, double[] points,
+			int[] edgeIndex) {
+		double A = q[0], B = q[1], C = q[2], D = q[3], E = q[4], F = q[5];
+		int n = 0;
+		for (int i = 0; i + 1 < count; i++) {
+			double x0 = xs[i], y0 = ys[i];
+			n = intersect(A, B, C, D, E, F, x0, y0, xs[i + 1] - x0, ys[i + 1] - y0, i, points, edgeIndex, n);
+		}
+		return n;
+	}
+
+	/*
+	 * Appends the points of the line (x0, y0) + t (dx, dy) on the conic, in
+	 * increasing t, to points from pair n, tagged with index; returns the new
+	 * number of points.
+	 */
+	private static int intersect(double A, double B, double C, double D, double E, double F, double x0,
+			double y0, double dx, double dy, int index, double[] points, int[] indices, int n) {
+		// f((x0, y0) + t (dx, dy)) = a t^2 + b t + c
+		double a = (A * dx + C * dy) * dx + B * dy * dy;
+		double b = (2 * A * x0 + C * y0 + D) * dx + (2 * B * y0 + C * x0 + E) * dy;
+		double c = (A * x0 + C * y0 + D) * x0 + (B * y0 + E) * y0 + F;
+		int offset = 2 * n;
+		int m = solveQuadratic(a, b, c, points, offset);
+		if (m == 2 && points[offset + 1] < points[offset]) {
+			double t = points[offset];
+			points[offset] = points[offset + 1];
+			points[offset + 1] = t;
+		}
+		for (int k = m - 1; k >= 0; k--) {
+			double t = points[offset + k];
+			points[offset + 2 * k] = x0 + t * dx;
+			points[offset + 2 * k + 1] = y0 + t * dy;
+			indices[n + k] = index;
+		}
+		return n + m;
+	}
+
+	/*
+	 * Intersects two conics. The points are stored as x, y pairs in out[0..7];
+	 * returns their number, at most 4. Conics sharing a component, for
+	 * instance equal conics, give no points.
+	 *
+	 * y is eliminated with the resultant of the two conics seen as quadratics
+	 * in y, and the roots of the resulting quartic in x are found by
+	 * QuarticSolver. Each root gives back y, and the point is polished by
+	 * Newton's method on both conics, which also recovers the precision lost by
+	 * the quartic near tangencies.
+	 *
+	 * When the quadratic parts are proportional, as for two bisectors of a
+	 * site within one of its wedges, the leading terms of the resultant cancel
+	 * and its roots are meaningless. The conics then meet where q1 meets the
+	 * line q2 - mu q1, which is intersected instead.
+	 */
+	public static int intersectConics(double[] q1, double[] q2, double[] out) {
+		double norm = q1[0] * q1[0] + q1[1] * q1[1] + q1[2] * q1[2];
+		if (norm > 0) {
+			double mu = (q1[0] * q2[0] + q1[1] * q2[1] + q1[2] * q2[2]) / norm;
+			double rest = Math.abs(q2[0] - mu * q1[0]) + Math.abs(q2[1] - mu * q1[1]) + Math.abs(q2[2] - mu * q1[2]);
+			if (rest <= PROPORTIONAL_EPSILON * (Math.abs(q2[0]) + Math.abs(q2[1]) + Math.abs(q2[2]))) {
+				return intersectLine(q1, q2[3] - mu * q1[3], q2[4] - mu * q1[4], q2[5] - mu * q1[5], out);
+			}
+		}
+		double[] c1 = rotate(q1), c2 = rotate(q2);
+		// q1 = a2 y^2 + a1 y + a0 and q2 = b2 y^2 + b1 y + b0, ai and bi in x
+		double a2 = c1[1], a11 = c1[2], a10 = c1[4], a02 = c1[0], a01 = c1[3], a00 = c1[5];
+		double b2 = c2[1], b11 = c2[2], b10 = c2[4], b02 = c2[0], b01 = c2[3], b00 = c2[5];
+		// g = a2 b0 - a0 b2, h = a2 b1 - a1 b2, k = a1 b0 - a0 b1
+		double g2 = a2 * b02 - b2 * a02, g1 = a2 * b01 - b2 * a01, g0 = a2 * b00 - b2 * a00;
+		double h1 = a2 * b11 - b2 * a11, h0 = a2 * b10 - b2 * a10;
+		double k3 = a11 * b02 - a02 * b11;
+		double k2 = a11 * b01 + a10 * b02 - a01 * b11 - a02 * b10;
+		double k1 = a11 * b00 + a10 * b01 - a00 * b11 - a01 * b10;
+		double k0 = a10 * b00 - a00 * b10;
+
+		// resultant r4 x^4 + r3 x^3 + r2 x^2 + r1 x + r0
+		double r4, r3, r2, r1, r0;
+		if (Math.abs(a2) <= DEGENERATE_EPSILON && Math.abs(b2) <= DEGENERATE_EPSILON) {
+			// both conics are linear in y, the resultant is k
+			r4 = 0;
+			r3 = k3;
+			r2 = k2;
+			r1 = k1;
+			r0 = k0;
+		} else {
+			// g^2 - h k
+			r4 = g2 * g2 - h1 * k3;
+			r3 = 2 * g2 * g1 - h1 * k2 - h0 * k3;
+			r2 = g1 * g1 + 2 * g2 * g0 - h1 * k1 - h0 * k2;
+			r1 = 2 * g1 * g0 - h1 * k0 - h0 * k1;
+			r0 = g0 * g0 - h0 * k0;
+		}
+		double[] xs = new double[7];
+		int roots = QuarticSolver.solveQuartic(r4, r3, r2, r1, r0, xs);
+		/*
+		 * The rounding errors of the resultant may turn a double root, given by a
+		 * tangency or by two points on a common vertical, into a pair of complex
+		 * roots. The extrema where the resultant nearly vanishes are tried too.
+		 */
+		double[] extrema = new double[3];
+		int count = roots;
+		int extremaCount = QuarticSolver.solveCubic(4 * r4, 3 * r3, 2 * r2, r1, extrema);
+		for (int i = 0; i < extremaCount; i++) {
+			double x = extrema[i];
+			double value = (((r4 * x + r3) * x + r2) * x + r1) * x + r0;
+			double size = (((Math.abs(r4) * Math.abs(x) + Math.abs(r3)) * Math.abs(x) + Math.abs(r2)) * Math.abs(x)
+					+ Math.abs(r1)) * Math.abs(x) + Math.abs(r0);
+			if (Math.abs(value) <= NEAR_ROOT_EPSILON * size) {
+				xs[count++] = x;
+			}
+		}
+
+		double[] ys = new double[3];
+		double[] point = new double[2];
+		double[] errors = new double[4];
+		int n = 0;
+		for (int i = 0; i < count; i++) {
+			double x = xs[i];
+			/*
+			 * At a simple root, the common root of both quadratics in y is the
+			 * intersection. Near a double root it is not accurate, and when h
+			 * vanishes the quadratics are proportional and both roots of q1 may be
+			 * intersections, so the roots of q1 are tried as well.
+			 */
+			double h = h1 * x + h0;
+			boolean proportional = Math.abs(h) <= NEAR_ROOT_EPSILON * (Math.abs(h1 * x) + Math.abs(h0));
+			boolean simple = i < roots;
+			for (int k = 0; k < count && simple; k++) {
+				simple = k == i || Math.abs(xs[k] - x) > CLOSE_ROOT_EPSILON * (1 + Math.abs(x));
+			}
+			int candidates = 0;
+			if (!proportional) {
+				ys[candidates++] = -((g2 * x + g1) * x + g0) / h;
+			}
+			if (!simple || proportional) {
+				candidates += solveQuadratic(a2, a11 * x + a10, (a02 * x + a01) * x + a00, ys, candidates);
+			}
+			for (int j = 0; j < candidates; j++) {
+				point[0] = x;
+				point[1] = ys[j];
+				double error = polish(c1, c2, point);
+				if (!(error <= INTERSECTION_EPSILON * (1 + Math.abs(point[0]) + Math.abs(point[1])))) {
+					if (candidates == 1) {
+						// fall back on the roots of q1
+						candidates += solveQuadratic(a2, a11 * x + a10, (a02 * x + a01) * x + a00, ys, 1);
+					}
+					continue;
+				}
+				// back to the original coordinates
+				double px = ROTATION_COS * point[0] - ROTATION_SIN * point[1];
+				double py = ROTATION_SIN * point[0] + ROTATION_COS * point[1];
+				// several candidates may lead to the same point, keep the most accurate
+				int m = 0;
+				while (m < n && Math.abs(out[2 * m] - px) + Math.abs(out[2 * m + 1] - py) > DUPLICATE_EPSILON
+						* (1 + Math.abs(px) + Math.abs(py))) {
+					m++;
+				}
+				if (m == n && n == 4) {
+					continue;
+				}
+				if (m == n || error < errors[m]) {
+					out[2 * m] = px;
+					out[2 * m + 1] = py;
+					errors[m] = error;
+					n = Math.max(n, m + 1);
+				}
+			}
+		}
+		return n;
+	}
+
+	/*
+	 * Type of the conic: DEGENERATE, PARABOLA, HYPERBOLA or ELLIPSE.
+	 */
+	public static short classify(double[] q) {
+		return classify(q[0], q[1], q[2], q[3], q[4], q[5]);
+	}
+
+	public static short classify(double A, double B, double C, double D, double E, double F) {
+		// determinant of the symmetric matrix of the conic, scaled by 8
+		double det = 8 * A * B * F + 2 * C * D * E - 2 * A * E * E - 2 * B * D * D - 2 * F * C * C;
+		double scale = Math.max(Math.max(Math.max(Math.abs(A), Math.abs(B)), Math.max(Math.abs(C), Math.abs(D))),
+				Math.max(Math.abs(E), Math.abs(F)));
+		if (Math.abs(det) <= DEGENERATE_EPSILON * scale * scale * scale) {
+			return DEGENERATE;
+		}
+		double discriminant = C * C - 4 * A * B;
+		if (discriminant > 0) {
+			return HYPERBOLA;
+		} else if (discriminant < 0) {
+			return ELLIPSE;
+		}
+		return PARABOLA;
+	}
+
+	/*
+	 * Coefficients of the conic in coordinates rotated by the rotation angle,
+	 * that is of q(cos u - sin v, sin u + cos v), scaled to a largest
+	 * coefficient of 1.
+	 */
+	private static double[] rotate(double[] q) {
+		double c = ROTATION_COS, s = ROTATION_SIN;
+		double[] r = new double[6];
+		r[0] = q[0] * c * c + q[1] * s * s + q[2] * c * s;
+		r[1] = q[0] * s * s + q[1] * c * c - q[2] * c * s;
+		r[2] = 2 * (q[1] - q[0]) * c * s + q[2] * (c * c - s * s);
+		r[3] = q[3] * c + q[4] * s;
+		r[4] = q[4] * c - q[3] * s;
+		r[5] = q[5];
+		double max = 0;
+		for (int i = 0; i < 6; i++) {
+			max = Math.max(max, Math.abs(r[i]));
+		}
+		if (max > 0) {
+			for (int i = 0; i < 6; i++) {
+				r[i] /= max;
+			}
+		}
+		return r;
+	}
+
+	/*
+	 * Newton's method on the system q1 = q2 = 0 from point[0], point[1].
+	 * Returns the largest distance from the final point to the conics.
+	 */
+	private static double polish(double[] q1, double[] q2, double[] point) {
+		double x = point[0], y = point[1];
+		if (Double.isNaN(x) || Double.isNaN(y) || Double.isInfinite(x) || Double.isInfinite(y)) {
+			return Double.NaN;
+		}
+		double f1 = evaluate(q1, x, y), f2 = evaluate(q2, x, y);
+		for (int i = 0; i < NEWTON_STEPS && (f1 != 0 || f2 != 0); i++) {
+			double f1x = 2 * q1[0] * x + q1[2] * y + q1[3], f1y = 2 * q1[1] * y + q1[2] * x + q1[4];
+			double f2x = 2 * q2[0] * x + q2[2] * y + q2[3], f2y = 2 * q2[1] * y + q2[2] * x + q2[4];
+			double det = f1x * f2y - f1y * f2x;
+			if (det == 0) {
+				// tangent conics, keep the point as it is
+				break;
+			}
+			double dx = (f1y * f2 - f2y * f1) / det, dy = (f2x * f1 - f1x * f2) / det;
+			// near a tangency the step may overshoot, shorten it until it helps
+			boolean improved = false;
+			for (int j = 0; j < DAMPING_STEPS && !improved; j++, dx *= 0.5, dy *= 0.5) {
+				double g1 = evaluate(q1, x + dx, y + dy), g2 = evaluate(q2, x + dx, y + dy);
+				if (Math.abs(g1) + Math.abs(g2) < Math.abs(f1) + Math.abs(f2)) {
+					x += dx;
+					y += dy;
+					f1 = g1;
+					f2 = g2;
+					improved = true;
+				}
+			}
+			if (!improved) {
+				break;
+			}
+		}
+		point[0] = x;
+		point[1] = y;
+		return Math.max(distance(q1, x, y), distance(q2, x, y));
+	}
+
+	/*
+	 * First order distance from (x, y) to the conic.
+	 */
+	private static double distance(double[] q, double x, double y) {
+		double f = evaluate(q, x, y);
+		if (f == 0) {
+			return 0;
+		}
+		double gx = 2 * q[0] * x + q[2] * y + q[3], gy = 2 * q[1] * y + q[2] * x + q[4];
+		return Math.abs(f) / Math.sqrt(gx * gx + gy * gy);
+	}
+
+	/*
+	 * Real roots of a t^2 + b t + c = 0, stored from out[offset]; returns their
+	 * number. A zero a gives the root of the linear equation.
+	 */
+	static int solveQuadratic(double a, double b, double c, double[] out, int offset) {
+		if (a == 0) {
+			if (b == 0) {
+				return 0;
+			}
+			out[offset] = -c / b;
+			return 1;
+		}
+		double discriminant = b * b - 4 * a * c;
+		if (discriminant < 0) {
+			return 0;
+		}
+		if (discriminant == 0) {
+			out[offset] = -b / (2 * a);
+			return 1;
+		}
+		double r = -0.5 * (b + Math.copySign(Math.sqrt(discriminant), b));
+		out[offset] = r / a;
+		out[offset + 1] = c / r;
+		return 2;
+	}
+}
@@ -20,6 +20,8 @@ public class Convex {
 	public Point2D.Double[] convexHull;
 	// Spoke segments
 	public List<Segment> spokeSegments;
+	// Edge lines of the convex hull, compiled on demand
+	private BoundaryLines boundaryLines;
 
 	// Default constructor
 	public Convex() {
@@ -45,44 +47,26 @@ public class Convex {
 		int numHullVertex = hullVertex.length;
 		// Segments with site as end point
 		Map<Point2D.Double, List<Segment>> siteSegments = new HashMap<Point2D.Double, List<Segment>>();
-
-		// Find equations for hull edges
-		Point3d[] hullEdges = new Point3d[numHullVertex]; // stores hull edges as Point3d object
-		for (int h = 0; h < numHullVertex; h++) {
-			Point3d v_1 = HilbertGeometry.toHomogeneous(hullVertex[h]);
-			Point3d v_2 = HilbertGeometry.toHomogeneous(hullVertex[(h + 1) % numHullVertex]);
-			hullEdges[h] = v_1.crossProduct(v_2);
-		}
-		// number of hull edges
-		int numHullEdges = hullEdges.length;
+		Set<Segment> knownSegments = new HashSet<Segment>(spokeSegments);
 
 		// Find spoke segments
-		Point3d sproj = HilbertGeometry.toHomogeneous(site);
+		SpokeArrangement arrangement = new SpokeArrangement(hullVertex);
 		for (int h = 0; h < numHullVertex; h++) {
-			Point3d hproj = HilbertGeometry.toHomogeneous(hullVertex[h]);
-			Point3d spoke = sproj.crossProduct(hproj);
+			Point3d spoke = arrangement.spoke(site, h);
 
 			// Construct segments from current hull vertex to site
 			// Convert 2d points to PVector object
 			Segment spokeHullVertexSegments = constructSegment(site, hullVertex[h]); // site to vertex
 			spokeSegments.add(spokeHullVertexSegments);
-
-			for (int hVertex = 0; hVertex < numHullEdges; hVertex++) {
-				// Construct segments from this hull intersect to site
-				Point3d spokeHullEdgeIntersect = spoke.crossProduct(hullEdges[hVertex]);
-				Point2D.Double spokeHullEdgeIntersectPoint = HilbertGeometry.toCartesian(spokeHullEdgeIntersect);
-
-				Segment spokeHullEdgeSegments = constructSegment(site, spokeHullEdgeIntersectPoint); // site to edge
-
-				// check if intersection point is one of the convex body vertices
-				if (spokeSegments.contains(spokeHullEdgeSegments))
-					continue;
-
-				// check if intersection point is in the closure of the convex body
-				else if (this.isOnConvexBoundary(spokeHullEdgeIntersectPoint)) {
-					spokeSegments.add(spokeHullEdgeSegments);
-				}
-			}
+			knownSegments.add(spokeHullVertexSegments);
+
+			// Construct segment from the exit point of the spoke to site
+			Point2D.Double spokeHullEdgeIntersectPoint = arrangement.exitPoint(spoke, arrangement.exitEdge(site, h));
+			if (spokeHullEdgeIntersectPoint == null)
+				continue;
+			Segment spokeHullEdgeSegments = constructSegment(site, spokeHullEdgeIntersectPoint); // site to edge
+			if (knownSegments.add(spokeHullEdgeSegments))
+				spokeSegments.add(spokeHullEdgeSegments);
 		}
 
 		// Constructing hashmap with site as the key and list of site-containing
@@ -124,6 +108,7 @@ public class Convex {
 
 		// find the intersection point between every newSpoke and oldSpoke
 		// for each newSpoke
+		SpokeArrangement arrangement = new SpokeArrangement(hullVertex);
 		ArrayList<Point2D.Double> intersectionPoints = new ArrayList<Point2D.Double>();
 		List<Point2D.Double> vertices = Arrays.asList(hullVertex);
 		for (int i = 0; i < hullVertex.length; i++) {
@@ -145,20 +130,10 @@ public class Convex {
 			// convex hull
 			intersectionPoints.add(newSite);
 			intersectionPoints.add(hullVertex[i]);
-			Segment edgeIntersect = null;
-			for (int vertexCount = 0; vertexCount < hullVertex.length; vertexCount++) {
-				Point3d e1proj = HilbertGeometry.toHomogeneous(hullVertex[vertexCount]);
-				Point3d e2proj = HilbertGeometry.toHomogeneous(hullVertex[(vertexCount + 1) % hullVertex.length]);
-				Point3d edge = e1proj.crossProduct(e2proj);
-				Point2D.Double p = HilbertGeometry.toCartesian(spoke.crossProduct(edge));
-
-				if (this.isOnConvexBoundary(p) && !Convex.almostContainsElement(vertices, p)) {
-					intersectionPoints.add(p);
-					edgeIntersect = this.constructSegment(hullVertex[vertexCount],
-							hullVertex[(vertexCount + 1) % hullVertex.length]);
-					break;
-				}
-			}
+			int exitEdge = arrangement.exitEdge(newSite, i);
+			Point2D.Double exit = arrangement.exitPoint(spoke, exitEdge);
+			if (exit != null)
+				intersectionPoints.add(exit);
 
 			// sort intersection points
 			if (Math.abs(spoke.y) > 1e-8) {
@@ -185,6 +160,191 @@ public class Convex {
 		return segs;
 	}
 
+	/**
+	 * Subdivision of the spokes of all sites by their intersections with the
+	 * spokes of the other sites. Gives the segments of spokeIntersects for each
+	 * site against the other sites, in the order of the sites, but finds the
+	 * intersections with a plane sweep over the spokes instead of intersecting
+	 * every pair of spokes.
+	 *
+	 * @param hullVertex
+	 * @param sites
+	 * @return
+	 */
+	public List<Segment> spokeSegments(Point2D.Double[] hullVertex, Point2D.Double[] sites) {
+		int n = hullVertex.length;
+		SpokeArrangement arrangement = new SpokeArrangement(hullVertex);
+
+		// each spoke runs from its vertex through its site to its exit point, and
+		// is swept as two segments split at the site, so that the segments of a
+		// site only share the site as an end point
+		Point3d[] spokes = new Point3d[sites.length * n];
+		Point2D.Double[] exits = new Point2D.Double[sites.length * n];
+		Point2D.Double[] ends = new Point2D.Double[sites.length * n];
+		boolean[] along = new boolean[sites.length * n];
+		/* Spoke of each swept segment */
+		int[] spokeOf = new int[2 * sites.length * n];
+		double[] coords = new double[8 * sites.length * n];
+		int halves = 0;
+		for (int k = 0; k < sites.length; k++) {
+			for (int i = 0; i < n; i++) {
+				int spoke = k * n + i;
+				spokes[spoke] = arrangement.spoke(sites[k], i);
+				// a site on a hull vertex has no spoke to that vertex
+				if (nearAny(sites[k], hullVertex[i]))
+					continue;
+				int exitEdge = arrangement.exitEdge(sites[k], i);
+				exits[spoke] = arrangement.exitPoint(spokes[spoke], exitEdge);
+				// a site on the boundary may have no exit point, and its spokes
+				// then end at the site
+				Point2D.Double end = HilbertGeometry.toCartesian(arrangement.edge(exitEdge).crossProduct(spokes[spoke]));
+				ends[spoke] = (end == null) ? sites[k] : end;
+				// a spoke along a hull edge overlaps the spokes of the other end
+				// of that edge, which the sweep cannot tell apart; it is crossed
+				// where other spokes leave through that edge, found below
+				if (alongEdge(spokes[spoke], hullVertex[(i + 1) % n])
+						|| alongEdge(spokes[spoke], hullVertex[(i + n - 1) % n])) {
+					along[spoke] = true;
+					continue;
+				}
+				halves = addHalf(coords, spokeOf, halves, spoke, hullVertex[i], sites[k]);
+				if (end != null)
+					halves = addHalf(coords, spokeOf, halves, spoke, sites[k], end);
+			}
+		}
+		SegmentSweep sweep = new SegmentSweep(coords, halves);
+		int swept = sweep.run();
+
+		// spokes along hull edges against the end points of the other spokes,
+		// as extra crossings after those of the sweep
+		int[] pairs = new int[2 * swept];
+		int count = swept;
+		for (int a = 0; a < spokes.length; a++) {
+			if (!along[a])
+				continue;
+			for (int b = 0; b < spokes.length; b++) {
+				if (a / n == b / n || ends[b] == null || !within(hullVertex[a % n], ends[a], ends[b]))
+					continue;
+				if (2 * count + 2 > pairs.length)
+					pairs = Arrays.copyOf(pairs, 2 * pairs.length + 2);
+				pairs[2 * count] = a;
+				pairs[2 * count + 1] = b;
+				count++;
+			}
+		}
+		for (int c = 0; c < swept; c++) {
+			pairs[2 * c] = spokeOf[sweep.getFirst(c)];
+			pairs[2 * c + 1] = spokeOf[sweep.getSecond(c)];
+		}
+
+		// crossings of spokes of different sites, with the point where they
+		// cross, the same as in spokeIntersects rather than the swept one. The
+		// swept segments are inside the hull, and so are their crossings, which
+		// can only be hull vertices at their end points
+		List<Point2D.Double> vertices = Arrays.asList(hullVertex);
+		Point2D.Double[] points = new Point2D.Double[count];
+		int[] offsets = new int[spokes.length + 1];
+		for (int c = 0; c < count; c++) {
+			int a = pairs[2 * c], b = pairs[2 * c + 1];
+			if (a / n == b / n)
+				continue;
+			Point2D.Double intersect = HilbertGeometry.toCartesian(spokes[a].crossProduct(spokes[b]));
+			if (intersect == null)
+				continue;
+			if (nearAny(intersect, hullVertex[a % n], ends[a], hullVertex[b % n], ends[b])
+					&& Convex.almostContainsElement(vertices, intersect))
+				continue;
+			points[c] = intersect;
+			offsets[a + 1]++;
+			offsets[b + 1]++;
+		}
+		// crossings of each spoke by the index of the other spoke, the order in
+		// which spokeIntersects finds them
+		for (int spoke = 0; spoke < spokes.length; spoke++)
+			offsets[spoke + 1] += offsets[spoke];
+		long[] crossed = new long[offsets[spokes.length]];
+		int[] fill = Arrays.copyOf(offsets, spokes.length);
+		for (int c = 0; c < count; c++) {
+			if (points[c] == null)
+				continue;
+			int a = pairs[2 * c], b = pairs[2 * c + 1];
+			crossed[fill[a]++] = ((long) b << 32) | c;
+			crossed[fill[b]++] = ((long) a << 32) | c;
+		}
+
+		List<Segment> segs = new ArrayList<Segment>();
+		ArrayList<Point2D.Double> intersectionPoints = new ArrayList<Point2D.Double>();
+		ArrayList<Double> compare = new ArrayList<Double>();
+		for (int spoke = 0; spoke < spokes.length; spoke++) {
+			if (ends[spoke] == null) // site on the vertex of the spoke
+				continue;
+			Arrays.sort(crossed, offsets[spoke], offsets[spoke + 1]);
+			intersectionPoints.clear();
+			for (int k = offsets[spoke]; k < offsets[spoke + 1]; k++)
+				intersectionPoints.add(points[(int) crossed[k]]);
+
+			intersectionPoints.add(sites[spoke / n]);
+			intersectionPoints.add(hullVertex[spoke % n]);
+			if (exits[spoke] != null)
+				intersectionPoints.add(exits[spoke]);
+
+			// sort intersection points along the spoke
+			boolean vertical = Math.abs(spokes[spoke].y) <= 1e-8;
+			compare.clear();
+			for (Point2D.Double p : intersectionPoints)
+				compare.add(vertical ? p.y : p.x);
+			Convex.quickSort(intersectionPoints, compare, 0, intersectionPoints.size() - 1);
+
+			// points repeat where a site is on the boundary or a crossing is
+			// on the exit point, and would give empty segments
+			for (int index = 0; index < intersectionPoints.size() - 1; index++) {
+				Point2D.Double p = intersectionPoints.get(index), q = intersectionPoints.get(index + 1);
+				if (!p.equals(q))
+					segs.add(this.constructSegment(p, q));
+			}
+		}
+		return segs;
+	}
+
+	/*
+	 * Adds the segment from p to q to the swept segments of the spoke, unless it
+	 * has no length. Returns the new number of swept segments.
+	 */
+	private static int addHalf(double[] coords, int[] spokeOf, int halves, int spoke, Point2D.Double p,
+			Point2D.Double q) {
+		if (p.x == q.x && p.y == q.y)
+			return halves;
+		coords[4 * halves] = p.x;
+		coords[4 * halves + 1] = p.y;
+		coords[4 * halves + 2] = q.x;
+		coords[4 * halves + 3] = q.y;
+		spokeOf[halves] = spoke;
+		return halves + 1;
+	}
+
+	/* Whether the point is on the line of the spoke */
+	private static boolean alongEdge(Point3d spoke, Point2D.Double p) {
+		double d = spoke.x * p.x + spoke.y * p.y + spoke.z;
+		return Math.abs(d) <= 1e-9 * Math.hypot(spoke.x, spoke.y) * Math.max(1, Math.hypot(p.x, p.y));
+	}
+
+	/* Whether r is strictly between p and q on the segment pq */
+	private static boolean within(Point2D.Double p, Point2D.Double q, Point2D.Double r) {
+		double dx = q.x - p.x, dy = q.y - p.y;
+		double cross = dx * (r.y - p.y) - dy * (r.x - p.x);
+		double dot = dx * (r.x - p.x) + dy * (r.y - p.y);
+		double length2 = dx * dx + dy * dy;
+		return Math.abs(cross) <= 1e-9 * length2 && dot > 0 && dot < length2 && !nearAny(r, p, q);
+	}
+
+	private static boolean nearAny(Point2D.Double p, Point2D.Double... points) {
+		for (Point2D.Double q : points) {
+			if (p.distance(q) <= 1e-9)
+				return true;
+		}
+		return false;
+	}
+
 	/*
 	 * Construct sectors with given sites and segments Each sector is associated
 	 * with an edge and site
@@ -269,6 +429,40 @@ public class Convex {
 		return sectors;
 	}
 
+	/*
+	 * Sectors on both sides of a segment of the graph of the sites, the one on
+	 * its left, going from its left point to its right point, first. The faces
+	 * of the graph keep their sectors, so that a sector is built once however
+	 * many times the walk of realAugusteAlgo comes back to it.
+	 */
+	public List<Sector> constructSector(Segment edge, Point2D.Double site1, Point2D.Double site2,
+			SectorGraph graph) {
+		Point2D.Double ep1 = Util.toPoint2D(edge.getLeftPoint());
+		Point2D.Double ep2 = Util.toPoint2D(edge.getRightPoint());
+		SectorGraph.HalfEdge halfEdge = graph.getHalfEdge(ep1, ep2);
+
+		List<Sector> sectors = new ArrayList<Sector>(2);
+		sectors.add(this.faceSector(halfEdge.getFace(), site1, site2));
+		sectors.add(this.faceSector(halfEdge.getTwin().getFace(), site1, site2));
+		return sectors;
+	}
+
+	private Sector faceSector(SectorGraph.Face face, Point2D.Double site1, Point2D.Double site2) {
+		if (face.sector != null && face.sector.getSite1() == site1 && face.sector.getSite2() == site2)
+			return face.sector;
+		Sector sector = new Sector(null, null, null, null, null, null, face.getVertices(), null);
+
+		// the segments of the graph do not record the site of their spoke, as in
+		// the graph of constructGraph
+		ArrayList<Point2D.Double> sites = new ArrayList<Point2D.Double>();
+		for (int index = 0; index < sector.sector.convexHull.length - 1; index++)
+			sites.add(null);
+		this.assignSectorMetaData(sector, site1, site2, sites);
+		if (face.sector == null)
+			face.sector = sector;
+		return sector;
+	}
+
 	// assume that p1 <- edge -> p2 <- edge -> p3
 	public Sector constructSectorFromThreePoints(KdTree.XYZPoint p1, KdTree.XYZPoint p2, KdTree.XYZPoint p3,
 			KdTree<KdTree.XYZPoint> graph) {
@@ -365,7 +559,14 @@ public class Convex {
 			vertices.add(sector.sector.convexHull[index]);
 
 		// get sites of segments
-		ArrayList<Point2D.Double> sites = this.getSegSites(vertices, graph);
+		this.assignSectorMetaData(sector, site1, site2, this.getSegSites(vertices, graph));
+	}
+
+	private void assignSectorMetaData(Sector sector, Point2D.Double site1, Point2D.Double site2,
+			ArrayList<Point2D.Double> sites) {
+		ArrayList<Point2D.Double> vertices = new ArrayList<Point2D.Double>();
+		for (int index = 0; index < sector.sector.convexHull.length - 1; index++)
+			vertices.add(sector.sector.convexHull[index]);
 
 		// determine the associated edges of convex hull edges with sector
 		Segment[] edges = this.determineEdges(vertices, site1, site2);
@@ -760,71 +961,7 @@ public class Convex {
 	 * @return
 	 */
 	public List<Segment> spokeHullIntersection(Point2D.Double[] hullVertex, Point2D.Double[] sitePoints) {
-		// list of hold all intersection points
-		List<Segment> segs = new ArrayList<Segment>();
-
-		// constants
-		int numHullVertex = hullVertex.length;
-
-		// compute convex hull edge equations
-		Point3d[] edge_lines = new Point3d[numHullVertex];
-		for (int hv = 0; hv < numHullVertex; hv++) {
-			Point3d e1proj = HilbertGeometry.toHomogeneous(hullVertex[hv]);
-			Point3d e2proj = HilbertGeometry.toHomogeneous(hullVertex[(hv + 1) % numHullVertex]);
-			edge_lines[hv] = e1proj.crossProduct(e2proj);
-		}
-
-		// compute spoke equations
-		Point3d[] spokes = new Point3d[sitePoints.length * hullVertex.length];
-		for (int siteCount = 0; siteCount < sitePoints.length; siteCount++) {
-			Point2D.Double site = sitePoints[siteCount];
-			Point3d sproj = HilbertGeometry.toHomogeneous(site);
-			for (int vertexCount = 0; vertexCount < hullVertex.length; vertexCount++) {
-				Point2D.Double vertex = hullVertex[vertexCount];
-				Point3d vproj = HilbertGeometry.toHomogeneous(vertex);
-				spokes[siteCount * numHullVertex + vertexCount] = sproj.crossProduct(vproj);
-			}
-		}
-
-		// for each edge, compute the intersection points of all the spoikes
-		ArrayList<Point2D.Double> intersectionPoints = new ArrayList<Point2D.Double>();
-		List<Point2D.Double> vertices = Arrays.asList(hullVertex);
-		for (int edgeCount = 0; edgeCount < edge_lines.length; edgeCount++) {
-			Point3d edge = edge_lines[edgeCount];
-			intersectionPoints.clear();
-			for (Point3d s : spokes) {
-				// compute intersection point between spoke and edge
-				Point2D.Double intersect = HilbertGeometry.toCartesian(edge.crossProduct(s));
-
-				// check if that intersection point is a convex hull point
-				if (this.isOnConvexBoundary(intersect) && !Convex.almostContainsElement(vertices, intersect))
-					intersectionPoints.add(intersect);
-			}
-
-			// add edge vertex points
-			intersectionPoints.add(hullVertex[edgeCount]);
-			intersectionPoints.add(hullVertex[(edgeCount + 1) % numHullVertex]);
-
-			// sort points
-			if (Math.abs(edge.y) > 1e-8) {
-				ArrayList<Double> compare = new ArrayList<Double>();
-				for (Point2D.Double p : intersectionPoints) {
-					compare.add(p.x);
-				}
-				Convex.quickSort(intersectionPoints, compare, 0, intersectionPoints.size() - 1);
-			} else {
-				ArrayList<Double> compare = new ArrayList<Double>();
-				for (Point2D.Double p : intersectionPoints)
-					compare.add(p.y);
-				Convex.quickSort(intersectionPoints, compare, 0, intersectionPoints.size() - 1);
-			}
-
-			// add segments
-			for (int index = 0; index < intersectionPoints.size() - 1; index++)
-				segs.add(this.constructSegment(intersectionPoints.get(index), intersectionPoints.get(index + 1)));
-		}
-
-		return segs;
+		return new SpokeArrangement(hullVertex).boundarySegments(sitePoints);
 	}
 
 	/*
@@ -843,24 +980,50 @@ public class Convex {
 	}
 
 	private LinkedList<Point2D.Double> deleteDoubles(LinkedList<Point2D.Double> controlPoints) {
+		int count = controlPoints.size();
+		double[] xs = new double[count], ys = new double[count];
+		Point2D.Double[] points = controlPoints.toArray(new Point2D.Double[count]);
+		for (int i = 0; i < count; i++) {
+			xs[i] = points[i].x;
+			ys[i] = points[i].y;
+		}
+		int[] kept = new int[count];
+		int n = HullBuilder.dedup(xs, ys, count, kept);
 		LinkedList<Point2D.Double> newControlPoints = new LinkedList<Point2D.Double>();
-		for (Point2D.Double p : controlPoints) {
-			boolean isAlreadyInside = false;
-			for (Point2D.Double q : newControlPoints) {
-				if (Util.samePoints(p, q)) {
-					isAlreadyInside = true;
-				}
-				if (isAlreadyInside) {
-					break;
-				}
-			}
-			if (!isAlreadyInside) {
-				newControlPoints.add(p);
-			}
+		for (int i = 0; i < n; i++) {
+			newControlPoints.add(points[kept[i]]);
 		}
 		return newControlPoints;
 	}
 
+	/*
+	 * Constructs convex from the count control points (xs[i], ys[i]), for large
+	 * point clouds. Points closer than a pixel to an earlier point are dropped
+	 * as in Convex(LinkedList), and the hull is computed by HullBuilder on the
+	 * primitive arrays. Unlike computeConvexHull, the hull has no vertices in
+	 * the interior of its edges.
+	 */
+	public static Convex fromPoints(double[] xs, double[] ys, int count) {
+		if (count < 0 || count > xs.length || count > ys.length) {
+			throw new IllegalArgumentException("Invalid number of points: " + count);
+		}
+		int[] kept = new int[count];
+		int n = HullBuilder.dedup(xs, ys, count, kept);
+		double[] px = new double[n], py = new double[n];
+		Convex c = new Convex();
+		c.points = new Point2D.Double[n];
+		for (int i = 0; i < n; i++) {
+			px[i] = xs[kept[i]];
+			py[i] = ys[kept[i]];
+			c.points[i] = new Point2D.Double(px[i], py[i]);
+		}
+		if (n >= 3) {
+			c.convexHull = HullBuilder.convexHull(px, py, n);
+			c.boundaryLines = new BoundaryLines(c.convexHull);
+		}
+		return c;
+	}
+
 	/*
 	 * Finds point P in convexHull and gives the index.
 	 */
@@ -888,8 +1051,22 @@ public class Convex {
 	 * Changes the point of index i.
 	 */
 	public void movePoint(int index, Point2D.Double q) {
-		this.convexHull[index] = q;
-		this.points = this.convexHull;
+		int n = this.hullSize();
+		if (n > 0) {
+			// the closing point of the hull is its first vertex
+			if (index == n)
+				index = 0;
+			this.points = Arrays.copyOf(this.convexHull, n);
+			this.points[index] = q;
+			if (n > 3) {
+				this.setHull(this.removeHullVertex(index, n));
+				if (this.insertHullVertex(q))
+					return;
+			}
+		} else {
+			this.convexHull[index] = q;
+			this.points = this.convexHull;
+		}
 		this.computeConvexHull();
 	}
 
@@ -897,13 +1074,11 @@ public class Convex {
 	 * Adds a control points to change the definition of the convex.
 	 */
 	public void addPoint(Point2D.Double p) {
-		Point2D.Double[] oldControlPoints = this.points.clone();
-		this.points = new Point2D.Double[oldControlPoints.length + 1];
-		for (int i = 0; i < oldControlPoints.length; i++) {
-			this.points[i] = oldControlPoints[i];
-		}
+		Point2D.Double[] oldControlPoints = this.points;
+		this.points = Arrays.copyOf(oldControlPoints, oldControlPoints.length + 1);
 		this.points[oldControlPoints.length] = p;
-		this.computeConvexHull();
+		if (!this.insertHullVertex(p))
+			this.computeConvexHull();
 	}
 
 	/*
@@ -918,6 +1093,14 @@ public class Convex {
 			}
 		}
 		if (index != -1) {
+			int n = this.hullSize();
+			if (n > 3) {
+				// removing a vertex of a convex polygon leaves a convex polygon
+				Point2D.Double[] vertices = this.removeHullVertex(index, n);
+				this.points = vertices;
+				this.setHull(vertices);
+				return;
+			}
 			this.points = new Point2D.Double[convexHull.length - 1];
 			int count = 0;
 			for (int j = 0; j < this.convexHull.length; j++) {
@@ -931,29 +1114,220 @@ public class Convex {
 	}
 
 	/*
-	 * Decides whether point p lies in the interior convex.
+	 * Constructs convex from vertices already in convex position, in clockwise
+	 * or counter-clockwise order, closed or not. The hull is then read off the
+	 * vertices in linear time. Vertices that are not in that order are added
+	 * one by one.
 	 */
-	public boolean isInConvex(Point2D.Double p) {
-		int N = convexHull.length;
-		Point2D.Double a, b;
-		int out = 0, in = 0;
-		for (int i = 0; i < N; i++) {
-			a = convexHull[i % N];
-			b = convexHull[(i + 1) % N];
-			Point2D.Double ab = new Point2D.Double(b.x - a.x, b.y - a.y);
-			Point2D.Double ap = new Point2D.Double(p.x - a.x, p.y - a.y);
-			double crossProduct = ab.x * ap.y - ab.y * ap.x;
-			if (crossProduct > 0) {
-				out++;
-			} else if (crossProduct < 0) {
-				in++;
+	public static Convex fromPolygon(List<Point2D.Double> vertices) {
+		Convex c = new Convex();
+		Point2D.Double[] polygon = vertices.toArray(new Point2D.Double[vertices.size()]);
+		int n = polygon.length;
+		if (n > 1 && polygon[n - 1].equals(polygon[0]))
+			n--;
+		int orientation = convexOrientation(polygon, n);
+		if (orientation == 0) {
+			for (Point2D.Double p : polygon)
+				c.addPoint(p);
+			return c;
+		}
+		c.points = polygon;
+		Point2D.Double[] hull = Arrays.copyOf(polygon, n);
+		if (orientation < 0) {
+			for (int i = 0, j = n - 1; i < j; i++, j--) {
+				Point2D.Double t = hull[i];
+				hull[i] = hull[j];
+				hull[j] = t;
 			}
-			if (out > 0 && in > 0)
+		}
+		c.setHull(hull);
+		return c;
+	}
+
+	/*
+	 * Gives 1 if the n first vertices of the polygon make a strictly convex
+	 * polygon in counter-clockwise order, -1 if in clockwise order, and 0
+	 * otherwise. All turns must be strict and of the same side, and the x
+	 * direction of the edges must change twice, so that the boundary winds
+	 * once.
+	 */
+	private static int convexOrientation(Point2D.Double[] polygon, int n) {
+		if (n < 3)
+			return 0;
+		int sign = 0, changes = 0;
+		double lastDx = 0;
+		for (int i = 0; i < n; i++) {
+			Point2D.Double a = polygon[i];
+			Point2D.Double b = polygon[(i + 1) % n];
+			Point2D.Double c = polygon[(i + 2) % n];
+			double cross = (b.x - a.x) * (c.y - a.y) - (b.y - a.y) * (c.x - a.x);
+			int turn = (cross > 0) ? 1 : (cross < 0) ? -1 : 0;
+			if (turn == 0 || (sign != 0 && turn != sign))
+				return 0;
+			sign = turn;
+			double dx = b.x - a.x;
+			if (dx != 0) {
+				if (lastDx != 0 && (dx > 0) != (lastDx > 0))
+					changes++;
+				lastDx = dx;
+			}
+		}
+		// the change between the last edge and the first one
+		for (int i = 0; i < n; i++) {
+			double dx = polygon[(i + 1) % n].x - polygon[i].x;
+			if (dx != 0) {
+				if ((dx > 0) != (lastDx > 0))
+					changes++;
+				break;
+			}
+		}
+		return (changes == 2) ? sign : 0;
+	}
+
+	/*
+	 * Number of vertices of the hull when it is a closed polygon of positive
+	 * area in counter-clockwise order, as computed by computeConvexHull, and 0
+	 * otherwise.
+	 */
+	private int hullSize() {
+		Point2D.Double[] hull = this.convexHull;
+		int n = hull.length - 1;
+		if (n < 3 || !hull[n].equals(hull[0]))
+			return 0;
+		double area = 0;
+		for (int i = 0; i < n; i++)
+			area += hull[i].x * hull[i + 1].y - hull[i + 1].x * hull[i].y;
+		return (area > 0) ? n : 0;
+	}
+
+	/*
+	 * Adds point p to the hull. An edge of the hull seen from p is found by a
+	 * binary search in the fan of the hull around its first vertex, and the
+	 * chain of edges seen from p around it is replaced by p. Returns false if
+	 * the hull is not a polygon that can be updated.
+	 */
+	private boolean insertHullVertex(Point2D.Double p) {
+		int n = this.hullSize();
+		if (n == 0) {
+			// the first three points start the hull, unless they are collinear
+			if (this.points.length != 3)
+				return false;
+			Point2D.Double a = this.points[0], b = this.points[1], c = this.points[2];
+			double turn = cross(a, b, c);
+			if (turn == 0)
 				return false;
+			this.setHull((turn > 0) ? new Point2D.Double[] { a, b, c } : new Point2D.Double[] { a, c, b });
+			return true;
 		}
+		Point2D.Double[] h = this.convexHull;
+		int visible;
+		if (cross(h[0], h[1], p) < 0) {
+			visible = 0;
+		} else if (cross(h[n - 1], h[0], p) < 0) {
+			visible = n - 1;
+		} else {
+			// largest k with vertex k at or clockwise of p, seen from vertex 0
+			int lo = 1, hi = n - 1;
+			while (hi - lo > 1) {
+				int mid = (lo + hi) >>> 1;
+				if (cross(h[0], h[mid], p) >= 0)
+					lo = mid;
+				else
+					hi = mid;
+			}
+			double side = cross(h[lo], h[lo + 1], p);
+			if (side > 0) {
+				// p is in the hull
+				return true;
+			}
+			visible = lo;
+			if (side == 0) {
+				// p is on the line of the edge, which may be collinear with
+				// vertex 0 and other edges: look for a visible edge
+				visible = -1;
+				for (int i = 0; i < n && visible < 0; i++) {
+					if (cross(h[i], h[(i + 1) % n], p) < 0)
+						visible = i;
+				}
+				if (visible < 0)
+					return true;
+			}
+		}
+		// extend the chain of visible edges, from vertex start to vertex end
+		int start = visible, end = (visible + 1) % n;
+		for (int k = 0; k < n && cross(h[(start + n - 1) % n], h[start], p) < 0; k++)
+			start = (start + n - 1) % n;
+		for (int k = 0; k < n && cross(h[end], h[(end + 1) % n], p) < 0; k++)
+			end = (end + 1) % n;
+		// the vertices from end to start stay, and p follows them
+		int kept = (start - end + n) % n + 1;
+		Point2D.Double[] vertices = new Point2D.Double[kept + 1];
+		for (int k = 0; k < kept; k++)
+			vertices[k] = h[(end + k) % n];
+		vertices[kept] = p;
+		this.setHull(vertices);
 		return true;
 	}
 
+	/* The n vertices of the hull except vertex index, in order */
+	private Point2D.Double[] removeHullVertex(int index, int n) {
+		Point2D.Double[] vertices = new Point2D.Double[n - 1];
+		System.arraycopy(this.convexHull, 0, vertices, 0, index);
+		System.arraycopy(this.convexHull, index + 1, vertices, index, n - 1 - index);
+		return vertices;
+	}
+
+	/*
+	 * Sets the hull to the given vertices in counter-clockwise order, starting
+	 * from the vertex of lowest y, and of lowest x among those, and closed by
+	 * that vertex as computeConvexHull does.
+	 */
+	private void setHull(Point2D.Double[] vertices) {
+		int n = vertices.length;
+		int lowest = 0;
+		for (int i = 1; i < n; i++) {
+			Point2D.Double v = vertices[i], l = vertices[lowest];
+			if (v.y < l.y || (v.y == l.y && v.x < l.x))
+				lowest = i;
+		}
+		Point2D.Double[] hull = new Point2D.Double[n + 1];
+		for (int i = 0; i < n; i++)
+			hull[i] = vertices[(lowest + i) % n];
+		hull[n] = hull[0];
+		this.convexHull = hull;
+	}
+
+	private static double cross(Point2D.Double a, Point2D.Double b, Point2D.Double c) {
+		return (b.x - a.x) * (c.y - a.y) - (b.y - a.y) * (c.x - a.x);
+	}
+
+	/*
+	 * Gives the edge lines of the convex hull, compiling them again if the hull
+	 * changed since the last call.
+	 */
+	public BoundaryLines getBoundaryLines() {
+		BoundaryLines lines = this.boundaryLines;
+		if (lines == null || !lines.isCompiledFrom(this.convexHull)) {
+			lines = new BoundaryLines(this.convexHull);
+			this.boundaryLines = lines;
+		}
+		return lines;
+	}
+
+	/*
+	 * Decides whether point p lies in the interior convex.
+	 */
+	public boolean isInConvex(Point2D.Double p) {
+		return getBoundaryLines().contains(p.x, p.y);
+	}
+
+	/*
+	 * Decides whether point (x, y) lies in the interior convex.
+	 */
+	public boolean isInConvex(double x, double y) {
+		return getBoundaryLines().contains(x, y);
+	}
+
 	public Segment isBisectOnConvexBoundary(Point2D.Double p) {
 		int N = convexHull.length;
 		Point2D.Double a, b;
@@ -1074,6 +1448,7 @@ public class Convex {
 		for (int i = 0; i < convexList.size(); i++) {
 			convexHull[i] = convexList.get(i);
 		}
+		this.boundaryLines = new BoundaryLines(this.convexHull);
 	}
 
 	/**
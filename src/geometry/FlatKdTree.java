@@ -0,0 +1,365 @@
+package geometry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/*
+ * Static 2-d tree over primitive coordinate arrays, for k-nearest queries in
+ * the Euclidean metric on large point sets.
+ *
+ * The tree is implicit, as in SiteIndex: positions [lo, hi) form a subtree
+ * whose node is the median position, split on x at even depths and on y at
+ * odd depths. It is built in O(n log n) by selecting the median of each range
+ * instead of sorting it, and needs no node objects. Queries collect their
+ * results in a Neighbours buffer, a bounded max-heap on primitive arrays,
+ * which the caller keeps and reuses, so that a query allocates nothing.
+ *
+ * Unlike KdTree, the tree is not modified once built: its arrays are final
+ * and never written after the constructor, so a tree can be shared by any
+ * number of threads reading it without locks. KdTree.freeze makes one from a
+ * KdTree, and VersionedKdTree swaps in rebuilt trees for updates. The points
+ * themselves are shared, not copied, so their neighbour lists are not frozen.
+ */
+public class FlatKdTree<T extends KdTree.XYZPoint> {
+	/* Point coordinates, in tree order */
+	private final double[] xs, ys;
+	/* Index of the point stored at each tree position */
+	private final int[] ids;
+	/* Points the tree was built from, by index, or null */
+	private final List<T> points;
+
+	/*
+	 * Builds a tree over the count first points of x and y. Query results are
+	 * indices into these arrays.
+	 */
+	public FlatKdTree(double[] x, double[] y, int count) {
+		this.xs = new double[count];
+		this.ys = new double[count];
+		this.ids = new int[count];
+		this.points = null;
+		for (int i = 0; i < count; i++) {
+			this.xs[i] = x[i];
+			this.ys[i] = y[i];
+			this.ids[i] = i;
+		}
+		build(0, count, 0);
+	}
+
+	/*
+	 * Builds a tree over the points, ignoring their z. Query results are
+	 * indices into the list.
+	 */
+	public FlatKdTree(List<T> points) {
+		int count = points.size();
+		this.xs = new double[count];
+		this.ys = new double[count];
+		this.ids = new int[count];
+		this.points = Collections.unmodifiableList(new ArrayList<T>(points));
+		for (int i = 0; i < count; i++) {
+			this.xs[i] = points.get(i).getX();
+			this.ys[i] = points.get(i).getY();
+			this.ids[i] = i;
+		}
+		build(0, count, 0);
+	}
+
+	/* Number of points in the tree */
+	public int size() {
+		return this.ids.length;
+	}
+
+	/* Point of the given index, if the tree was built from a list */
+	public T get(int index) {
+		return this.points.get(index);
+	}
+
+	/* Points the tree was built from, by index, or null */
+	public List<T> getPoints() {
+		return this.points;
+	}
+
+	/*
+	 * Finds the neighbours.capacity() points nearest to (x, y), replacing the
+	 * previous content of neighbours. Among points at the same distance, the
+	 * smallest indices are kept. Returns the number of points found.
+	 */
+	public int nearest(double x, double y, Neighbours neighbours) {
+		neighbours.size = 0;
+		if (neighbours.ids.length > 0)
+			search(x, y, neighbours, 0, this.ids.length, 0);
+		neighbours.sort();
+		return neighbours.size;
+	}
+
+	/*
+	 * Index of the point nearest to (x, y), or -1 if the tree is empty. This
+	 * allocates a buffer; loops of queries should reuse one instead.
+	 */
+	public int nearest(double x, double y) {
+		Neighbours neighbours = new Neighbours(1);
+		return (nearest(x, y, neighbours) == 0) ? -1 : neighbours.getIndex(0);
+	}
+
+	/*
+	 * Drop-in for KdTree.nearestNeighbourSearch: the K points nearest to the
+	 * value, nearest first. The tree must have been built from a list.
+	 */
+	public List<T> nearestNeighbourSearch(int K, KdTree.XYZPoint value) {
+		Neighbours neighbours = new Neighbours(Math.min(K, this.ids.length));
+		int found = nearest(value.getX(), value.getY(), neighbours);
+		List<T> result = new ArrayList<T>(found);
+		for (int i = 0; i < found; i++)
+			result.add(this.points.get(neighbours.getIndex(i)));
+		return result;
+	}
+
+	/*
+	 * Visits the indices of the points in the closed rectangle, in no
+	 * particular order. Returns false if the visitor stopped the search.
+	 */
+	public boolean rangeSearch(double minX, double minY, double maxX, double maxY, IndexVisitor visitor) {
+		return rangeSearch(minX, minY, maxX, maxY, visitor, 0, this.ids.length, 0);
+	}
+
+	private boolean rangeSearch(double minX, double minY, double maxX, double maxY, IndexVisitor visitor, int lo, int hi, int depth) {
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			double x = this.xs[mid], y = this.ys[mid];
+			if (x >= minX && x <= maxX && y >= minY && y <= maxY && !visitor.visit(this.ids[mid]))
+				return false;
+			// keys equal to the node's may be on either side
+			double key = ((depth & 1) == 0) ? x : y;
+			boolean lesser = key >= (((depth & 1) == 0) ? minX : minY);
+			boolean greater = key <= (((depth & 1) == 0) ? maxX : maxY);
+			if (lesser && greater && !rangeSearch(minX, minY, maxX, maxY, visitor, lo, mid, depth + 1))
+				return false;
+			if (greater) {
+				lo = mid + 1;
+			} else if (lesser) {
+				hi = mid;
+			} else {
+				return true;
+			}
+			depth++;
+		}
+		return true;
+	}
+
+	/*
+	 * Visits the indices of the points at Euclidean distance at most radius
+	 * from (x, y), in no particular order. Returns false if the visitor
+	 * stopped the search.
+	 */
+	public boolean radiusSearch(double x, double y, double radius, IndexVisitor visitor) {
+		return radiusSearch(x, y, radius, visitor, 0, this.ids.length, 0);
+	}
+
+	private boolean radiusSearch(double x, double y, double radius, IndexVisitor visitor, int lo, int hi, int depth) {
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (distance2(x, y, mid) <= radius * radius && !visitor.visit(this.ids[mid]))
+				return false;
+			double delta = ((depth & 1) == 0) ? x - this.xs[mid] : y - this.ys[mid];
+			boolean lesser = delta <= radius;
+			boolean greater = -delta <= radius;
+			if (lesser && greater && !radiusSearch(x, y, radius, visitor, lo, mid, depth + 1))
+				return false;
+			if (greater) {
+				lo = mid + 1;
+			} else if (lesser) {
+				hi = mid;
+			} else {
+				return true;
+			}
+			depth++;
+		}
+		return true;
+	}
+
+	private double distance2(double x, double y, int position) {
+		double dx = x - this.xs[position], dy = y - this.ys[position];
+		return dx * dx + dy * dy;
+	}
+
+	private void search(double x, double y, Neighbours neighbours, int lo, int hi, int depth) {
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			neighbours.offer(this.ids[mid], distance2(x, y, mid));
+			double delta = ((depth & 1) == 0) ? x - this.xs[mid] : y - this.ys[mid];
+			// search the side of the point, then the other one if it can
+			// still hold a better point; the second call is a loop
+			int nearLo, nearHi, farLo, farHi;
+			if (delta < 0) {
+				nearLo = lo;
+				nearHi = mid;
+				farLo = mid + 1;
+				farHi = hi;
+			} else {
+				nearLo = mid + 1;
+				nearHi = hi;
+				farLo = lo;
+				farHi = mid;
+			}
+			search(x, y, neighbours, nearLo, nearHi, depth + 1);
+			if (delta * delta > neighbours.bound())
+				return;
+			lo = farLo;
+			hi = farHi;
+			depth++;
+		}
+	}
+
+	/*
+	 * Sorts positions [lo, hi) into a 2-d tree, splitting on x at even depths
+	 * and on y at odd depths.
+	 */
+	private void build(int lo, int hi, int depth) {
+		if (hi - lo < 2)
+			return;
+		int mid = (lo + hi) >>> 1;
+		select(lo, hi - 1, mid, (depth & 1) == 0 ? this.xs : this.ys);
+		build(lo, mid, depth + 1);
+		build(mid + 1, hi, depth + 1);
+	}
+
+	/*
+	 * Quickselect: moves the k-th smallest key of positions [lo, hi] to
+	 * position k, smaller keys before it and larger keys after it.
+	 */
+	private void select(int lo, int hi, int k, double[] keys) {
+		while (lo < hi) {
+			double pivot = keys[(lo + hi) >>> 1];
+			int i = lo, j = hi;
+			while (i <= j) {
+				while (keys[i] < pivot)
+					i++;
+				while (keys[j] > pivot)
+					j--;
+				if (i <= j) {
+					swap(i, j);
+					i++;
+					j--;
+				}
+			}
+			if (k <= j)
+				hi = j;
+			else if (k >= i)
+				lo = i;
+			else
+				return;
+		}
+	}
+
+	private void swap(int i, int j) {
+		double x = this.xs[i];
+		this.xs[i] = this.xs[j];
+		this.xs[j] = x;
+		double y = this.ys[i];
+		this.ys[i] = this.ys[j];
+		this.ys[j] = y;
+		int id = this.ids[i];
+		this.ids[i] = this.ids[j];
+		this.ids[j] = id;
+	}
+
+	/* Receives the indices of the points found by a range search */
+	public interface IndexVisitor {
+		/* Returns false to stop the search */
+		boolean visit(int index);
+	}
+
+	/*
+	 * Result buffer of k-nearest queries, holding at most capacity points. It
+	 * is a max-heap on squared distance while a query runs, and is sorted by
+	 * increasing distance when the query returns. A buffer is not shared
+	 * between threads.
+	 */
+	public static final class Neighbours {
+		private final int[] ids;
+		private final double[] distances;
+		private int size;
+
+		public Neighbours(int capacity) {
+			this.ids = new int[capacity];
+			this.distances = new double[capacity];
+		}
+
+		public int capacity() {
+			return this.ids.length;
+		}
+
+		public int size() {
+			return this.size;
+		}
+
+		/* Index of the i-th nearest point */
+		public int getIndex(int i) {
+			return this.ids[i];
+		}
+
+		/* Euclidean distance to the i-th nearest point */
+		public double getDistance(int i) {
+			return Math.sqrt(this.distances[i]);
+		}
+
+		/* Squared distance beyond which points are not kept */
+		double bound() {
+			return (this.size < this.ids.length) ? Double.POSITIVE_INFINITY : this.distances[0];
+		}
+
+		/* Orders by distance, then by index */
+		private boolean after(int i, double d, int id) {
+			return this.distances[i] > d || (this.distances[i] == d && this.ids[i] > id);
+		}
+
+		void offer(int id, double d) {
+			if (this.size < this.ids.length) {
+				// sift up from the new leaf
+				int i = this.size++;
+				while (i > 0) {
+					int parent = (i - 1) >>> 1;
+					if (after(parent, d, id))
+						break;
+					this.ids[i] = this.ids[parent];
+					this.distances[i] = this.distances[parent];
+					i = parent;
+				}
+				this.ids[i] = id;
+				this.distances[i] = d;
+			} else if (after(0, d, id)) {
+				siftDown(id, d, this.size);
+			}
+		}
+
+		/* Replaces the root of the heap of the first n entries */
+		private void siftDown(int id, double d, int n) {
+			int i = 0;
+			while (true) {
+				int child = 2 * i + 1;
+				if (child >= n)
+					break;
+				if (child + 1 < n && after(child + 1, this.distances[child], this.ids[child]))
+					child++;
+				if (!after(child, d, id))
+					break;
+				this.ids[i] = this.ids[child];
+				this.distances[i] = this.distances[child];
+				i = child;
+			}
+			this.ids[i] = id;
+			this.distances[i] = d;
+		}
+
+		/* Heapsort in place, leaving the nearest point first */
+		void sort() {
+			for (int n = this.size - 1; n > 0; n--) {
+				int id = this.ids[n];
+				double d = this.distances[n];
+				this.ids[n] = this.ids[0];
+				this.distances[n] = this.distances[0];
+				siftDown(id, d, n);
+			}
+		}
+	}
+}
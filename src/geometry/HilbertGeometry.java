@@ -45,19 +45,12 @@ public class HilbertGeometry {
 
   /* Gives the distance between points p and q */ 
   public double distance(Point2D.Double p, Point2D.Double q) {
-    if (p.x == q.x && p.y == q.y) {
-      return 0;
-    }
-    Point2D.Double[] intersectionPoints = intersectionPoints(p, q);
-    Point2D.Double P = intersectionPoints[0];
-    Point2D.Double Q = intersectionPoints[1];
-    Point2D.Double pP = new Point2D.Double(p.x - P.x, p.y - P.y);
-    Point2D.Double qQ = new Point2D.Double(q.x - Q.x, q.y - Q.y);
-    Point2D.Double pQ = new Point2D.Double(p.x - Q.x, p.y - Q.y);
-    Point2D.Double qP = new Point2D.Double(q.x - P.x, q.y - P.y);
-    return Math.abs(0.5 * Math.log(
-        pP.distanceSq(ZERO) * qQ.distanceSq(ZERO) /
-        (pQ.distanceSq(ZERO) * qP.distanceSq(ZERO))));
+    return distance(p.x, p.y, q.x, q.y);
+  }
+  
+  /* Gives the distance between points (px, py) and (qx, qy), without allocating */
+  public double distance(double px, double py, double qx, double qy) {
+    return convex.getBoundaryLines().distance(px, py, qx, qy);
   }
   
   /* Returns true if point p is in the domain */
@@ -143,23 +136,7 @@ public class HilbertGeometry {
   
   /* Gets the intersection Points of the line defined by point p and q with the convex */
   protected Point2D.Double[] intersectionPoints(Point2D.Double p, Point2D.Double q) {
-    Point3d pProj = toHomogeneous(p);
-    Point3d qProj = toHomogeneous(q);
-    //convex.drawSegment(pProj, qProj);
-    Point3d pqLine = pProj.crossProduct(qProj);
-    Point3d beginPoint = toHomogeneous(convex.convexHull[0]);
-    Point2D.Double[] intersectionPoints = new Point2D.Double[2];
-    int count = 0;
-    for (int i = 1; i < convex.convexHull.length; i++) {
-      Point3d endPoint = toHomogeneous(convex.convexHull[i]);
-      Point2D.Double intersect = toCartesian(intersection(pqLine, beginPoint, endPoint));
-      if (intersect != null && count < 2 && !Util.contains(intersectionPoints, intersect)) {
-        intersectionPoints[count] = intersect;
-        count++;
-      }
-      beginPoint = endPoint;
-    }
-    return intersectionPoints;
+    return Util.intersectionPoints(p, q, convex);
   }
   
   /* Computes intersection point in homogeneous coordinates between line and segment [PQ] */ 
@@ -231,6 +208,23 @@ public class HilbertGeometry {
     return points;
   }
   
+  /*
+   * Gives the Euclidean bounding box {minX, minY, maxX, maxY} of the hilbert
+   * ball of radius r and center p. The ball is the polygon of its extreme
+   * points, so no point of the ball lies outside their box.
+   */
+
+  public double[] getHilbertBallBounds(Point2D.Double p, double radius) {
+    double[] bounds = {p.x, p.y, p.x, p.y};
+    for (Point2D.Double q : getHilbertBallExtremePoints(p, radius)) {
+      bounds[0] = Math.min(bounds[0], q.x);
+      bounds[1] = Math.min(bounds[1], q.y);
+      bounds[2] = Math.max(bounds[2], q.x);
+      bounds[3] = Math.max(bounds[3], q.y);
+    }
+    return bounds;
+  }
+  
   /*
    * Computes the encompassing rectangle of the domain. 
    */
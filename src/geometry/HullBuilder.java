@@ -0,0 +1,340 @@
+package geometry;
+
+import java.awt.geom.Point2D;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/*
+ * Convex hull of large point clouds given as primitive coordinate arrays.
+ *
+ * Points closer than a pixel to an earlier point are dropped first, as in
+ * Convex(LinkedList), by hashing them on a grid of cells small enough to
+ * hold a single kept point, so that a point is only compared with the kept
+ * points of the cells around it.
+ *
+ * The points strictly inside the octagon of the extreme points in the eight
+ * directions of the axes and diagonals cannot be on the hull. They are
+ * discarded in parallel on the common fork-join pool, and the hull of the
+ * remaining points is computed by Andrew's monotone chain.
+ */
+final class HullBuilder {
+	/* Points closer than that are the same control point, see Util.samePoints */
+	private static final double SAME_POINT_DISTANCE = 1;
+	/* Points filtered by a single task of the fork-join pool */
+	private static final int FILTER_CHUNK = 1 << 15;
+	/* Below this many points, ranges are sorted by insertion */
+	private static final int INSERTION_SORT_SIZE = 16;
+
+	private HullBuilder() {
+	}
+
+	/*
+	 * Indices of the points kept by dropping, in order, every point closer than
+	 * SAME_POINT_DISTANCE to a point kept before it. They are stored in kept;
+	 * returns their number.
+	 */
+	static int dedup(double[] xs, double[] ys, int count, int[] kept) {
+		// the diagonal of a cell is SAME_POINT_DISTANCE, so a cell holds at most
+		// one kept point, and the points closer than that to a point are in the
+		// 5 x 5 cells around its cell, except for the corners
+		double scale = Math.sqrt(2) / SAME_POINT_DISTANCE;
+		double limit = SAME_POINT_DISTANCE * SAME_POINT_DISTANCE;
+		int capacity = Integer.highestOneBit(Math.max(2 * count, 16) - 1) << 1;
+		int mask = capacity - 1;
+		long[] cells = new long[capacity];
+		// kept point of each slot, -1 for empty slots
+		int[] points = new int[capacity];
+		Arrays.fill(points, -1);
+		int n = 0;
+		for (int i = 0; i < count; i++) {
+			double x = xs[i], y = ys[i];
+			long cx = (long) Math.floor(x * scale), cy = (long) Math.floor(y * scale);
+			int own = find(cells, points, mask, cx, cy);
+			if (points[own] >= 0) {
+				continue;
+			}
+			boolean duplicate = false;
+			for (long gx = cx - 2; gx <= cx + 2 && !duplicate; gx++) {
+				long range = (gx == cx - 2 || gx == cx + 2) ? 1 : 2;
+				for (long gy = cy - range; gy <= cy + range; gy++) {
+					int k = points[find(cells, points, mask, gx, gy)];
+					if (k >= 0) {
+						double dx = xs[k] - x, dy = ys[k] - y;
+						if (dx * dx + dy * dy < limit) {
+							duplicate = true;
+							break;
+						}
+					}
+				}
+			}
+			if (!duplicate) {
+				cells[own] = key(cx, cy);
+				points[own] = i;
+				kept[n++] = i;
+			}
+		}
+		return n;
+	}
+
+	private static long key(long cx, long cy) {
+		return (cx << 32) ^ (cy & 0xffffffffL);
+	}
+
+	/*
+	 * Slot of the cell (cx, cy), or the empty slot where it would go. The cells
+	 * of a column are given consecutive slots, so that the cells around a point
+	 * are looked up in a few cache lines.
+	 */
+	private static int find(long[] cells, int[] points, int mask, long cx, long cy) {
+		long key = key(cx, cy);
+		int slot = (int) (cx * 0x9e3779b97f4a7c15L + cy) & mask;
+		while (points[slot] >= 0 && cells[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/*
+	 * Convex hull of the count points (xs[i], ys[i]), counter-clockwise from
+	 * the point of lowest y, and of lowest x among those, with that point
+	 * repeated at the end as in GrahamScan.getConvexHull. Points in the
+	 * interior of edges are not vertices. Less than three points, or collinear
+	 * points, give their extreme points only.
+	 */
+	static Point2D.Double[] convexHull(double[] xs, double[] ys, int count) {
+		if (count == 0) {
+			return new Point2D.Double[0];
+		}
+		// extreme points in the directions x, x + y, y, y - x, -x, -x - y, -y, x - y
+		int[] extremes = new int[8];
+		double[] best = new double[8];
+		Arrays.fill(best, Double.NEGATIVE_INFINITY);
+		for (int i = 0; i < count; i++) {
+			double x = xs[i], y = ys[i];
+			update(extremes, best, 0, i, x);
+			update(extremes, best, 1, i, x + y);
+			update(extremes, best, 2, i, y);
+			update(extremes, best, 3, i, y - x);
+			update(extremes, best, 4, i, -x);
+			update(extremes, best, 5, i, -x - y);
+			update(extremes, best, 6, i, -y);
+			update(extremes, best, 7, i, x - y);
+		}
+		double[] octagon = new double[16];
+		int corners = 0;
+		for (int e : extremes) {
+			// skip the extremes shared by consecutive directions
+			if (corners == 0 || xs[e] != octagon[2 * corners - 2] || ys[e] != octagon[2 * corners - 1]) {
+				octagon[2 * corners] = xs[e];
+				octagon[2 * corners + 1] = ys[e];
+				corners++;
+			}
+		}
+		while (corners > 1 && octagon[2 * corners - 2] == octagon[0] && octagon[2 * corners - 1] == octagon[1]) {
+			corners--;
+		}
+
+		boolean[] inside = new boolean[count];
+		if (corners >= 3) {
+			Filter filter = new Filter(xs, ys, octagon, corners, inside, 0, count);
+			if (count > FILTER_CHUNK) {
+				ForkJoinPool.commonPool().invoke(filter);
+			} else {
+				filter.filter();
+			}
+		}
+		int m = 0;
+		for (int i = 0; i < count; i++) {
+			if (!inside[i]) {
+				m++;
+			}
+		}
+		double[] px = new double[m], py = new double[m];
+		m = 0;
+		for (int i = 0; i < count; i++) {
+			if (!inside[i]) {
+				px[m] = xs[i];
+				py[m] = ys[i];
+				m++;
+			}
+		}
+		sort(px, py, 0, m - 1);
+		return monotoneChain(px, py, m);
+	}
+
+	private static void update(int[] extremes, double[] best, int direction, int i, double value) {
+		if (value > best[direction]) {
+			best[direction] = value;
+			extremes[direction] = i;
+		}
+	}
+
+	/*
+	 * Hull of points sorted by x, then y: the lower chain from left to right
+	 * and the upper chain from right to left, popping the points that do not
+	 * make a left turn.
+	 */
+	private static Point2D.Double[] monotoneChain(double[] px, double[] py, int m) {
+		// remove exact duplicates, which the sort made consecutive
+		int u = 0;
+		for (int i = 0; i < m; i++) {
+			if (u == 0 || px[i] != px[u - 1] || py[i] != py[u - 1]) {
+				px[u] = px[i];
+				py[u] = py[i];
+				u++;
+			}
+		}
+		if (u < 3) {
+			Point2D.Double[] hull = new Point2D.Double[u];
+			for (int i = 0; i < u; i++) {
+				hull[i] = new Point2D.Double(px[i], py[i]);
+			}
+			return hull;
+		}
+		int[] chain = new int[2 * u];
+		int k = 0;
+		for (int i = 0; i < u; i++) {
+			while (k >= 2 && cross(px, py, chain[k - 2], chain[k - 1], i) <= 0) {
+				k--;
+			}
+			chain[k++] = i;
+		}
+		for (int i = u - 2, lower = k + 1; i >= 0; i--) {
+			while (k >= lower && cross(px, py, chain[k - 2], chain[k - 1], i) <= 0) {
+				k--;
+			}
+			chain[k++] = i;
+		}
+		// chain[k - 1] closes the hull on chain[0]
+		int size = k - 1;
+		if (size < 3) {
+			return new Point2D.Double[] { new Point2D.Double(px[0], py[0]), new Point2D.Double(px[u - 1], py[u - 1]) };
+		}
+		int lowest = 0;
+		for (int i = 1; i < size; i++) {
+			int a = chain[i], b = chain[lowest];
+			if (py[a] < py[b] || (py[a] == py[b] && px[a] < px[b])) {
+				lowest = i;
+			}
+		}
+		Point2D.Double[] hull = new Point2D.Double[size + 1];
+		for (int i = 0; i < size; i++) {
+			int j = chain[(lowest + i) % size];
+			hull[i] = new Point2D.Double(px[j], py[j]);
+		}
+		hull[size] = hull[0];
+		return hull;
+	}
+
+	private static double cross(double[] px, double[] py, int a, int b, int c) {
+		return (px[b] - px[a]) * (py[c] - py[a]) - (py[b] - py[a]) * (px[c] - px[a]);
+	}
+
+	/* Sorts the points of indices lo to hi, both included, by x and then y */
+	private static void sort(double[] px, double[] py, int lo, int hi) {
+		while (hi - lo >= INSERTION_SORT_SIZE) {
+			// median of three pivot
+			int mid = (lo + hi) >>> 1;
+			if (less(px, py, mid, lo))
+				swap(px, py, mid, lo);
+			if (less(px, py, hi, lo))
+				swap(px, py, hi, lo);
+			if (less(px, py, hi, mid))
+				swap(px, py, hi, mid);
+			double x = px[mid], y = py[mid];
+			int i = lo, j = hi;
+			while (i <= j) {
+				while (px[i] < x || (px[i] == x && py[i] < y))
+					i++;
+				while (px[j] > x || (px[j] == x && py[j] > y))
+					j--;
+				if (i <= j) {
+					swap(px, py, i, j);
+					i++;
+					j--;
+				}
+			}
+			// recurse on the smaller side
+			if (j - lo < hi - i) {
+				sort(px, py, lo, j);
+				lo = i;
+			} else {
+				sort(px, py, i, hi);
+				hi = j;
+			}
+		}
+		for (int i = lo + 1; i <= hi; i++) {
+			double x = px[i], y = py[i];
+			int j = i - 1;
+			while (j >= lo && (px[j] > x || (px[j] == x && py[j] > y))) {
+				px[j + 1] = px[j];
+				py[j + 1] = py[j];
+				j--;
+			}
+			px[j + 1] = x;
+			py[j + 1] = y;
+		}
+	}
+
+	private static boolean less(double[] px, double[] py, int a, int b) {
+		return px[a] < px[b] || (px[a] == px[b] && py[a] < py[b]);
+	}
+
+	private static void swap(double[] px, double[] py, int a, int b) {
+		double x = px[a], y = py[a];
+		px[a] = px[b];
+		py[a] = py[b];
+		px[b] = x;
+		py[b] = y;
+	}
+
+	/*
+	 * Marks the points of indices [from, to) strictly inside the octagon,
+	 * splitting the range in two while it is too large.
+	 */
+	private static final class Filter extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final double[] xs, ys;
+		/* Corners of the octagon, counter-clockwise, as x, y pairs */
+		private final double[] octagon;
+		private final int corners;
+		private final boolean[] inside;
+		private final int from, to;
+
+		Filter(double[] xs, double[] ys, double[] octagon, int corners, boolean[] inside, int from, int to) {
+			this.xs = xs;
+			this.ys = ys;
+			this.octagon = octagon;
+			this.corners = corners;
+			this.inside = inside;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.to - this.from <= FILTER_CHUNK) {
+				filter();
+			} else {
+				int mid = (this.from + this.to) >>> 1;
+				invokeAll(new Filter(this.xs, this.ys, this.octagon, this.corners, this.inside, this.from, mid),
+						new Filter(this.xs, this.ys, this.octagon, this.corners, this.inside, mid, this.to));
+			}
+		}
+
+		void filter() {
+			double[] o = this.octagon;
+			for (int i = this.from; i < this.to; i++) {
+				double x = this.xs[i], y = this.ys[i];
+				boolean in = true;
+				for (int c = 0; c < this.corners && in; c++) {
+					int d = (c + 1 == this.corners) ? 0 : c + 1;
+					double ax = o[2 * c], ay = o[2 * c + 1];
+					in = (o[2 * d] - ax) * (y - ay) - (o[2 * d + 1] - ay) * (x - ax) > 0;
+				}
+				this.inside[i] = in;
+			}
+		}
+	}
+}
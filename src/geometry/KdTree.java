@@ -361,6 +361,106 @@ public class KdTree<T extends KdTree.XYZPoint> implements Iterable<T> {
         return list;
     }
 
+    /**
+     * Snapshot of the tree for concurrent readers. The snapshot is immutable
+     * and answers queries without locks while this tree goes on changing; it
+     * shares the points, not their neighbour lists' contents.
+     *
+     * @return flat tree over the points of this tree.
+     */
+    @SuppressWarnings("unchecked")
+    public FlatKdTree<T> freeze() {
+        List<T> points = new ArrayList<T>();
+        for (XYZPoint p : getAllNodes())
+            points.add((T) p);
+        return new FlatKdTree<T>(points);
+    }
+
+    /**
+     * Receives the points found by a range search, one at a time.
+     */
+    public interface Visitor<T> {
+        /**
+         * @param value
+         *            point in the range.
+         * @return False to stop the search.
+         */
+        boolean visit(T value);
+    }
+
+    /**
+     * Visits every point whose x and y lie in the closed rectangle, ignoring
+     * z. Points are visited in no particular order.
+     *
+     * @param minX
+     * @param minY
+     * @param maxX
+     * @param maxY
+     * @param visitor
+     *            receives the points in the rectangle.
+     * @return False if the visitor stopped the search.
+     */
+    public boolean rangeSearch(double minX, double minY, double maxX, double maxY, Visitor<? super T> visitor) {
+        return rangeSearch(root, minX, minY, maxX, maxY, visitor);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends KdTree.XYZPoint> boolean rangeSearch(KdNode node, double minX, double minY, double maxX, double maxY, Visitor<? super T> visitor) {
+        while (node != null) {
+            XYZPoint p = node.id;
+            if (p.x >= minX && p.x <= maxX && p.y >= minY && p.y <= maxY && !visitor.visit((T) p))
+                return false;
+
+            // Lesser holds the points up to the node on its axis, greater
+            // the points above it
+            int axis = node.depth % node.k;
+            double key = (axis == X_AXIS) ? p.x : p.y;
+            double min = (axis == X_AXIS) ? minX : minY;
+            double max = (axis == X_AXIS) ? maxX : maxY;
+            boolean lesser = axis == Z_AXIS || min <= key;
+            boolean greater = axis == Z_AXIS || max > key;
+            if (lesser && greater && !rangeSearch(node.lesser, minX, minY, maxX, maxY, visitor))
+                return false;
+            node = greater ? node.greater : (lesser ? node.lesser : null);
+        }
+        return true;
+    }
+
+    /**
+     * Visits every point whose Euclidean distance to (x, y) is at most the
+     * radius, ignoring z. Points are visited in no particular order.
+     *
+     * @param x
+     * @param y
+     * @param radius
+     * @param visitor
+     *            receives the points in the disk.
+     * @return False if the visitor stopped the search.
+     */
+    public boolean radiusSearch(double x, double y, double radius, Visitor<? super T> visitor) {
+        return radiusSearch(root, x, y, radius, visitor);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends KdTree.XYZPoint> boolean radiusSearch(KdNode node, double x, double y, double radius, Visitor<? super T> visitor) {
+        double r2 = radius * radius;
+        while (node != null) {
+            XYZPoint p = node.id;
+            double dx = p.x - x, dy = p.y - y;
+            if (dx * dx + dy * dy <= r2 && !visitor.visit((T) p))
+                return false;
+
+            int axis = node.depth % node.k;
+            double delta = (axis == X_AXIS) ? x - p.x : y - p.y;
+            boolean lesser = axis == Z_AXIS || delta <= radius;
+            boolean greater = axis == Z_AXIS || -delta < radius;
+            if (lesser && greater && !radiusSearch(node.lesser, x, y, radius, visitor))
+                return false;
+            node = greater ? node.greater : (lesser ? node.lesser : null);
+        }
+        return true;
+    }
+
     /** 
      * Searches the K nearest neighbor.
      *
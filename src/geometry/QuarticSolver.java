@@ -1,6 +1,14 @@
 package geometry;
 
+import java.util.Arrays;
+
 public final class QuarticSolver {
+    /*
+     * Ratio between the magnitudes of two groups of roots above which each
+     * group is found on its own polynomial, see solveSeparated
+     */
+    private static final double SEPARATION = 1.0e4;
+
     /**
      * Solves the equation ax^2+bx+c=0. Solutions are returned in a sorted array
      * if they exist.
@@ -23,6 +31,101 @@ public final class QuarticSolver {
         return (t0 > t1) ? new double[] { t1, t0 } : new double[] { t0, t1 };
     }
 
+    /**
+     * Solves the equation ax^2+bx+c=0, or bx+c=0 if a is zero. The real roots
+     * are stored in increasing order at the beginning of roots.
+     * 
+     * @param a     coefficient of x^2
+     * @param b     coefficient of x^1
+     * @param c     coefficient of x^0
+     * @param roots array of length at least 2 receiving the roots
+     * @return the number of real roots
+     */
+    public static int solveQuadric(double a, double b, double c, double[] roots) {
+        if (a == 0) {
+            if (b == 0)
+                return 0;
+            roots[0] = -c / b;
+            return 1;
+        }
+        double disc = b * b - 4 * a * c;
+        if (disc < 0)
+            return 0;
+        disc = Math.sqrt(disc);
+        double q = ((b < 0) ? -0.5 * (b - disc) : -0.5 * (b + disc));
+        if (q == 0) {
+            // b and c are both zero
+            roots[0] = 0;
+            return 1;
+        }
+        double t0 = q / a;
+        double t1 = c / q;
+        roots[0] = Math.min(t0, t1);
+        roots[1] = Math.max(t0, t1);
+        return 2;
+    }
+
+    /**
+     * Solves the equation ax^3+bx^2+cx+d=0. The real roots are returned in a
+     * sorted array.
+     * 
+     * @param a coefficient of x^3
+     * @param b coefficient of x^2
+     * @param c coefficient of x^1
+     * @param d coefficient of x^0
+     * @return a sorted array of roots, or <code>null</code> if no solutions
+     *         exist
+     */
+    public static double[] solveCubic(double a, double b, double c, double d) {
+        double[] roots = new double[3];
+        int n = solveCubic(a, b, c, d, roots);
+        return (n == 0) ? null : Arrays.copyOf(roots, n);
+    }
+
+    /**
+     * Solves the equation ax^3+bx^2+cx+d=0, or the quadric if a is zero. The
+     * real roots are stored in increasing order at the beginning of roots, and
+     * polished by Newton's method.
+     * 
+     * @param roots array of length at least 3 receiving the roots
+     * @return the number of real roots
+     */
+    public static int solveCubic(double a, double b, double c, double d, double[] roots) {
+        if (a == 0)
+            return solveQuadric(b, c, d, roots);
+        double p = b / a;
+        double q = c / a;
+        double r = d / a;
+        int separated = solveSeparated(0, a, b, c, d, roots);
+        if (separated >= 0)
+            return separated;
+        double A2 = p * p;
+        double Q = (A2 - 3.0 * q) / 9.0;
+        double R = (p * (A2 - 4.5 * q) + 13.5 * r) / 27.0;
+        double Q3 = Q * Q * Q;
+        double R2 = R * R;
+        double an = p / 3.0;
+        int n;
+        if (Q3 > 0 && R2 <= Q3 * (1 + 1.0e-12)) {
+            // three real roots, two of them equal when R2 = Q3
+            double theta = Math.acos(Math.max(-1, Math.min(1, R / Math.sqrt(Q3)))) / 3.0;
+            double sQ = -2.0 * Math.sqrt(Q);
+            roots[0] = sQ * Math.cos(theta) - an;
+            roots[1] = sQ * Math.cos(theta + 2.0 * Math.PI / 3.0) - an;
+            roots[2] = sQ * Math.cos(theta - 2.0 * Math.PI / 3.0) - an;
+            n = 3;
+        } else {
+            double sA = -Math.copySign(Math.cbrt(Math.abs(R) + Math.sqrt(R2 - Q3)), R);
+            double sB = (sA == 0) ? 0 : Q / sA;
+            roots[0] = sA + sB - an;
+            n = 1;
+        }
+        for (int i = 0; i < n; i++)
+            roots[i] = polish(roots[i], 0, 1, p, q, r);
+        sort(roots, n);
+        return n;
+    }
+
     /**
      * Solve a quartic equation of the form ax^4+bx^3+cx^2+cx^1+d=0. The roots
      * are returned in a sorted array of doubles in increasing order.
@@ -36,11 +139,46 @@ public final class QuarticSolver {
      *         exist
      */
     public static double[] solveQuartic(double a, double b, double c, double d, double e) {
+        double[] roots = new double[4];
+        int n = solveQuartic(a, b, c, d, e, roots);
+        return (n == 0) ? null : Arrays.copyOf(roots, n);
+    }
+
+    /**
+     * Solves the equation ax^4+bx^3+cx^2+dx+e=0, or the cubic if a is zero.
+     * The real roots are stored in increasing order at the beginning of roots;
+     * a double root may be stored twice.
+     * 
+     * The variable is first scaled so that the roots of the scaled quartic are
+     * at most 2 in absolute value, which gives a meaning to the thresholds of
+     * Ferrari's method whatever the size of the coefficients. The roots are
+     * then polished by Newton's method on the original quartic.
+     * 
+     * @param roots array of length at least 4 receiving the roots
+     * @return the number of real roots
+     */
+    public static int solveQuartic(double a, double b, double c, double d, double e, double[] roots) {
+        if (a == 0)
+            return solveCubic(b, c, d, e, roots);
         double inva = 1 / a;
-        double c1 = b * inva;
-        double c2 = c * inva;
-        double c3 = d * inva;
-        double c4 = e * inva;
+        double m1 = b * inva;
+        double m2 = c * inva;
+        double m3 = d * inva;
+        double m4 = e * inva;
+        int separated = solveSeparated(a, b, c, d, e, roots);
+        if (separated >= 0)
+            return separated;
+        // Fujiwara's bound on the magnitude of the roots
+        double scale = 2 * Math.max(Math.max(Math.abs(m1), Math.sqrt(Math.abs(m2))),
+                Math.max(Math.cbrt(Math.abs(m3)), Math.pow(Math.abs(0.5 * m4), 0.25)));
+        if (scale == 0) {
+            roots[0] = 0;
+            return 1;
+        }
+        double c1 = m1 / scale;
+        double c2 = m2 / (scale * scale);
+        double c3 = m3 / (scale * scale * scale);
+        double c4 = m4 / (scale * scale * scale * scale);
         // cubic resolvant
         double c12 = c1 * c1;
         double p = -0.375 * c12 + c2;
@@ -49,16 +187,16 @@ public final class QuarticSolver {
         double z = solveCubicForQuartic(-0.5 * p, -r, 0.5 * r * p - 0.125 * q * q);
         double d1 = 2.0 * z - p;
         if (d1 < 0) {
-            if (d1 > 1.0e-10)
+            if (d1 > -1.0e-10)
                 d1 = 0;
             else
-                return null;
+                return 0;
         }
         double d2;
         if (d1 < 1.0e-10) {
             d2 = z * z - r;
             if (d2 < 0)
-                return null;
+                return 0;
             d2 = Math.sqrt(d2);
         } else {
             d1 = Math.sqrt(d1);
@@ -69,38 +207,26 @@ public final class QuarticSolver {
         double q2 = -0.25 * c1;
         double pm = q1 - 4 * (z - d2);
         double pp = q1 - 4 * (z + d2);
-        if (pm >= 0 && pp >= 0) {
-            // 4 roots (!)
-            pm = Math.sqrt(pm);
-            pp = Math.sqrt(pp);
-            double[] results = new double[4];
-            results[0] = -0.5 * (d1 + pm) + q2;
-            results[1] = -0.5 * (d1 - pm) + q2;
-            results[2] = 0.5 * (d1 + pp) + q2;
-            results[3] = 0.5 * (d1 - pp) + q2;
-            // tiny insertion sort
-            for (int i = 1; i < 4; i++) {
-                for (int j = i; j > 0 && results[j - 1] > results[j]; j--) {
-                    double t = results[j];
-                    results[j] = results[j - 1];
-                    results[j - 1] = t;
-                }
-            }
-            return results;
-        } else if (pm >= 0) {
+        // double roots may come out slightly negative
+        if (pm < 0 && pm > -1.0e-10)
+            pm = 0;
+        if (pp < 0 && pp > -1.0e-10)
+            pp = 0;
+        int n = 0;
+        if (pm >= 0) {
             pm = Math.sqrt(pm);
-            double[] results = new double[2];
-            results[0] = -0.5 * (d1 + pm) + q2;
-            results[1] = -0.5 * (d1 - pm) + q2;
-            return results;
-        } else if (pp >= 0) {
+            roots[n++] = -0.5 * (d1 + pm) + q2;
+            roots[n++] = -0.5 * (d1 - pm) + q2;
+        }
+        if (pp >= 0) {
             pp = Math.sqrt(pp);
-            double[] results = new double[2];
-            results[0] = 0.5 * (d1 - pp) + q2;
-            results[1] = 0.5 * (d1 + pp) + q2;
-            return results;
+            roots[n++] = 0.5 * (d1 - pp) + q2;
+            roots[n++] = 0.5 * (d1 + pp) + q2;
         }
-        return null;
+        for (int i = 0; i < n; i++)
+            roots[i] = polish(roots[i] * scale, 1, m1, m2, m3, m4);
+        sort(roots, n);
+        return n;
     }
 
     /**
@@ -122,7 +248,9 @@ public final class QuarticSolver {
         double d = Q3 - R2;
         double an = p / 3.0;
         if (d >= 0) {
-            d = R / Math.sqrt(Q3);
+            if (Q3 == 0)
+                return -an;
+            d = Math.max(-1, Math.min(1, R / Math.sqrt(Q3)));
             double theta = Math.acos(d) / 3.0;
             double sQ = -2.0 * Math.sqrt(Q);
             return sQ * Math.cos(theta) - an;
@@ -134,4 +262,98 @@ public final class QuarticSolver {
                 return -(sQ + Q / sQ) - an;
         }
     }
+
+    /*
+     * Solves p0 x^4 + p1 x^3 + p2 x^2 + p3 x + p4 = 0 when its roots come in
+     * two groups of very different magnitudes, as when the leading coefficients
+     * are tiny. The k small roots are those of p_(4-k) x^k + ... + p4, the
+     * others those of the leading terms divided by x^k; both are then polished
+     * on the whole polynomial. Returns -1 if the roots are not separated, as
+     * a single method would then lose the small roots to cancellation.
+     */
+    private static int solveSeparated(double p0, double p1, double p2, double p3, double p4, double[] roots) {
+        double[] p = { p0, p1, p2, p3, p4 };
+        int lead = 0;
+        while (lead < 4 && p[lead] == 0)
+            lead++;
+        int degree = 4 - lead;
+        for (int k = 1; k < degree; k++) {
+            double pk = Math.abs(p[4 - k]);
+            if (pk == 0)
+                continue;
+            // bound on the small roots, and on the large ones from below
+            double small = 0;
+            for (int i = 0; i < k; i++)
+                small = Math.max(small, Math.pow(Math.abs(p[4 - i]) / pk, 1.0 / (k - i)));
+            double large = Double.POSITIVE_INFINITY;
+            for (int j = k + 1; j <= degree; j++) {
+                if (p[4 - j] != 0)
+                    large = Math.min(large, Math.pow(pk / Math.abs(p[4 - j]), 1.0 / (j - k)));
+            }
+            if (large > SEPARATION * small) {
+                double[] part = new double[4];
+                int n = solveTerms(p, 4 - k, 4, part);
+                for (int i = 0; i < n; i++)
+                    roots[i] = part[i];
+                int m = solveTerms(p, lead, 4 - k, part);
+                for (int i = 0; i < m; i++)
+                    roots[n + i] = part[i];
+                n += m;
+                for (int i = 0; i < n; i++)
+                    roots[i] = polish(roots[i], p0, p1, p2, p3, p4);
+                sort(roots, n);
+                return n;
+            }
+        }
+        return -1;
+    }
+
+    /*
+     * Roots of the polynomial of coefficients p[from..to], leading first.
+     */
+    private static int solveTerms(double[] p, int from, int to, double[] roots) {
+        switch (to - from) {
+        case 1:
+            return solveQuadric(0, p[from], p[to], roots);
+        case 2:
+            return solveQuadric(p[from], p[from + 1], p[to], roots);
+        case 3:
+            return solveCubic(p[from], p[from + 1], p[from + 2], p[to], roots);
+        default:
+            return 0;
+        }
+    }
+
+    /*
+     * Newton's method on c0 x^4 + c1 x^3 + c2 x^2 + c3 x + c4. Stops as soon as
+     * a step does not reduce the value of the polynomial.
+     */
+    private static double polish(double x, double c0, double c1, double c2, double c3, double c4) {
+        double fx = (((c0 * x + c1) * x + c2) * x + c3) * x + c4;
+        for (int i = 0; i < 4 && fx != 0; i++) {
+            double df = ((4 * c0 * x + 3 * c1) * x + 2 * c2) * x + c3;
+            if (df == 0)
+                break;
+            double y = x - fx / df;
+            double fy = (((c0 * y + c1) * y + c2) * y + c3) * y + c4;
+            if (!(Math.abs(fy) < Math.abs(fx)))
+                break;
+            x = y;
+            fx = fy;
+        }
+        return x;
+    }
+
+    /*
+     * Tiny insertion sort of the n first entries.
+     */
+    private static void sort(double[] values, int n) {
+        for (int i = 1; i < n; i++) {
+            for (int j = i; j > 0 && values[j - 1] > values[j]; j--) {
+                double t = values[j];
+                values[j] = values[j - 1];
+                values[j - 1] = t;
+            }
+        }
+    }
 }
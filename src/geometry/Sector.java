@@ -36,25 +36,14 @@ public class Sector {
 		this.edge3 = edge3;
 		this.edge4 = edge4;
 
-		sector = new Convex();
-		if(sites != null)
+		// the vertices of a sector are usually already in convex order
+		sector = Convex.fromPolygon(vertices);
+		if (sites != null) {
 			this.segmentOrigin = new Point2D.Double[vertices.size()];
-		else
+			for (int i = 0; i < vertices.size(); i++)
+				this.segmentOrigin[i] = sites.get(i);
+		} else
 			this.segmentOrigin = null;
-		
-		System.out.println("Sector vertices: ");
-        for (int i = 0; i < vertices.size(); i++) {
-            sector.addPoint(vertices.get(i));
-            System.out.println("("+vertices.get(i).x +"," + vertices.get(i).y + ")");
-            if(sites != null)
-                this.segmentOrigin[i] = sites.get(i);
-        }
-		
-//		for (int i = 0; i < vertices.size(); i++) {
-//			sector.addPoint(vertices.get(i));
-//			if(sites != null)
-//				this.segmentOrigin[i] = sites.get(i);
-//		}
 	}
 
 	/*
@@ -0,0 +1,252 @@
+package geometry;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import trapmap.Segment;
+
+/*
+ * Doubly-connected edge list of the arrangement of spokes and hull edges,
+ * whose bounded faces are the sectors of a pair of sites.
+ *
+ * Vertices are the end points of the segments, as floats like the segments
+ * store them, and are found by their coordinates in a hash map. The half-edges
+ * leaving a vertex are sorted once by spokeAngle into a ring, and each
+ * half-edge is followed along its face by the half-edge that leaves its
+ * target just before its twin in that ring. Faces are traced once when the
+ * graph is built, so that the sectors on both sides of a segment are found
+ * without sorting neighbours again, and a face builds its sector once.
+ */
+public class SectorGraph {
+	/* Vertex of the arrangement */
+	public static final class Vertex {
+		public final Point2D.Double point;
+		/* Half-edges leaving the vertex, by increasing spokeAngle */
+		HalfEdge[] ring = new HalfEdge[0];
+
+		Vertex(Point2D.Double point) {
+			this.point = point;
+		}
+
+		/* Number of half-edges leaving the vertex */
+		public int degree() {
+			return this.ring.length;
+		}
+
+		/* Half-edge of rank i around the vertex, by increasing spokeAngle */
+		public HalfEdge getHalfEdge(int i) {
+			return this.ring[i];
+		}
+	}
+
+	/* Half of a segment, going from its origin to the origin of its twin */
+	public static final class HalfEdge {
+		public final Vertex origin;
+		HalfEdge twin;
+		/* Next half-edge along the face, and rank of this one in the ring */
+		HalfEdge next;
+		int rank;
+		double angle;
+		Face face;
+
+		HalfEdge(Vertex origin) {
+			this.origin = origin;
+		}
+
+		public Vertex target() {
+			return this.twin.origin;
+		}
+
+		public HalfEdge getTwin() {
+			return this.twin;
+		}
+
+		public HalfEdge getNext() {
+			return this.next;
+		}
+
+		public Face getFace() {
+			return this.face;
+		}
+
+		/* spokeAngle of the half-edge at its origin */
+		public double getAngle() {
+			return this.angle;
+		}
+	}
+
+	/* Face of the arrangement, on the left of its half-edges */
+	public static final class Face {
+		final HalfEdge edge;
+		/* True for the face outside the hull */
+		boolean outer;
+		/* Sector of the face, built on first use */
+		Sector sector;
+
+		Face(HalfEdge edge) {
+			this.edge = edge;
+		}
+
+		public boolean isOuter() {
+			return this.outer;
+		}
+
+		/* Vertices of the face, in order along its boundary */
+		public ArrayList<Point2D.Double> getVertices() {
+			ArrayList<Point2D.Double> vertices = new ArrayList<Point2D.Double>();
+			HalfEdge e = this.edge;
+			do {
+				vertices.add(e.origin.point);
+				e = e.next;
+			} while (e != this.edge);
+			return vertices;
+		}
+	}
+
+	private final HashMap<Point2D.Double, Vertex> vertices = new HashMap<Point2D.Double, Vertex>();
+	private final List<Face> faces = new ArrayList<Face>();
+
+	/*
+	 * Arrangement of the segments, which only meet at their end points.
+	 * Zero-length segments and repeated segments are skipped.
+	 */
+	public SectorGraph(List<Segment> segments) {
+		HashMap<Vertex, ArrayList<HalfEdge>> rings = new HashMap<Vertex, ArrayList<HalfEdge>>();
+		for (Segment s : segments) {
+			Vertex u = vertex(Util.toPoint2D(s.getLeftPoint()));
+			Vertex v = vertex(Util.toPoint2D(s.getRightPoint()));
+			if (u == v)
+				continue;
+			ArrayList<HalfEdge> uRing = rings.computeIfAbsent(u, k -> new ArrayList<HalfEdge>());
+			ArrayList<HalfEdge> vRing = rings.computeIfAbsent(v, k -> new ArrayList<HalfEdge>());
+			boolean known = false;
+			for (HalfEdge e : uRing) {
+				if (e.twin.origin == v) {
+					known = true;
+					break;
+				}
+			}
+			if (known)
+				continue;
+			HalfEdge e = new HalfEdge(u), f = new HalfEdge(v);
+			e.twin = f;
+			f.twin = e;
+			e.angle = Voronoi.spokeAngle(u.point, v.point);
+			f.angle = Voronoi.spokeAngle(v.point, u.point);
+			uRing.add(e);
+			vRing.add(f);
+		}
+
+		for (Vertex v : this.vertices.values()) {
+			ArrayList<HalfEdge> ring = rings.get(v);
+			v.ring = (ring == null) ? new HalfEdge[0] : ring.toArray(new HalfEdge[ring.size()]);
+			sortByAngle(v.ring);
+			for (int i = 0; i < v.ring.length; i++)
+				v.ring[i].rank = i;
+		}
+
+		// the half-edge after e leaves its target just before its twin
+		for (Vertex v : this.vertices.values()) {
+			for (HalfEdge e : v.ring) {
+				HalfEdge[] ring = e.twin.origin.ring;
+				int rank = e.twin.rank;
+				e.next = ring[(rank == 0) ? ring.length - 1 : rank - 1];
+			}
+		}
+
+		for (Vertex v : this.vertices.values()) {
+			for (HalfEdge e : v.ring) {
+				if (e.face != null)
+					continue;
+				Face face = new Face(e);
+				double area = 0;
+				HalfEdge h = e;
+				do {
+					h.face = face;
+					Point2D.Double a = h.origin.point, b = h.twin.origin.point;
+					area += a.x * b.y - b.x * a.y;
+					h = h.next;
+				} while (h != e);
+				// faces are on the left of their half-edges, so the outer face is
+				// the one going clockwise
+				face.outer = area < 0;
+				this.faces.add(face);
+			}
+		}
+	}
+
+	private Vertex vertex(Point2D.Double p) {
+		Vertex v = this.vertices.get(p);
+		if (v == null) {
+			v = new Vertex(p);
+			this.vertices.put(p, v);
+		}
+		return v;
+	}
+
+	/* Insertion sort, rings are small */
+	private static void sortByAngle(HalfEdge[] ring) {
+		for (int i = 1; i < ring.length; i++) {
+			HalfEdge e = ring[i];
+			int j = i - 1;
+			while (j >= 0 && ring[j].angle > e.angle) {
+				ring[j + 1] = ring[j];
+				j--;
+			}
+			ring[j + 1] = e;
+		}
+	}
+
+	public int numOfVertices() {
+		return this.vertices.size();
+	}
+
+	public List<Face> getFaces() {
+		return this.faces;
+	}
+
+	/*
+	 * Vertex at the point, or null. Points are compared as floats, the way the
+	 * segments store them; failing that, the vertex at less than a pixel is
+	 * taken, as Util.samePoints would.
+	 */
+	public Vertex getVertex(Point2D.Double p) {
+		Vertex v = this.vertices.get(new Point2D.Double((float) p.x, (float) p.y));
+		if (v != null)
+			return v;
+		for (Vertex w : this.vertices.values()) {
+			if (Util.samePoints(p, w.point))
+				return w;
+		}
+		return null;
+	}
+
+	/*
+	 * Half-edge leaving the vertex at a towards b. If they are not joined, as
+	 * when a sector edge goes through a vertex in its interior, this is the
+	 * half-edge leaving a closest in angle to b, which bounds the same faces.
+	 */
+	public HalfEdge getHalfEdge(Point2D.Double a, Point2D.Double b) {
+		Vertex u = getVertex(a), v = getVertex(b);
+		if (u == null || u.ring.length == 0)
+			return null;
+		for (HalfEdge e : u.ring) {
+			if (e.twin.origin == v)
+				return e;
+		}
+		double angle = Voronoi.spokeAngle(u.point, b);
+		HalfEdge best = null;
+		double bestDistance = Double.POSITIVE_INFINITY;
+		for (HalfEdge e : u.ring) {
+			double d = Math.abs(e.angle - angle);
+			d = Math.min(d, 2 * Math.PI - d);
+			if (d < bestDistance) {
+				bestDistance = d;
+				best = e;
+			}
+		}
+		return best;
+	}
+}
@@ -0,0 +1,560 @@
+package geometry;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import trapmap.Segment;
+
+/*
+ * Bentley-Ottmann sweep reporting the pairs of crossing segments in
+ * O((n + k) log n) for n segments and k crossings.
+ *
+ * Two segments cross if they meet at a single point that is interior to one
+ * of them at least: segments that only share an end point do not cross, so
+ * that polylines and fans of segments from a common point can be swept as
+ * they are.
+ *
+ * The sweep line moves along x in coordinates rotated by a small angle, so
+ * that segments that are vertical in the plane are not vertical for the
+ * sweep. The segments crossed by the sweep line are kept in a treap
+ * in their order along the line, its nodes linked to their neighbours. Each
+ * segment keeps its node, so that removing a segment or reordering crossing
+ * segments does not search the treap: only insertions compare coordinates.
+ *
+ * Zero-length segments are skipped: the sweep would meet their end before
+ * their start, and they bound nothing. They cross no segment.
+ *
+ * Several segments may cross at the same point, as spokes do at a site lying
+ * on a spoke of another site. The crossings computed for their pairs then
+ * only agree up to rounding, so all the segments through the point of a
+ * crossing are put in their order after it at once.
+ */
+public final class SegmentSweep {
+	private static final double ROTATION_COS = Math.cos(0.1), ROTATION_SIN = Math.sin(0.1);
+	/* Relative distance below which a point is on a segment */
+	private static final double EPSILON = 1e-9;
+
+	/* Event types, in their order of processing at a common point */
+	private static final int END = 0, CROSSING = 1, START = 2;
+
+	/* Segment count, end points in the plane and in rotated coordinates */
+	private final int n;
+	private final double[] coords;
+	private final double[] x0, y0, x1, y1;
+	/* True if the segment goes from its second point to its first in the sweep */
+	private final boolean[] flipped;
+
+	/* Crossings found by the last sweep */
+	private int crossings = 0;
+	private int[] firsts = new int[16], seconds = new int[16];
+	private double[] xs = new double[16], ys = new double[16];
+
+	/* State of the sweep */
+	private Node root;
+	private Node[] nodes;
+	private double sweepX, sweepY;
+	private PriorityQueue<Event> events;
+	/* Pairs of crossing segments found so far, by key, 0 for empty slots */
+	private long[] reported;
+	private int reportedCount;
+	private Random random;
+	/* Nodes of the run of segments reordered at a crossing point */
+	private Node[] runNodes = new Node[8];
+
+	/*
+	 * Sweeps the segments from (coords[4 i], coords[4 i + 1]) to
+	 * (coords[4 i + 2], coords[4 i + 3]), for i < count.
+	 */
+	public SegmentSweep(double[] coords, int count) {
+		this.n = count;
+		this.coords = coords;
+		this.x0 = new double[count];
+		this.y0 = new double[count];
+		this.x1 = new double[count];
+		this.y1 = new double[count];
+		this.flipped = new boolean[count];
+		for (int i = 0; i < count; i++) {
+			double ax = rotateX(coords[4 * i], coords[4 * i + 1]), ay = rotateY(coords[4 * i], coords[4 * i + 1]);
+			double bx = rotateX(coords[4 * i + 2], coords[4 * i + 3]), by = rotateY(coords[4 * i + 2], coords[4 * i + 3]);
+			// the sweep meets the start point first
+			if (ax < bx || (ax == bx && ay <= by)) {
+				this.x0[i] = ax;
+				this.y0[i] = ay;
+				this.x1[i] = bx;
+				this.y1[i] = by;
+			} else {
+				this.x0[i] = bx;
+				this.y0[i] = by;
+				this.x1[i] = ax;
+				this.y1[i] = ay;
+				this.flipped[i] = true;
+			}
+		}
+	}
+
+	/* Sweeps the segments of the list, in its order */
+	public SegmentSweep(List<Segment> segments) {
+		this(toCoordinates(segments), segments.size());
+	}
+
+	private static double[] toCoordinates(List<Segment> segments) {
+		double[] coords = new double[4 * segments.size()];
+		int k = 0;
+		for (Segment s : segments) {
+			coords[k++] = s.getLeftPoint().x;
+			coords[k++] = s.getLeftPoint().y;
+			coords[k++] = s.getRightPoint().x;
+			coords[k++] = s.getRightPoint().y;
+		}
+		return coords;
+	}
+
+	private static double rotateX(double x, double y) {
+		return ROTATION_COS * x - ROTATION_SIN * y;
+	}
+
+	private static double rotateY(double x, double y) {
+		return ROTATION_SIN * x + ROTATION_COS * y;
+	}
+
+	/* Number of crossings found by the last call to run */
+	public int size() {
+		return this.crossings;
+	}
+
+	/* Index of the first segment of crossing k */
+	public int getFirst(int k) {
+		return this.firsts[k];
+	}
+
+	/* Index of the second segment of crossing k */
+	public int getSecond(int k) {
+		return this.seconds[k];
+	}
+
+	/* Coordinates of crossing k, in the plane */
+	public double getX(int k) {
+		return this.xs[k];
+	}
+
+	public double getY(int k) {
+		return this.ys[k];
+	}
+
+	/* Finds all crossings; returns their number */
+	public int run() {
+		this.crossings = 0;
+		this.root = null;
+		this.nodes = new Node[this.n];
+		this.events = new PriorityQueue<Event>(Math.max(2 * this.n, 1));
+		this.reported = new long[64];
+		this.reportedCount = 0;
+		this.random = new Random(0);
+		for (int i = 0; i < this.n; i++) {
+			if (this.x0[i] == this.x1[i] && this.y0[i] == this.y1[i])
+				continue;
+			this.events.add(new Event(this.x0[i], this.y0[i], START, i, -1));
+			this.events.add(new Event(this.x1[i], this.y1[i], END, i, -1));
+		}
+		while (!this.events.isEmpty()) {
+			Event e = this.events.poll();
+			this.sweepX = e.x;
+			this.sweepY = e.y;
+			if (e.type == START) {
+				Node node = insert(e.a);
+				check(node.previous, node);
+				check(node, node.next);
+			} else if (e.type == END) {
+				Node node = this.nodes[e.a];
+				Node before = node.previous, after = node.next;
+				delete(node);
+				this.nodes[e.a] = null;
+				check(before, after);
+			} else if (this.nodes[e.a] != null) {
+				reorder(this.nodes[e.a]);
+			}
+		}
+		this.root = null;
+		this.nodes = null;
+		this.events = null;
+		this.reported = null;
+		Arrays.fill(this.runNodes, null);
+		return this.crossings;
+	}
+
+	/*
+	 * Tests the segments of two consecutive nodes, either null. A crossing ahead
+	 * of the sweep line is queued to reorder the segments there. Rounding may
+	 * put the crossing of segments that just met at or behind the sweep line,
+	 * and they are then swapped at once if they are not in order of slope.
+	 */
+	private void check(Node lower, Node upper) {
+		if (lower == null || upper == null)
+			return;
+		int a = lower.segment, b = upper.segment;
+		if (isReported(key(a, b)))
+			return;
+		double t = crossing(a, b);
+		if (Double.isNaN(t))
+			return;
+		addReported(key(a, b));
+		report(a, b, t);
+		double cx = this.x0[a] + t * (this.x1[a] - this.x0[a]);
+		double cy = this.y0[a] + t * (this.y1[a] - this.y0[a]);
+		if (cx > this.sweepX || (cx == this.sweepX && cy > this.sweepY))
+			this.events.add(new Event(cx, cy, CROSSING, a, b));
+		else if (order(a, b) > 0)
+			swap(lower, upper);
+	}
+
+	private void swap(Node lower, Node upper) {
+		int a = lower.segment;
+		lower.segment = upper.segment;
+		upper.segment = a;
+		this.nodes[lower.segment] = lower;
+		this.nodes[upper.segment] = upper;
+		check(lower.previous, lower);
+		check(upper, upper.next);
+	}
+
+	private static long key(int a, int b) {
+		return (a < b) ? ((long) a << 32) | b : ((long) b << 32) | a;
+	}
+
+	private boolean isReported(long key) {
+		int mask = this.reported.length - 1;
+		for (int slot = slot(key, mask); this.reported[slot] != 0; slot = (slot + 1) & mask) {
+			if (this.reported[slot] == key)
+				return true;
+		}
+		return false;
+	}
+
+	private void addReported(long key) {
+		if (2 * (this.reportedCount + 1) > this.reported.length) {
+			long[] old = this.reported;
+			this.reported = new long[2 * old.length];
+			for (long k : old) {
+				if (k != 0)
+					put(k);
+			}
+		}
+		put(key);
+		this.reportedCount++;
+	}
+
+	private void put(long key) {
+		int mask = this.reported.length - 1;
+		int slot = slot(key, mask);
+		while (this.reported[slot] != 0)
+			slot = (slot + 1) & mask;
+		this.reported[slot] = key;
+	}
+
+	private static int slot(long key, int mask) {
+		long h = key * 0x9e3779b97f4a7c15L;
+		return (int) (h ^ (h >>> 32)) & mask;
+	}
+
+	/*
+	 * Puts the run of consecutive segments through the sweep point around the
+	 * node in their order just after it, that is by slope, and reports the
+	 * crossings among them. Several segments may cross at the same point, and
+	 * the crossings computed for their pairs only agree up to rounding, so the
+	 * whole run is sorted at once rather than swapping pairs.
+	 */
+	private void reorder(Node node) {
+		Node first = node, last = node;
+		for (Node p = first.previous; p != null && passes(p.segment); p = first.previous)
+			first = p;
+		int size = 0;
+		for (Node p = first; p != null && (p == first || passes(p.segment)); p = p.next) {
+			if (size == this.runNodes.length)
+				this.runNodes = Arrays.copyOf(this.runNodes, 2 * size);
+			this.runNodes[size++] = p;
+			last = p;
+		}
+		if (size == 1)
+			return;
+		// insertion sort, as runs are short
+		Node[] run = this.runNodes;
+		for (int i = 1; i < size; i++) {
+			int s = run[i].segment, j = i - 1;
+			while (j >= 0 && order(run[j].segment, s) > 0) {
+				run[j + 1].segment = run[j].segment;
+				j--;
+			}
+			run[j + 1].segment = s;
+		}
+		for (int i = 0; i < size; i++)
+			this.nodes[run[i].segment] = run[i];
+		for (int i = 0; i < size; i++) {
+			for (int j = i + 1; j < size; j++) {
+				int a = run[i].segment, b = run[j].segment;
+				if (isReported(key(a, b)))
+					continue;
+				double t = crossing(a, b);
+				if (!Double.isNaN(t)) {
+					addReported(key(a, b));
+					report(a, b, t);
+				}
+			}
+		}
+		check(first.previous, first);
+		check(last, last.next);
+	}
+
+	/* True if segment s goes through the sweep point, up to rounding */
+	private boolean passes(int s) {
+		double tolerance = EPSILON * (1 + Math.abs(this.sweepX) + Math.abs(this.sweepY));
+		if (this.sweepX < this.x0[s] - tolerance || this.sweepX > this.x1[s] + tolerance)
+			return false;
+		double dx = this.x1[s] - this.x0[s], dy = this.y1[s] - this.y0[s];
+		return Math.abs(orientation(s, this.sweepX, this.sweepY)) <= tolerance * Math.sqrt(dx * dx + dy * dy);
+	}
+
+	/* Order of segments through a common point just after it */
+	private int order(int a, int b) {
+		int c = Double.compare(slope(a), slope(b));
+		return (c != 0) ? c : Integer.compare(a, b);
+	}
+
+	/*
+	 * Parameter along segment a of its crossing with segment b, or NaN if they
+	 * do not cross.
+	 */
+	private double crossing(int a, int b) {
+		double d1 = orientation(a, this.x0[b], this.y0[b]), d2 = orientation(a, this.x1[b], this.y1[b]);
+		double d3 = orientation(b, this.x0[a], this.y0[a]), d4 = orientation(b, this.x1[a], this.y1[a]);
+		boolean abApart = (d1 > 0 && d2 < 0) || (d1 < 0 && d2 > 0);
+		boolean baApart = (d3 > 0 && d4 < 0) || (d3 < 0 && d4 > 0);
+		if (abApart && baApart) {
+			return d3 / (d3 - d4);
+		}
+		// an end point of one segment in the interior of the other; end points
+		// computed as crossings of lines are only on the other segment up to
+		// rounding
+		if (baApart && (onLine(a, d1) || onLine(a, d2))) {
+			boolean first = Math.abs(d1) <= Math.abs(d2);
+			double px = first ? this.x0[b] : this.x1[b], py = first ? this.y0[b] : this.y1[b];
+			double dx = this.x1[a] - this.x0[a], dy = this.y1[a] - this.y0[a];
+			return ((px - this.x0[a]) * dx + (py - this.y0[a]) * dy) / (dx * dx + dy * dy);
+		}
+		if (abApart && (onLine(b, d3) || onLine(b, d4))) {
+			return (Math.abs(d3) <= Math.abs(d4)) ? 0 : 1;
+		}
+		return Double.NaN;
+	}
+
+	/*
+	 * True if a point of orientation d with respect to segment s is on the line
+	 * of s, at a distance below EPSILON times the length of s.
+	 */
+	private boolean onLine(int s, double d) {
+		double dx = this.x1[s] - this.x0[s], dy = this.y1[s] - this.y0[s];
+		return Math.abs(d) <= EPSILON * (dx * dx + dy * dy);
+	}
+
+	/* Twice the signed area of the start, the end of segment s and (x, y) */
+	private double orientation(int s, double x, double y) {
+		return (this.x1[s] - this.x0[s]) * (y - this.y0[s]) - (this.y1[s] - this.y0[s]) * (x - this.x0[s]);
+	}
+
+	/* Records the crossing at parameter t along segment a, in the plane */
+	private void report(int a, int b, double t) {
+		if (this.crossings == this.firsts.length) {
+			int size = 2 * this.crossings;
+			this.firsts = Arrays.copyOf(this.firsts, size);
+			this.seconds = Arrays.copyOf(this.seconds, size);
+			this.xs = Arrays.copyOf(this.xs, size);
+			this.ys = Arrays.copyOf(this.ys, size);
+		}
+		// the parameter is along the rotated segment, which may go the other way
+		int from = this.flipped[a] ? 4 * a + 2 : 4 * a, to = this.flipped[a] ? 4 * a : 4 * a + 2;
+		double ax = this.coords[from], ay = this.coords[from + 1];
+		double bx = this.coords[to], by = this.coords[to + 1];
+		this.firsts[this.crossings] = Math.min(a, b);
+		this.seconds[this.crossings] = Math.max(a, b);
+		this.xs[this.crossings] = ax + t * (bx - ax);
+		this.ys[this.crossings] = ay + t * (by - ay);
+		this.crossings++;
+	}
+
+	/*
+	 * Compares segment s, which starts at the sweep point, with segment t
+	 * along the sweep line. Segments through the sweep point are ordered by
+	 * slope, as they are just after it.
+	 */
+	private int compare(int s, int t) {
+		double y = yAt(t, this.sweepX);
+		double scale = Math.abs(this.sweepY) + Math.abs(this.x1[t] - this.x0[t]) + Math.abs(this.y1[t] - this.y0[t]);
+		if (this.sweepY < y - EPSILON * scale)
+			return -1;
+		if (this.sweepY > y + EPSILON * scale)
+			return 1;
+		return order(s, t);
+	}
+
+	private double yAt(int s, double x) {
+		if (x <= this.x0[s])
+			return this.y0[s];
+		if (x >= this.x1[s])
+			return this.y1[s];
+		return this.y0[s] + (this.y1[s] - this.y0[s]) * ((x - this.x0[s]) / (this.x1[s] - this.x0[s]));
+	}
+
+	private double slope(int s) {
+		double dx = this.x1[s] - this.x0[s];
+		return (dx == 0) ? Double.POSITIVE_INFINITY : (this.y1[s] - this.y0[s]) / dx;
+	}
+
+	/*
+	 * Treap of the segments crossed by the sweep line, from the lowest to the
+	 * highest.
+	 */
+	private static final class Node {
+		int segment;
+		final int priority;
+		Node left, right, parent;
+		/* Neighbours along the sweep line */
+		Node previous, next;
+
+		Node(int segment, int priority) {
+			this.segment = segment;
+			this.priority = priority;
+		}
+	}
+
+	private Node insert(int s) {
+		Node node = new Node(s, this.random.nextInt());
+		this.nodes[s] = node;
+		if (this.root == null) {
+			this.root = node;
+			return node;
+		}
+		Node parent = this.root;
+		while (true) {
+			if (compare(s, parent.segment) < 0) {
+				if (parent.left == null) {
+					parent.left = node;
+					break;
+				}
+				parent = parent.left;
+			} else {
+				if (parent.right == null) {
+					parent.right = node;
+					break;
+				}
+				parent = parent.right;
+			}
+		}
+		node.parent = parent;
+		node.previous = predecessor(node);
+		node.next = successor(node);
+		if (node.previous != null)
+			node.previous.next = node;
+		if (node.next != null)
+			node.next.previous = node;
+		while (node.parent != null && node.parent.priority < node.priority) {
+			rotateUp(node);
+		}
+		return node;
+	}
+
+	private void delete(Node node) {
+		if (node.previous != null)
+			node.previous.next = node.next;
+		if (node.next != null)
+			node.next.previous = node.previous;
+		// rotate the node down to a leaf, then cut it
+		while (node.left != null || node.right != null) {
+			Node child;
+			if (node.left == null)
+				child = node.right;
+			else if (node.right == null)
+				child = node.left;
+			else
+				child = (node.left.priority > node.right.priority) ? node.left : node.right;
+			rotateUp(child);
+		}
+		if (node.parent == null)
+			this.root = null;
+		else if (node.parent.left == node)
+			node.parent.left = null;
+		else
+			node.parent.right = null;
+		node.parent = null;
+	}
+
+	/* Rotates node above its parent */
+	private void rotateUp(Node node) {
+		Node parent = node.parent, grand = parent.parent;
+		if (parent.left == node) {
+			parent.left = node.right;
+			if (node.right != null)
+				node.right.parent = parent;
+			node.right = parent;
+		} else {
+			parent.right = node.left;
+			if (node.left != null)
+				node.left.parent = parent;
+			node.left = parent;
+		}
+		parent.parent = node;
+		node.parent = grand;
+		if (grand == null)
+			this.root = node;
+		else if (grand.left == parent)
+			grand.left = node;
+		else
+			grand.right = node;
+	}
+
+	private static Node predecessor(Node node) {
+		if (node.left != null) {
+			node = node.left;
+			while (node.right != null)
+				node = node.right;
+			return node;
+		}
+		while (node.parent != null && node.parent.left == node)
+			node = node.parent;
+		return node.parent;
+	}
+
+	private static Node successor(Node node) {
+		if (node.right != null) {
+			node = node.right;
+			while (node.left != null)
+				node = node.left;
+			return node;
+		}
+		while (node.parent != null && node.parent.right == node)
+			node = node.parent;
+		return node.parent;
+	}
+
+	private static final class Event implements Comparable<Event> {
+		final double x, y;
+		final int type, a, b;
+
+		Event(double x, double y, int type, int a, int b) {
+			this.x = x;
+			this.y = y;
+			this.type = type;
+			this.a = a;
+			this.b = b;
+		}
+
+		@Override
+		public int compareTo(Event e) {
+			if (this.x != e.x)
+				return (this.x < e.x) ? -1 : 1;
+			if (this.y != e.y)
+				return (this.y < e.y) ? -1 : 1;
+			return Integer.compare(this.type, e.type);
+		}
+	}
+}
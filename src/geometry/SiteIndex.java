@@ -0,0 +1,271 @@
+package geometry;
+
+import java.util.ArrayList;
+
+/*
+ * Spatial index of Voronoi sites answering nearest-site queries in the Hilbert
+ * metric of a convex domain.
+ *
+ * The sites are kept in an implicit 2-d tree (the median of each range is the
+ * node, its left and right halves are the subtrees). Queries walk the tree in
+ * Euclidean order and prune with a Hilbert lower bound. Let P, p, q, Q be the
+ * points of the chord through p and q, and R be the distance from p to the
+ * farthest corner of the domain's bounding box. Then |pP| <= R and
+ * |pq| + |qQ| <= R, so the distance of HilbertGeometry, the logarithm of the
+ * cross ratio, is
+ *
+ *   d(p, q) = ln((1 + |pq|/|pP|)(1 + |pq|/|qQ|)) >= 2 artanh(|pq| / R)
+ *
+ * and no site further than R tanh(d / 2) from p, in the Euclidean sense, can
+ * beat a site at Hilbert distance d. The index prunes with the looser bound
+ * artanh(|pq| / R), that is with radius R tanh(d), which is still valid.
+ */
+public class SiteIndex {
+	private final HilbertGeometry geometry;
+	/* Hull the index was built for */
+	private final BoundaryLines boundary;
+	/* Site coordinates, in tree order */
+	private final double[] xs, ys;
+	/* Index of the site stored at each tree position */
+	private final int[] ids;
+	/* Bounding box of the domain */
+	private final double minX, minY, maxX, maxY;
+
+	/*
+	 * Builds an index over the count first sites of siteX and siteY.
+	 */
+	public SiteIndex(HilbertGeometry geometry, double[] siteX, double[] siteY, int count) {
+		this.geometry = geometry;
+		this.boundary = geometry.convex.getBoundaryLines();
+		this.xs = new double[count];
+		this.ys = new double[count];
+		this.ids = new int[count];
+		for (int i = 0; i < count; i++) {
+			this.xs[i] = siteX[i];
+			this.ys[i] = siteY[i];
+			this.ids[i] = i;
+		}
+		build(0, count, 0);
+
+		double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < this.boundary.size(); i++) {
+			minX = Math.min(minX, this.boundary.getX(i));
+			maxX = Math.max(maxX, this.boundary.getX(i));
+			minY = Math.min(minY, this.boundary.getY(i));
+			maxY = Math.max(maxY, this.boundary.getY(i));
+		}
+		this.minX = minX;
+		this.minY = minY;
+		this.maxX = maxX;
+		this.maxY = maxY;
+	}
+
+	/* Number of indexed sites */
+	public int size() {
+		return this.ids.length;
+	}
+
+	/* True if the index is still valid for the current domain */
+	public boolean isBuiltFor(Convex convex) {
+		return this.boundary == convex.getBoundaryLines();
+	}
+
+	/*
+	 * Gives the index of the site nearest to (px, py). Ties go to the smallest
+	 * index, as in a linear scan. Returns -1 if there is no site.
+	 */
+	public int nearest(double px, double py) {
+		if (this.ids.length == 0) {
+			return -1;
+		}
+		double dx = Math.max(px - this.minX, this.maxX - px);
+		double dy = Math.max(py - this.minY, this.maxY - py);
+		Query query = new Query(px, py, Math.hypot(dx, dy), null);
+		search(query, 0, this.ids.length, 0);
+		// distances are undefined in a degenerate domain
+		return (query.best < 0) ? 0 : query.best;
+	}
+
+	/*
+	 * Gives the index of the site nearest to (px, py) among the sites i with
+	 * inserted[i] set, or -1 if there is none.
+	 */
+	int nearest(double px, double py, boolean[] inserted) {
+		double dx = Math.max(px - this.minX, this.maxX - px);
+		double dy = Math.max(py - this.minY, this.maxY - py);
+		Query query = new Query(px, py, Math.hypot(dx, dy), inserted);
+		search(query, 0, this.ids.length, 0);
+		return query.best;
+	}
+
+	/*
+	 * Gives the indices of the sites in breadth-first order of the tree: every
+	 * prefix is spread over the whole domain, coarse to fine.
+	 */
+	int[] breadthFirstOrder() {
+		int[] order = new int[this.ids.length];
+		if (order.length == 0) {
+			return order;
+		}
+		int[] los = new int[order.length], his = new int[order.length];
+		los[0] = 0;
+		his[0] = order.length;
+		int head = 0, tail = 1;
+		while (head < tail) {
+			int lo = los[head], hi = his[head];
+			int mid = (lo + hi) >>> 1;
+			order[head++] = this.ids[mid];
+			if (lo < mid) {
+				los[tail] = lo;
+				his[tail++] = mid;
+			}
+			if (mid + 1 < hi) {
+				los[tail] = mid + 1;
+				his[tail++] = hi;
+			}
+		}
+		return order;
+	}
+
+	/*
+	 * Adds to out the index of every site at distance at most distance from
+	 * (px, py), in no particular order. The search is pruned with the same
+	 * bound as nearest.
+	 */
+	public void within(double px, double py, double distance, ArrayList<Integer> out) {
+		double dx = Math.max(px - this.minX, this.maxX - px);
+		double dy = Math.max(py - this.minY, this.maxY - py);
+		within(px, py, distance, Math.hypot(dx, dy) * Math.tanh(distance), out, 0, this.ids.length, 0);
+	}
+
+	private void within(double px, double py, double distance, double radius, ArrayList<Integer> out, int lo,
+			int hi, int depth) {
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			double ex = this.xs[mid] - px, ey = this.ys[mid] - py;
+			if (ex * ex + ey * ey <= radius * radius
+					&& this.geometry.distance(px, py, this.xs[mid], this.ys[mid]) <= distance) {
+				out.add(this.ids[mid]);
+			}
+			double delta = ((depth & 1) == 0) ? -ex : -ey;
+			boolean lesser = delta <= radius;
+			boolean greater = -delta <= radius;
+			if (lesser && greater) {
+				within(px, py, distance, radius, out, lo, mid, depth + 1);
+			}
+			if (greater) {
+				lo = mid + 1;
+			} else if (lesser) {
+				hi = mid;
+			} else {
+				return;
+			}
+			depth++;
+		}
+	}
+
+	private void search(Query query, int lo, int hi, int depth) {
+		if (lo >= hi) {
+			return;
+		}
+		int mid = (lo + hi) >>> 1;
+		int id = this.ids[mid];
+		if (query.inserted == null || query.inserted[id]) {
+			double d = this.geometry.distance(query.x, query.y, this.xs[mid], this.ys[mid]);
+			if (d < query.distance || (d == query.distance && id < query.best)) {
+				query.best = id;
+				query.distance = d;
+				query.radius = query.reach * Math.tanh(d);
+			}
+		}
+		double delta = ((depth & 1) == 0) ? query.x - this.xs[mid] : query.y - this.ys[mid];
+		if (delta < 0) {
+			search(query, lo, mid, depth + 1);
+			if (-delta <= query.radius) {
+				search(query, mid + 1, hi, depth + 1);
+			}
+		} else {
+			search(query, mid + 1, hi, depth + 1);
+			if (delta <= query.radius) {
+				search(query, lo, mid, depth + 1);
+			}
+		}
+	}
+
+	/*
+	 * Sorts positions [lo, hi) into a 2-d tree, splitting on x at even depths
+	 * and on y at odd depths.
+	 */
+	private void build(int lo, int hi, int depth) {
+		if (hi - lo < 2) {
+			return;
+		}
+		int mid = (lo + hi) >>> 1;
+		select(lo, hi - 1, mid, (depth & 1) == 0 ? this.xs : this.ys);
+		build(lo, mid, depth + 1);
+		build(mid + 1, hi, depth + 1);
+	}
+
+	/*
+	 * Quickselect: moves the k-th smallest key of positions [lo, hi] to
+	 * position k, smaller keys before it and larger keys after it.
+	 */
+	private void select(int lo, int hi, int k, double[] keys) {
+		while (lo < hi) {
+			double pivot = keys[(lo + hi) >>> 1];
+			int i = lo, j = hi;
+			while (i <= j) {
+				while (keys[i] < pivot) {
+					i++;
+				}
+				while (keys[j] > pivot) {
+					j--;
+				}
+				if (i <= j) {
+					swap(i, j);
+					i++;
+					j--;
+				}
+			}
+			if (k <= j) {
+				hi = j;
+			} else if (k >= i) {
+				lo = i;
+			} else {
+				return;
+			}
+		}
+	}
+
+	private void swap(int i, int j) {
+		double x = this.xs[i];
+		this.xs[i] = this.xs[j];
+		this.xs[j] = x;
+		double y = this.ys[i];
+		this.ys[i] = this.ys[j];
+		this.ys[j] = y;
+		int id = this.ids[i];
+		this.ids[i] = this.ids[j];
+		this.ids[j] = id;
+	}
+
+	/* State of one nearest-site query */
+	private static final class Query {
+		final double x, y;
+		/* Distance from the query point to the farthest point of the domain */
+		final double reach;
+		/* Sites that may be returned, or null for all of them */
+		final boolean[] inserted;
+		int best = -1;
+		double distance = Double.POSITIVE_INFINITY;
+		double radius = Double.POSITIVE_INFINITY;
+
+		Query(double x, double y, double reach, boolean[] inserted) {
+			this.x = x;
+			this.y = y;
+			this.reach = reach;
+			this.inserted = inserted;
+		}
+	}
+}
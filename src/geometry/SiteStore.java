@@ -0,0 +1,175 @@
+package geometry;
+
+import java.awt.geom.Point2D;
+import java.util.Arrays;
+
+/*
+ * Compact storage of the center points of a Voronoi diagram. Coordinates are
+ * kept in parallel primitive arrays with O(1) indexed access. Each site also
+ * gets a stable id when it is added, so that data attached to a site (colors,
+ * cached cells) survives the reordering done by remove: the last site is moved
+ * into the slot of the removed one.
+ *
+ * The version counter is bumped by every change, so caches built from the
+ * store can tell whether they are stale.
+ */
+public class SiteStore {
+	private static final int INITIAL_CAPACITY = 16;
+
+	private double[] xs = new double[INITIAL_CAPACITY];
+	private double[] ys = new double[INITIAL_CAPACITY];
+	/* Stable id of the site stored at each index */
+	private int[] ids = new int[INITIAL_CAPACITY];
+	/* Index of the site of each id, -1 once it is removed */
+	private int[] indexOfId = new int[INITIAL_CAPACITY];
+	private int size = 0;
+	private int nextId = 0;
+	private int version = 0;
+
+	public int size() {
+		return this.size;
+	}
+
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	/* Counter incremented by every change of the store */
+	public int getVersion() {
+		return this.version;
+	}
+
+	public double getX(int index) {
+		checkIndex(index);
+		return this.xs[index];
+	}
+
+	public double getY(int index) {
+		checkIndex(index);
+		return this.ys[index];
+	}
+
+	/* Copy of the site of given index */
+	public Point2D.Double get(int index) {
+		checkIndex(index);
+		return new Point2D.Double(this.xs[index], this.ys[index]);
+	}
+
+	/* Stable id of the site of given index */
+	public int idAt(int index) {
+		checkIndex(index);
+		return this.ids[index];
+	}
+
+	/* Current index of the site of given id, -1 if it was removed */
+	public int indexOf(int id) {
+		if (id < 0 || id >= this.nextId) {
+			return -1;
+		}
+		return this.indexOfId[id];
+	}
+
+	/*
+	 * Adds a site at the end of the store and returns its id.
+	 */
+	public int add(double x, double y) {
+		if (this.size == this.xs.length) {
+			int capacity = 2 * this.xs.length;
+			this.xs = Arrays.copyOf(this.xs, capacity);
+			this.ys = Arrays.copyOf(this.ys, capacity);
+			this.ids = Arrays.copyOf(this.ids, capacity);
+		}
+		if (this.nextId == this.indexOfId.length) {
+			this.indexOfId = Arrays.copyOf(this.indexOfId, 2 * this.indexOfId.length);
+		}
+		int id = this.nextId++;
+		this.xs[this.size] = x;
+		this.ys[this.size] = y;
+		this.ids[this.size] = id;
+		this.indexOfId[id] = this.size;
+		this.size++;
+		this.version++;
+		return id;
+	}
+
+	public int add(Point2D.Double p) {
+		return add(p.x, p.y);
+	}
+
+	/*
+	 * Moves the site of given index, keeping its index and id.
+	 */
+	public void set(int index, double x, double y) {
+		checkIndex(index);
+		this.xs[index] = x;
+		this.ys[index] = y;
+		this.version++;
+	}
+
+	/*
+	 * Removes the site of given index. The last site takes its place, so the
+	 * indices of all other sites are unchanged.
+	 */
+	public void remove(int index) {
+		checkIndex(index);
+		int last = this.size - 1;
+		this.indexOfId[this.ids[index]] = -1;
+		if (index != last) {
+			this.xs[index] = this.xs[last];
+			this.ys[index] = this.ys[last];
+			this.ids[index] = this.ids[last];
+			this.indexOfId[this.ids[index]] = index;
+		}
+		this.size = last;
+		this.version++;
+	}
+
+	public void clear() {
+		Arrays.fill(this.indexOfId, 0, this.nextId, -1);
+		this.size = 0;
+		this.version++;
+	}
+
+	/*
+	 * Gives the index of a site close to (x, y) in the sense of
+	 * Util.closePoints, or -1 if there is none.
+	 */
+	public int find(double x, double y) {
+		for (int i = 0; i < this.size; i++) {
+			double dx = this.xs[i] - x;
+			double dy = this.ys[i] - y;
+			if (dx * dx + dy * dy < Util.epsilon) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/*
+	 * Direct access to the x coordinates. Only the size first entries are
+	 * sites, and the array is replaced when the store grows.
+	 */
+	public double[] xs() {
+		return this.xs;
+	}
+
+	/* Direct access to the y coordinates, see xs() */
+	public double[] ys() {
+		return this.ys;
+	}
+
+	/* Copy of the sites, in index order */
+	public Point2D.Double[] toArray() {
+		Point2D.Double[] sites = new Point2D.Double[this.size];
+		for (int i = 0; i < this.size; i++) {
+			sites[i] = new Point2D.Double(this.xs[i], this.ys[i]);
+		}
+		return sites;
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= this.size) {
+			throw new IndexOutOfBoundsException("Site index: " + index + ", size: " + this.size);
+		}
+	}
+}
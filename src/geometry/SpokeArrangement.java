@@ -0,0 +1,163 @@
+package geometry;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.List;
+
+import trapmap.Segment;
+
+/*
+ * Spokes of sites inside a convex hull, and the subdivision of the hull edges
+ * by the points where they leave the hull.
+ *
+ * The spoke of a site s and a hull vertex v is the line through both. It
+ * meets the boundary at v and at its exit point, where the ray from v through
+ * s leaves the hull. Seen from s the hull vertices are sorted by angle, so the
+ * edge holding the exit point is found by a binary search on the angle of the
+ * ray, instead of intersecting the spoke with every edge.
+ */
+final class SpokeArrangement {
+	/* Points closer than that to a hull vertex are that vertex */
+	private static final double VERTEX_EPSILON = 1e-12;
+
+	/* Hull vertices, without the closing point */
+	private final Point2D.Double[] vertices;
+	private final int n;
+	/* Line of edge e, from vertex e to vertex e + 1, in homogeneous coordinates */
+	private final Point3d[] edges;
+	/* True if the vertices are in clockwise order */
+	private final boolean clockwise;
+
+	SpokeArrangement(Point2D.Double[] vertices) {
+		this.vertices = vertices;
+		this.n = vertices.length;
+		this.edges = new Point3d[this.n];
+		double area = 0;
+		for (int e = 0; e < this.n; e++) {
+			Point2D.Double a = vertices[e], b = vertices[(e + 1) % this.n];
+			this.edges[e] = HilbertGeometry.toHomogeneous(a).crossProduct(HilbertGeometry.toHomogeneous(b));
+			area += a.x * b.y - b.x * a.y;
+		}
+		this.clockwise = area < 0;
+	}
+
+	/* Line of edge e in homogeneous coordinates */
+	Point3d edge(int e) {
+		return this.edges[e];
+	}
+
+	/* Spoke of site s and vertex v in homogeneous coordinates */
+	Point3d spoke(Point2D.Double s, int v) {
+		return HilbertGeometry.toHomogeneous(s).crossProduct(HilbertGeometry.toHomogeneous(this.vertices[v]));
+	}
+
+	/*
+	 * Edge through which the ray from vertex v through the interior point s
+	 * leaves the hull.
+	 */
+	int exitEdge(Point2D.Double s, int v) {
+		return exitEdge(s.x, s.y, s.x - this.vertices[v].x, s.y - this.vertices[v].y);
+	}
+
+	/*
+	 * Edge through which the ray from the interior point (sx, sy) in direction
+	 * (dx, dy) leaves the hull: the edge e such that the direction lies between
+	 * the directions of vertex e and vertex e + 1 seen from the point.
+	 */
+	int exitEdge(double sx, double sy, double dx, double dy) {
+		// in counter-clockwise order, angles are measured from the direction of
+		// the first vertex, and the last vertex of angle at most the angle of the
+		// ray starts the edge
+		int first = this.clockwise ? this.n - 1 : 0;
+		double rx = this.vertices[first].x - sx, ry = this.vertices[first].y - sy;
+		int lo = 0, hi = this.n;
+		while (hi - lo > 1) {
+			int mid = (lo + hi) >>> 1;
+			Point2D.Double m = this.vertices[this.clockwise ? this.n - 1 - mid : mid];
+			if (angleAtMost(rx, ry, m.x - sx, m.y - sy, dx, dy))
+				lo = mid;
+			else
+				hi = mid;
+		}
+		if (!this.clockwise)
+			return lo;
+		// in clockwise order the edge goes from the next vertex to this one
+		int v = this.n - 1 - lo;
+		return (v + this.n - 1) % this.n;
+	}
+
+	/*
+	 * True if the counter-clockwise angle from (rx, ry) to (ux, uy) is at most
+	 * the angle from (rx, ry) to (wx, wy), both in [0, 2 pi).
+	 */
+	private static boolean angleAtMost(double rx, double ry, double ux, double uy, double wx, double wy) {
+		int hu = half(rx, ry, ux, uy), hw = half(rx, ry, wx, wy);
+		if (hu != hw)
+			return hu < hw;
+		return ux * wy - uy * wx >= 0;
+	}
+
+	/* 0 if the angle from (rx, ry) to (ux, uy) is in [0, pi), and 1 otherwise */
+	private static int half(double rx, double ry, double ux, double uy) {
+		double cross = rx * uy - ry * ux;
+		return (cross > 0 || (cross == 0 && rx * ux + ry * uy > 0)) ? 0 : 1;
+	}
+
+	/*
+	 * Point where the spoke meets the line of the edge, or null if it is a
+	 * vertex of the hull.
+	 */
+	Point2D.Double exitPoint(Point3d spoke, int edge) {
+		Point2D.Double p = HilbertGeometry.toCartesian(this.edges[edge].crossProduct(spoke));
+		if (p == null || isVertex(p))
+			return null;
+		return p;
+	}
+
+	private boolean isVertex(Point2D.Double p) {
+		for (Point2D.Double v : this.vertices) {
+			if (p.distance(v) <= VERTEX_EPSILON)
+				return true;
+		}
+		return false;
+	}
+
+	/*
+	 * Subdivision of the hull edges by the exit points of the spokes of the
+	 * sites. The exit points of each edge are gathered from the exit edges of
+	 * the spokes, and then sorted along the edge with its end points.
+	 */
+	List<Segment> boundarySegments(Point2D.Double[] sites) {
+		List<ArrayList<Point2D.Double>> points = new ArrayList<ArrayList<Point2D.Double>>(this.n);
+		for (int e = 0; e < this.n; e++)
+			points.add(new ArrayList<Point2D.Double>());
+		for (Point2D.Double s : sites) {
+			for (int v = 0; v < this.n; v++) {
+				int e = exitEdge(s, v);
+				Point2D.Double p = exitPoint(spoke(s, v), e);
+				if (p != null)
+					points.get(e).add(p);
+			}
+		}
+
+		List<Segment> segs = new ArrayList<Segment>();
+		for (int e = 0; e < this.n; e++) {
+			ArrayList<Point2D.Double> edgePoints = points.get(e);
+			edgePoints.add(this.vertices[e]);
+			edgePoints.add(this.vertices[(e + 1) % this.n]);
+
+			// sort points along the edge, by x unless it is vertical
+			ArrayList<Double> compare = new ArrayList<Double>(edgePoints.size());
+			boolean vertical = Math.abs(this.edges[e].y) <= 1e-8;
+			for (Point2D.Double p : edgePoints)
+				compare.add(vertical ? p.y : p.x);
+			Convex.quickSort(edgePoints, compare, 0, edgePoints.size() - 1);
+
+			for (int index = 0; index < edgePoints.size() - 1; index++) {
+				Point2D.Double a = edgePoints.get(index), b = edgePoints.get(index + 1);
+				segs.add(new Segment((float) a.x, (float) a.y, (float) b.x, (float) b.y));
+			}
+		}
+		return segs;
+	}
+}
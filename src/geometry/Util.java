@@ -40,42 +40,12 @@ public class Util {
 	}
 
 	public static Point2D.Double[] intersectionPoints(Point2D.Double p, Point2D.Double q, Convex convex) {
-		Point3d pProj = HilbertGeometry.toHomogeneous(p);
-		Point3d qProj = HilbertGeometry.toHomogeneous(q);
-		// convex.drawSegment(pProj, qProj);
-		Point3d pqLine = pProj.crossProduct(qProj);
-		Point3d beginPoint = HilbertGeometry.toHomogeneous(convex.convexHull[0]);
-		Point2D.Double[] intersectionPoints = new Point2D.Double[2];
-		int count = 0;
-		for (int i = 1; i < convex.convexHull.length; i++) {
-			Point3d endPoint = HilbertGeometry.toHomogeneous(convex.convexHull[i]);
-			Point2D.Double intersect = HilbertGeometry
-					.toCartesian(HilbertGeometry.intersection(pqLine, beginPoint, endPoint));
-			if (intersect != null && count < 2 && !Util.contains(intersectionPoints, intersect)) {
-				intersectionPoints[count] = intersect;
-				count++;
-			}
-			beginPoint = endPoint;
-		}
-		return intersectionPoints;
+		// line through p and q, as the cross product of their homogeneous coordinates
+		return convex.getBoundaryLines().intersectionPoints(p.y - q.y, q.x - p.x, p.x * q.y - p.y * q.x);
 	}
 
 	public static Point2D.Double[] intersectionPoints(Point3d line, Convex convex) {
-		Point3d pqLine = line;
-		Point3d beginPoint = HilbertGeometry.toHomogeneous(convex.convexHull[0]);
-		Point2D.Double[] intersectionPoints = new Point2D.Double[2];
-		int count = 0;
-		for (int i = 1; i < convex.convexHull.length; i++) {
-			Point3d endPoint = HilbertGeometry.toHomogeneous(convex.convexHull[i]);
-			Point2D.Double intersect = HilbertGeometry
-					.toCartesian(HilbertGeometry.intersection(pqLine, beginPoint, endPoint));
-			if (intersect != null && count < 2 && !Util.contains(intersectionPoints, intersect)) {
-				intersectionPoints[count] = intersect;
-				count++;
-			}
-			beginPoint = endPoint;
-		}
-		return intersectionPoints;
+		return convex.getBoundaryLines().intersectionPoints(line.x, line.y, line.z);
 	}
 
 	public static Point2D.Double lineIntersection(Point3d l1, Point3d l2) {
@@ -0,0 +1,88 @@
+package geometry;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/*
+ * Point set indexed by a FlatKdTree, updated by copy-on-write for threads
+ * that query it concurrently.
+ *
+ * Readers take the current snapshot and query it without locks; a snapshot
+ * never changes. Writers copy the points, rebuild a tree off to the side and
+ * publish it with a single volatile write, so a rebuild never blocks or
+ * disturbs the queries in flight, which finish on the snapshot they started
+ * with. Writers are serialized with each other. Each update costs a rebuild
+ * in O(n log n), so changes should be batched with addAll and removeAll.
+ */
+public class VersionedKdTree<T extends KdTree.XYZPoint> {
+	/* Immutable state: a tree and the number of updates that led to it */
+	public static final class Version<T extends KdTree.XYZPoint> {
+		public final FlatKdTree<T> tree;
+		public final long number;
+
+		Version(FlatKdTree<T> tree, long number) {
+			this.tree = tree;
+			this.number = number;
+		}
+	}
+
+	private volatile Version<T> current;
+
+	public VersionedKdTree() {
+		this(Collections.<T>emptyList());
+	}
+
+	public VersionedKdTree(Collection<? extends T> points) {
+		this.current = new Version<T>(new FlatKdTree<T>(new ArrayList<T>(points)), 0);
+	}
+
+	/* Current version, which readers keep for the length of a query */
+	public Version<T> version() {
+		return this.current;
+	}
+
+	/* Tree of the current version */
+	public FlatKdTree<T> snapshot() {
+		return this.current.tree;
+	}
+
+	public boolean add(T point) {
+		return addAll(Collections.singletonList(point));
+	}
+
+	public synchronized boolean addAll(Collection<? extends T> points) {
+		if (points.isEmpty())
+			return false;
+		List<T> next = new ArrayList<T>(this.current.tree.getPoints());
+		next.addAll(points);
+		publish(next);
+		return true;
+	}
+
+	/* Removes the first point equal to the given one, if any */
+	public boolean remove(T point) {
+		return removeAll(Collections.singletonList(point));
+	}
+
+	/* Removes one point equal to each of the given ones, if any */
+	public synchronized boolean removeAll(Collection<? extends T> points) {
+		List<T> next = new ArrayList<T>(this.current.tree.getPoints());
+		boolean changed = false;
+		for (T p : points)
+			changed |= next.remove(p);
+		if (changed)
+			publish(next);
+		return changed;
+	}
+
+	/* Replaces every point */
+	public synchronized void replace(Collection<? extends T> points) {
+		publish(new ArrayList<T>(points));
+	}
+
+	private void publish(List<T> points) {
+		this.current = new Version<T>(new FlatKdTree<T>(points), this.current.number + 1);
+	}
+}
@@ -9,6 +9,8 @@ import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import Jama.Matrix;
 
 import drawing.DrawingApplet;
@@ -24,56 +26,144 @@ public class Voronoi {
 	/* HG where we compute voronoi diagram */
 	protected HilbertGeometry geometry;
 	protected int max_X = Integer.MIN_VALUE, max_Y = Integer.MIN_VALUE, min_X = Integer.MAX_VALUE, min_Y = Integer.MAX_VALUE;
-	/* List of center points for the Voronoi diagram */
-	public LinkedList<Point2D.Double> centerPoints = new LinkedList<Point2D.Double>();
+	/* Center points of the Voronoi diagram */
+	public final SiteStore sites = new SiteStore();
 	/*
 	 * for each point inside the domain, give the index of the center points that is
 	 * closest to it.
 	 */
 	public HashMap<Point2D.Double, Integer> voronoiPoints = new HashMap<Point2D.Double, Integer>();
+	/* Label buffer filled by computeVoronoi, null until the first computation */
+	public VoronoiRaster raster = null;
+	/* Spacing of the grid sampled by computeVoronoi */
+	protected int rasterStride = 2;
+	/* Whether computeVoronoi labels the tiles of the grid in parallel */
+	protected boolean parallelRaster = true;
+	/* Tiles with at most that many grid nodes are labelled by a single task */
+	private static final int RASTER_TILE_SIZE = 1024;
+	/* Site store version and hull the raster was computed for */
+	private int rasterVersion = -1;
+	private BoundaryLines rasterBoundary = null;
+	/*
+	 * Center points nearest to a site that its cell is clipped by to bound the
+	 * nodes an incremental update relabels
+	 */
+	private static final int CELL_BOUND_SITES = 16;
+	/* Spatial index of the center points, rebuilt after they change */
+	private SiteIndex siteIndex = null;
+	/* Version of the site store the index was built from */
+	private int siteIndexVersion = -1;
+	/* Below this many center points, nearest sites are found by a linear scan */
+	private static final int SITE_INDEX_MIN_SIZE = 16;
 //	public HashMap<Point2D.Double, Integer> hilbertVoronoiPoints = new HashMap<Point2D.Double, Integer>();
 
 	/* Variable storing all the segment that's inserted */
 	public ArrayList<Segment> allSegments = new ArrayList<Segment>();
 	/* Trapezoidal map of all Voronoi cells */
 	public TrapMap voronoiCells = null;
+	/* Site store version and hull the trapezoidal map was built for */
+	private int trapMapVersion = -1;
+	private BoundaryLines trapMapBoundary = null;
+	/* Points whose sites are read from the trapezoidal map by a single task of locateSites */
+	private static final int LOCATE_CHUNK = 1 << 12;
+	/* Largest distance between a bisector and its approximating segments */
+	protected double bisectorTolerance = BisectorTessellator.DEFAULT_TOLERANCE;
+	private BisectorTessellator tessellator = null;
+	/*
+	 * Coefficients of the bisector, vertices of the sector it is intersected
+	 * with, and the intersection points with the edge of each point
+	 */
+	private final double[] conic = new double[6];
+	private double[] sectorXs = new double[8], sectorYs = new double[8];
+	private double[] conicPoints = new double[32];
+	private int[] conicEdges = new int[16];
+	/* Bisectors computed in the sectors visited by realAugusteAlgo */
+	private final BisectorCache bisectorCache = new BisectorCache();
+	/* Site store version and hull the cached bisectors were computed for */
+	private int bisectorCacheVersion = -1;
+	private BoundaryLines bisectorCacheBoundary = null;
 
 	public Voronoi(HilbertGeometry g) {
 		this.geometry = g;
 	}
 
 	public void reset() {
-		this.centerPoints = new LinkedList<Point2D.Double>();
+		this.sites.clear();
 		this.voronoiPoints.clear();
+		this.raster = null;
+		this.siteIndex = null;
+	}
+
+	public int getRasterStride() {
+		return this.rasterStride;
+	}
+
+	/*
+	 * Sets the spacing of the grid sampled by computeVoronoi.
+	 */
+	public void setRasterStride(int stride) {
+		if (stride < 1) {
+			throw new IllegalArgumentException("Raster stride must be positive: " + stride);
+		}
+		this.rasterStride = stride;
+	}
+
+	public double getBisectorTolerance() {
+		return this.bisectorTolerance;
+	}
+
+	/*
+	 * Sets the largest distance between a bisector and the segments that
+	 * approximate it. Larger tolerances give fewer segments.
+	 */
+	public void setBisectorTolerance(double tolerance) {
+		if (!(tolerance > 0)) {
+			throw new IllegalArgumentException("Bisector tolerance must be positive: " + tolerance);
+		}
+		this.bisectorTolerance = tolerance;
+	}
+
+	public boolean isParallelRaster() {
+		return this.parallelRaster;
+	}
+
+	public void setParallelRaster(boolean parallel) {
+		this.parallelRaster = parallel;
 	}
 
 	/*
 	 * Adds a new center point.
 	 */
 	public void addPoint(Point2D.Double p) {
-		this.centerPoints.add(p);
-		;
+		boolean update = isRasterCurrent();
+		this.sites.add(p);
+		if (update) {
+			this.raster.setSiteCount(this.sites.size());
+			relabelBoxes(cellNodeBounds(this.sites.size() - 1), null);
+			this.rasterVersion = this.sites.getVersion();
+		}
 	}
 
 	/*
 	 * Methods that finds p in the list of center Points.
 	 */
 	public int findPoint(Point2D.Double p) {
-		for (int i = 0; i < centerPoints.size(); i++) {
-			if (Util.closePoints(p, centerPoints.get(i))) {
-				return i;
-			}
-		}
-		return -1;
+		return this.sites.find(p.x, p.y);
 	}
 
 	/*
-	 * Remove point
+	 * Remove point. The last center point takes the index of the removed one.
 	 */
 	public void removePoint(Point2D.Double p) {
 		int i = findPoint(p);
 		if (i >= 0) {
-			this.centerPoints.remove(p);
+			boolean update = isRasterCurrent();
+			int last = this.sites.size() - 1;
+			this.sites.remove(i);
+			if (update) {
+				releaseCell(i, last);
+				this.rasterVersion = this.sites.getVersion();
+			}
 		}
 	}
 
@@ -81,31 +171,63 @@ public class Voronoi {
 	 * Retrieves center point of index i.
 	 */
 	public Point2D.Double getPoint(int index) {
-		return this.centerPoints.get(index);
+		return this.sites.get(index);
+	}
+
+	/* Number of center points */
+	public int numPoints() {
+		return this.sites.size();
 	}
 
 	/*
 	 * Moves center point of index i.
 	 */
 	public void movePoint(int index, Point2D.Double p) {
-		this.centerPoints.remove(index);
-		this.centerPoints.add(index, p);
+		boolean update = isRasterCurrent();
+		this.sites.set(index, p.x, p.y);
+		if (update) {
+			int[] box = this.raster.getCellBounds(index);
+			this.raster.clearBounds(index);
+			relabelBoxes(cellNodeBounds(index), box);
+			this.rasterVersion = this.sites.getVersion();
+		}
+	}
+
+	/*
+	 * Gives the spatial index of the center points, building it again if they
+	 * or the domain changed since it was built.
+	 */
+	private SiteIndex siteIndex() {
+		SiteIndex index = this.siteIndex;
+		if (index == null || this.siteIndexVersion != this.sites.getVersion()
+				|| !index.isBuiltFor(this.geometry.convex)) {
+			index = new SiteIndex(this.geometry, this.sites.xs(), this.sites.ys(), this.sites.size());
+			this.siteIndex = index;
+			this.siteIndexVersion = this.sites.getVersion();
+		}
+		return index;
 	}
 
 	/*
 	 * Gives the index of the center point nearest to p.
 	 */
 	public int nearestPoint(Point2D.Double p) {
-		if (centerPoints.size() == 0) {
+		int n = this.sites.size();
+		if (n == 0) {
 			return -1;
 		}
-		if (centerPoints.size() == 1) {
+		if (n == 1) {
 			return 0;
 		}
+		if (n >= SITE_INDEX_MIN_SIZE) {
+			return siteIndex().nearest(p.x, p.y);
+		}
+		double[] xs = this.sites.xs();
+		double[] ys = this.sites.ys();
 		int nearestPoint = 0;
-		double nearestDistance = geometry.distance(p, centerPoints.get(0));
-		for (int i = 1; i < centerPoints.size(); i++) {
-			double tempDist = geometry.distance(p, centerPoints.get(i));
+		double nearestDistance = geometry.distance(p.x, p.y, xs[0], ys[0]);
+		for (int i = 1; i < n; i++) {
+			double tempDist = geometry.distance(p.x, p.y, xs[i], ys[i]);
 			/*
 			 * if (Double.isInfinite(tempDist)) continue;
 			 */
@@ -127,19 +249,266 @@ public class Voronoi {
 		return nearestPoint;
 	}
 
+	/*
+	 * Same as nearestPoint(p), on a snapshot of the center points.
+	 */
+	private int nearestPoint(double[] xs, double[] ys, int n, double px, double py) {
+		if (n <= 1) {
+			return n - 1;
+		}
+		int nearestPoint = 0;
+		double nearestDistance = geometry.distance(px, py, xs[0], ys[0]);
+		for (int i = 1; i < n; i++) {
+			double tempDist = geometry.distance(px, py, xs[i], ys[i]);
+			if (tempDist < nearestDistance) {
+				nearestDistance = tempDist;
+				nearestPoint = i;
+			}
+		}
+		return nearestPoint;
+	}
+
+	/*
+	 * Brute-force Voronoi diagram: samples the bounding box of the domain every
+	 * rasterStride pixels and stores the index of the nearest center point of
+	 * each sample in raster. The grid is cut into tiles that are labelled in
+	 * parallel on the common fork-join pool unless parallelRaster is off.
+	 */
 	public void computeVoronoi() {
 		this.voronoiPoints.clear();
+		if (isRasterCurrent()) {
+			// kept up to date by the incremental updates
+			return;
+		}
+		BoundaryLines boundary = this.geometry.convex.getBoundaryLines();
 		this.geometry.extremePoints();
-		for (int x = this.geometry.min_X; x < this.geometry.max_X; x += 2) {
-			for (int y = this.geometry.min_Y; y < this.geometry.max_Y; y += 2) {
-				Point2D.Double p = new Point2D.Double(x, y);
-				if (this.geometry.convex.isInConvex(p)) {
-					this.voronoiPoints.put(p, nearestPoint(p));
+		int stride = this.rasterStride;
+		int width = (this.geometry.max_X - this.geometry.min_X + stride - 1) / stride;
+		int height = (this.geometry.max_Y - this.geometry.min_Y + stride - 1) / stride;
+		VoronoiRaster r = new VoronoiRaster(this.geometry.min_X, this.geometry.min_Y, width, height, stride);
+		int n = this.sites.size();
+		double[] xs = Arrays.copyOf(this.sites.xs(), n);
+		double[] ys = Arrays.copyOf(this.sites.ys(), n);
+		SiteIndex index = (n >= SITE_INDEX_MIN_SIZE) ? siteIndex() : null;
+		RasterTile task = new RasterTile(r, xs, ys, index, 0, r.getWidth(), 0, r.getHeight());
+		if (this.parallelRaster) {
+			ForkJoinPool.commonPool().invoke(task);
+		} else {
+			task.label();
+		}
+		r.computeBounds(n);
+		this.raster = r;
+		this.rasterVersion = this.sites.getVersion();
+		this.rasterBoundary = boundary;
+	}
+
+	/*
+	 * True if the raster matches the current sites, hull and stride, so that it
+	 * can be updated incrementally.
+	 */
+	private boolean isRasterCurrent() {
+		return this.raster != null && this.rasterVersion == this.sites.getVersion()
+				&& this.rasterBoundary == this.geometry.convex.getBoundaryLines()
+				&& this.raster.getStride() == this.rasterStride;
+	}
+
+	/*
+	 * Gives the index of the center point nearest to (x, y), with the same
+	 * tie breaking as computeVoronoi.
+	 */
+	private int nearestSite(double x, double y) {
+		int n = this.sites.size();
+		if (n >= SITE_INDEX_MIN_SIZE) {
+			return siteIndex().nearest(x, y);
+		}
+		return nearestPoint(this.sites.xs(), this.sites.ys(), n, x, y);
+	}
+
+	/*
+	 * Labels the nodes of box {minI, minJ, maxI, maxJ} inside the domain, then
+	 * those of other that are not in box, with their nearest center point.
+	 * other may be null.
+	 */
+	private void relabelBoxes(int[] box, int[] other) {
+		relabelBox(box, null);
+		if (other != null) {
+			relabelBox(other, box);
+		}
+	}
+
+	private void relabelBox(int[] box, int[] skip) {
+		VoronoiRaster r = this.raster;
+		for (int j = box[1]; j <= box[3]; j++) {
+			for (int i = box[0]; i <= box[2]; i++) {
+				if (r.label(i, j) == VoronoiRaster.OUTSIDE
+						|| (skip != null && skip[0] <= i && i <= skip[2] && skip[1] <= j && j <= skip[3])) {
+					continue;
+				}
+				int site = nearestSite(r.x(i), r.y(j));
+				r.setLabel(i, j, site);
+				r.includeInBounds(site, i, j);
+			}
+		}
+	}
+
+	/*
+	 * Bounding box of the grid nodes that may lie in the Voronoi cell of site,
+	 * as {minI, minJ, maxI, maxJ}. The cell of site among its CELL_BOUND_SITES
+	 * nearest center points contains its cell among all of them; the box holds
+	 * the nodes within bisectorTolerance of the vertices of that cell and of
+	 * the tessellation of its curved edges. The box is empty (minI > maxI) if
+	 * a smaller site is at the same place, and the whole grid if the site is
+	 * on the boundary of the domain.
+	 */
+	private int[] cellNodeBounds(int site) {
+		int n = this.sites.size();
+		double[] xs = this.sites.xs(), ys = this.sites.ys();
+		Integer[] order = new Integer[n];
+		double[] distances = new double[n];
+		for (int i = 0; i < n; i++) {
+			order[i] = i;
+			distances[i] = (i == site) ? -1 : this.geometry.distance(xs[site], ys[site], xs[i], ys[i]);
+		}
+		Arrays.sort(order, (a, b) -> Double.compare(distances[a], distances[b]));
+		// kept in index order, so that ties are broken as among all sites
+		int near = Math.min(n, CELL_BOUND_SITES + 1);
+		Arrays.sort(order, 0, near);
+		double[] nearX = new double[near], nearY = new double[near];
+		int local = 0;
+		for (int k = 0; k < near; k++) {
+			nearX[k] = xs[order[k]];
+			nearY[k] = ys[order[k]];
+			if (order[k] == site) {
+				local = k;
+			}
+		}
+		VoronoiCell cell = new VoronoiCellBuilder(this.geometry, nearX, nearY, near, null).buildCell(local);
+		double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+		VoronoiRaster r = this.raster;
+		int size = cell.getVertices().size();
+		if (size == 0) {
+			for (int k = 0; k < local; k++) {
+				if (nearX[k] == xs[site] && nearY[k] == ys[site]) {
+					return new int[] { 0, 0, -1, -1 };
+				}
+			}
+			// a site on the boundary has no cell, but may win nodes along it
+			return new int[] { 0, 0, r.getWidth() - 1, r.getHeight() - 1 };
+		}
+		for (int i = 0; i < size; i++) {
+			Point2D.Double from = cell.getVertexIndex(i), to = cell.getVertexIndex((i + 1) % size);
+			minX = Math.min(minX, from.x);
+			minY = Math.min(minY, from.y);
+			maxX = Math.max(maxX, from.x);
+			maxY = Math.max(maxY, from.y);
+			if (cell.getNeighbor(i) == VoronoiCellBuilder.BOUNDARY) {
+				continue;
+			}
+			int count = tessellator().tessellate(cell.getConic(i), from.x, from.y, to.x, to.y);
+			for (int k = 1; k + 1 < count; k++) {
+				minX = Math.min(minX, this.tessellator.getX(k));
+				minY = Math.min(minY, this.tessellator.getY(k));
+				maxX = Math.max(maxX, this.tessellator.getX(k));
+				maxY = Math.max(maxY, this.tessellator.getY(k));
+			}
+		}
+		double pad = this.bisectorTolerance;
+		return new int[] { Math.max(0, (int) Math.ceil((minX - pad - r.getOriginX()) / r.getStride())),
+				Math.max(0, (int) Math.ceil((minY - pad - r.getOriginY()) / r.getStride())),
+				Math.min(r.getWidth() - 1, (int) Math.floor((maxX + pad - r.getOriginX()) / r.getStride())),
+				Math.min(r.getHeight() - 1, (int) Math.floor((maxY + pad - r.getOriginY()) / r.getStride())) };
+	}
+
+	/*
+	 * Updates the raster after the site of given index was removed and the last
+	 * site, of index last, took its index. The nodes the last site ties with
+	 * may now go to it, so its cell is relabelled too.
+	 */
+	private void releaseCell(int index, int last) {
+		VoronoiRaster r = this.raster;
+		int[] box = r.getCellBounds(index);
+		r.clearBounds(index);
+		if (last != index) {
+			int[] moved = r.getCellBounds(last);
+			for (int j = moved[1]; j <= moved[3]; j++) {
+				for (int i = moved[0]; i <= moved[2]; i++) {
+					if (r.label(i, j) == last) {
+						r.setLabel(i, j, index);
+					}
+				}
+			}
+			r.moveBounds(last, index);
+		}
+		r.setSiteCount(this.sites.size());
+		relabelBoxes(box, (last != index) ? cellNodeBounds(index) : null);
+	}
+
+	/*
+	 * Labels the grid nodes of columns [i0, i1) and rows [j0, j1) of a raster,
+	 * splitting the tile in two along its longest side while it is too large.
+	 */
+	private class RasterTile extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final VoronoiRaster raster;
+		private final double[] xs, ys;
+		/* Index of the sites, null to scan them */
+		private final SiteIndex index;
+		private final int i0, i1, j0, j1;
+
+		RasterTile(VoronoiRaster raster, double[] xs, double[] ys, SiteIndex index, int i0, int i1, int j0, int j1) {
+			this.raster = raster;
+			this.xs = xs;
+			this.ys = ys;
+			this.index = index;
+			this.i0 = i0;
+			this.i1 = i1;
+			this.j0 = j0;
+			this.j1 = j1;
+		}
+
+		@Override
+		protected void compute() {
+			int w = this.i1 - this.i0;
+			int h = this.j1 - this.j0;
+			if (w * h <= RASTER_TILE_SIZE) {
+				label();
+			} else if (w >= h) {
+				int mid = (this.i0 + this.i1) >>> 1;
+				invokeAll(new RasterTile(this.raster, this.xs, this.ys, this.index, this.i0, mid, this.j0, this.j1),
+						new RasterTile(this.raster, this.xs, this.ys, this.index, mid, this.i1, this.j0, this.j1));
+			} else {
+				int mid = (this.j0 + this.j1) >>> 1;
+				invokeAll(new RasterTile(this.raster, this.xs, this.ys, this.index, this.i0, this.i1, this.j0, mid),
+						new RasterTile(this.raster, this.xs, this.ys, this.index, this.i0, this.i1, mid, this.j1));
+			}
+		}
+
+		void label() {
+			for (int j = this.j0; j < this.j1; j++) {
+				double y = this.raster.y(j);
+				for (int i = this.i0; i < this.i1; i++) {
+					double x = this.raster.x(i);
+					int label = VoronoiRaster.OUTSIDE;
+					if (geometry.convex.isInConvex(x, y)) {
+						label = (this.index != null) ? this.index.nearest(x, y) : nearestPoint(this.xs, this.ys, this.xs.length, x, y);
+					}
+					this.raster.setLabel(i, j, label);
 				}
 			}
 		}
 	}
 	
+	/*
+	 * Computes the Voronoi cells of all center points, in the order of the
+	 * sites, with the neighbors and the bisector conics of their edges.
+	 */
+	public ArrayList<VoronoiCell> computeVoronoiCells() {
+		int n = this.sites.size();
+		SiteIndex index = (n >= SITE_INDEX_MIN_SIZE) ? siteIndex() : null;
+		return new VoronoiCellBuilder(this.geometry, this.sites.xs(), this.sites.ys(), n, index).buildCells();
+	}
+
 	public Set<Point2D.Double> computeHilbertVoronoi(Point2D.Double p1, Point2D.Double p2) {
 		this.voronoiPoints.clear();
 		Set<Point2D.Double> pts = new HashSet<Point2D.Double>();
@@ -268,38 +637,10 @@ public class Voronoi {
 	 * point for site s
 	 */
 	public static Double[][] thetaRays(Point2D.Double s, int n) {
-		// System.out.println("thetaRays starting.");
 		// ensure that angular division is a valid number
 		if (n < 1)
 			return null;
-
-		Point2D.Double p = new Point2D.Double(1, 0);
-		Double[][] lines = new Double[n][3];
-		for (int k = 0; k < n; k++) {
-			// determine rotated point
-			Double theta = k * (2 * Math.PI / n);
-			Point2D.Double r = rotationMatrix(p, theta);
-			r.x += s.x;
-			r.y += s.y;
-			/*
-			 * if(k == 1) { System.out.println(Util.printCoordinate(r));
-			 * System.out.println(Util.printCoordinate(new Point2D.Double(s.x +
-			 * Math.cos(theta), s.y + Math.sin(theta)))); System.out.println(theta); }
-			 */
-
-			// convert points to homogeneous coordinates and compute line between the two
-			// lines
-			Point3d hr = HilbertGeometry.toHomogeneous(r);
-			Point3d hs = HilbertGeometry.toHomogeneous(s);
-			Point3d rsLine = hr.crossProduct(hs);
-			lines[k][0] = rsLine.x;
-			lines[k][1] = rsLine.y;
-			lines[k][2] = rsLine.z;
-			// System.out.println("Line between (" + r.x + ", " + r.y + ") and (" + s.x + ",
-			// " + s.y + "): " + rsLine.x + "x + " + rsLine.y + "y + " + rsLine.z + " = 0");
-		}
-
-		return lines;
+		return toLineArray(thetaRayLines(s, n), n);
 	}
 
 	/*
@@ -310,43 +651,83 @@ public class Voronoi {
 		// ensure that angular division is a valid number
 		if (n < 1)
 			return null;
+		return toLineArray(thetaRayLines(s, startPoint, endPoint, n), n + 1);
+	}
 
-		// compute the starting and ending angle
-		Double theta1, theta2;
-		if (s.y == startPoint.y)
-			theta1 = (s.y < startPoint.y) ? Math.PI / 2 : 3 * Math.PI / 2;
-		if (s.y == endPoint.y)
-			theta2 = (s.y < endPoint.y) ? Math.PI / 2 : 3 * Math.PI / 2;
-		theta1 = Voronoi.spokeAngle(s, startPoint);
-		theta2 = Voronoi.spokeAngle(s, endPoint);
+	/*
+	 * Lines through site s at the angles 2 k pi / n, for k < n, as a, b, c
+	 * triples of the line a x + b y + c = 0 in a flat array
+	 */
+	public static double[] thetaRayLines(Point2D.Double s, int n) {
+		// ensure that angular division is a valid number
+		if (n < 1)
+			return null;
 
-		// ensure that angles are ordered correctly
+		double[] lines = new double[3 * n];
+		for (int k = 0; k < n; k++)
+			thetaRayLine(s, k * (2 * Math.PI / n), lines, 3 * k);
+		return lines;
+	}
+
+	/*
+	 * Lines through site s at n + 1 angles evenly spaced between the angles of
+	 * the spokes to startPoint and endPoint, both included, as a, b, c triples
+	 * in a flat array
+	 */
+	public static double[] thetaRayLines(Point2D.Double s, Point2D.Double startPoint, Point2D.Double endPoint,
+			int n) {
+		// ensure that angular division is a valid number
+		if (n < 1)
+			return null;
+
+		// compute the starting and ending angle, in order
+		double theta1 = Voronoi.spokeAngle(s, startPoint);
+		double theta2 = Voronoi.spokeAngle(s, endPoint);
 		if (theta2 < theta1) {
-			Double temp = theta1;
+			double temp = theta1;
 			theta1 = theta2;
 			theta2 = temp;
 		}
 
-		Point2D.Double p = new Point2D.Double(1, 0);
-		Double[][] lines = new Double[n + 1][3];
-		for (int k = 0; k <= n; k++) {
-			// determine rotated point
-			Double theta = theta1 + k * ((theta2 - theta1) / n);
-			Point2D.Double r = rotationMatrix(p, theta);
-			r.x += s.x;
-			r.y += s.y;
+		double[] lines = new double[3 * (n + 1)];
+		for (int k = 0; k <= n; k++)
+			thetaRayLine(s, theta1 + k * ((theta2 - theta1) / n), lines, 3 * k);
+		return lines;
+	}
+
+	/*
+	 * Line through s and s + (cos(theta), sin(theta)), stored from
+	 * lines[offset]. This is the cross product of the two points in
+	 * homogeneous coordinates.
+	 */
+	private static void thetaRayLine(Point2D.Double s, double theta, double[] lines, int offset) {
+		double cos = Math.cos(theta), sin = Math.sin(theta);
+		lines[offset] = sin;
+		lines[offset + 1] = -cos;
+		lines[offset + 2] = cos * s.y - sin * s.x;
+	}
 
-			// convert points to homogeneous coordinates and compute line between the two
-			// lines
-			Point3d hr = HilbertGeometry.toHomogeneous(r);
-			Point3d hs = HilbertGeometry.toHomogeneous(s);
-			Point3d rsLine = hr.crossProduct(hs);
-			lines[k][0] = rsLine.x;
-			lines[k][1] = rsLine.y;
-			lines[k][2] = rsLine.z;
+	private static Double[][] toLineArray(double[] lines, int count) {
+		Double[][] array = new Double[count][3];
+		for (int k = 0; k < count; k++) {
+			array[k][0] = lines[3 * k];
+			array[k][1] = lines[3 * k + 1];
+			array[k][2] = lines[3 * k + 2];
 		}
+		return array;
+	}
 
-		return lines;
+	/*
+	 * Label of the sample closest to p, read from the raster when it has been
+	 * computed and from voronoiPoints otherwise.
+	 */
+	private int sampleLabel(Point2D.Double p) {
+		if (this.raster != null) {
+			return this.raster.labelAt(p);
+		}
+		Point2D.Double closest = this.closestPoint(p);
+		Integer label = (closest == null) ? null : this.voronoiPoints.get(closest);
+		return (label == null) ? VoronoiRaster.OUTSIDE : label;
 	}
 
 	/*
@@ -423,10 +804,10 @@ public class Voronoi {
 			 * point
 			 */
 			if (this.geometry.convex.isInConvex(p1) && this.geometry.convex.isInConvex(p2)) {
-				// find the closest points p1 and p2
-				Point2D.Double closestP1 = this.closestPoint(p1);
+				// find the labels of the samples closest to p1 and p2
+				int labelP1 = this.sampleLabel(p1);
 				// System.out.println(Util.printCoordinate(p1));
-				Point2D.Double closestP2 = this.closestPoint(p2);
+				int labelP2 = this.sampleLabel(p2);
 				// System.out.println(Util.printCoordinate(p2));
 
 //				// DEBUGGING: display information about missing points
@@ -457,7 +838,7 @@ public class Voronoi {
 				 * Compare the colors between two closest point; if they are different, then p1
 				 * is on the bisector (roughly)
 				 */
-				if (this.voronoiPoints.get(closestP1) != this.voronoiPoints.get(closestP2)) {
+				if (labelP1 != labelP2) {
 					bisectorPoints.add((Point2D.Double) p1.clone());
 					// System.out.println("added point: " + Util.printCoordinate(p1));
 					if (traversePositive) {
@@ -491,14 +872,40 @@ public class Voronoi {
 	 * through the method
 	 */
 	public static LinkedList<Point2D.Double> newthetaRayTrace(Bisector b, Convex c, Double[][] lines) {
+		double[] flat = new double[3 * lines.length];
+		for (int k = 0; k < lines.length; k++) {
+			flat[3 * k] = lines[k][0];
+			flat[3 * k + 1] = lines[k][1];
+			flat[3 * k + 2] = lines[k][2];
+		}
+		return newthetaRayTrace(b, c, flat, lines.length);
+	}
+
+	/*
+	 * Determines all intersection points in the domain between the bisector and
+	 * the count lines of the flat array, as given by thetaRayLines
+	 */
+	public static LinkedList<Point2D.Double> newthetaRayTrace(Bisector b, Convex c, double[] lines, int count) {
 		// list of intersection points
 		LinkedList<Point2D.Double> intersectionPoints = new LinkedList<Point2D.Double>();
 
-		// for each line in the list, compute the intersection points
-//		for(Double[] l : lines) {
-//			intersectionPoints.addAll(b.intersectionPointsWithLine(c, l));
-//		}
+		// intersect the bisector with all lines in one pass
+		double[] conic = new double[6];
+		b.getCoefficients(conic);
+		double[] points = new double[4 * count];
+		int n = ConicKernel.intersectLines(conic, lines, count, points, new int[2 * count]);
 
+		// keep the points in the domain
+		for (int k = 0; k < n; k++) {
+			double x = points[2 * k], y = points[2 * k + 1];
+			if (c.isInConvex(x, y)) {
+				intersectionPoints.add(new Point2D.Double(x, y));
+			} else {
+				Point2D.Double p = new Point2D.Double(x, y);
+				if (c.isOnConvexBoundary(p))
+					intersectionPoints.add(p);
+			}
+		}
 		return intersectionPoints;
 	}
 
@@ -660,8 +1067,16 @@ public class Voronoi {
 		Segment e3 = sec.getEdge3();
 		Segment e4 = sec.getEdge4();
 
+		// bisectors are kept as long as the sites and the hull do not change
+		BoundaryLines boundary = this.geometry.convex.getBoundaryLines();
+		if (this.bisectorCacheVersion != this.sites.getVersion() || this.bisectorCacheBoundary != boundary) {
+			this.bisectorCache.clear();
+			this.bisectorCacheVersion = this.sites.getVersion();
+			this.bisectorCacheBoundary = boundary;
+		}
+
 		// compute Bisector
-		Bisector b = new Bisector(sec.site1, sec.site2, e1, e2, e3, e4);
+		Bisector b = this.bisectorCache.get(sec.site1, sec.site2, e1, e2, e3, e4);
 
 		if (b.returnA() == 0.0) {
 			b.setAValue(0.0000001);
@@ -677,23 +1092,46 @@ public class Voronoi {
 		LinkedList<Segment> allSegments = new LinkedList<Segment>();
 		// array of Voronoi boundary segments that intersects bisector
 		Point2D.Double[] secVertices = sec.sector.convexHull;
-		LinkedList<Point2D.Double> secBisecIntersect = null;
-		for (int i = 0; i < secVertices.length - 1; i++) {
-			Point2D.Double v1 = secVertices[i];
-			Point2D.Double v2 = secVertices[i + 1];
-			Point3d linev1v2 = Util.computeLineEquation(v1, v2);
-			secBisecIntersect = bi.intersectionPointsWithLine(this.geometry.convex, linev1v2);
-			for (Point2D.Double p : secBisecIntersect) {
-				// check if the point is in the sector
-				if (sec.isInSector(p)) {
-					// check if the point is not the entryPoint
-					if (!Util.roughlySamePoints(p, entryPoint, 1e-4)) {
-						// segments that conic intersect with
-						allIntersectionPoints.add(p);
-						allSegments.add(Util.pointsToSeg(v1, v2));
-					} else { // found the entryPoint, store this segment
-						intersectSeg[0] = Util.pointsToSeg(v1, v2);
-					}
+		Convex c = this.geometry.convex;
+		bi.getCoefficients(this.conic);
+		int count = secVertices.length;
+		if (this.sectorXs.length < count) {
+			this.sectorXs = new double[count];
+			this.sectorYs = new double[count];
+			this.conicPoints = new double[4 * count];
+			this.conicEdges = new int[2 * count];
+		}
+		for (int i = 0; i < count; i++) {
+			this.sectorXs[i] = secVertices[i].x;
+			this.sectorYs[i] = secVertices[i].y;
+		}
+		int n = ConicKernel.intersectEdges(this.conic, this.sectorXs, this.sectorYs, count, this.conicPoints,
+				this.conicEdges);
+		for (int k = 0; k < n; k++) {
+			int i = this.conicEdges[k];
+			double x = this.conicPoints[2 * k], y = this.conicPoints[2 * k + 1];
+			// a tangent edge gives the same point twice
+			if (k > 0 && this.conicEdges[k - 1] == i
+					&& Math.hypot(x - this.conicPoints[2 * k - 2], y - this.conicPoints[2 * k - 1]) <= 1e-8) {
+				continue;
+			}
+			if (!c.isInConvex(x, y)) {
+				// only build a point for the roots that may be on the boundary
+				if (!c.isOnConvexBoundary(new Point2D.Double(x, y)))
+					continue;
+			}
+			Point2D.Double p = new Point2D.Double(x, y);
+			// check if the point is in the sector
+			if (sec.isInSector(p)) {
+				Point2D.Double v1 = secVertices[i];
+				Point2D.Double v2 = secVertices[i + 1];
+				// check if the point is not the entryPoint
+				if (!Util.roughlySamePoints(p, entryPoint, 1e-4)) {
+					// segments that conic intersect with
+					allIntersectionPoints.add(p);
+					allSegments.add(Util.pointsToSeg(v1, v2));
+				} else { // found the entryPoint, store this segment
+					intersectSeg[0] = Util.pointsToSeg(v1, v2);
 				}
 			}
 		}
@@ -724,63 +1162,21 @@ public class Voronoi {
 		}
 	}
 
+	/*
+	 * Approximates the bisector between its end points by segments that stay
+	 * within bisectorTolerance of it.
+	 */
 	public ArrayList<Segment> approximateBisector(Bisector b) {
-		ArrayList<Point2D.Double> voronoiCellVertices = new ArrayList<Point2D.Double>();
-		ArrayList<Segment> voronoiCellSegment = new ArrayList<Segment>();
-		Point2D.Double leftPoint = b.getLeftEndPoint();
-		Point2D.Double rightPoint = b.getRightEndPoint();
-		Double leftX = leftPoint.getX();
-		Double rightX = rightPoint.getX();
-		Segment line = Util.pointsToSeg(leftPoint, rightPoint);
-
-		Double incrementX;
-		if (leftX < rightX) {
-			incrementX = (rightX - leftX) / 5;
-		} else {
-			incrementX = (leftX - rightX) / 5;
-		}
-
-		Double increment = leftX;
-		// Keep approximating bisector until we're out of range
-		while (increment <= rightX + .0000001) {
-			if (Math.abs(increment - rightX) <= .0000001) {
-				increment = rightX;
-			}
-			// assign value
-			Double[] potentialYVal = b.computeX(increment);
-			Double[] pointToLineDistance = new Double[potentialYVal.length];
-			for (int i = 0; i < potentialYVal.length; i++) {
-				pointToLineDistance[i] = Util.distanceXYToSegment(increment, potentialYVal[i], line);
-			}
-			// if there is only one Y value
-			if (pointToLineDistance.length == 1) {
-				Point2D.Double pt = new Point2D.Double(increment, potentialYVal[0]);
-				voronoiCellVertices.add(pt);
-			} else if (pointToLineDistance[0] < pointToLineDistance[1]) {
-				Point2D.Double pt = new Point2D.Double(increment, potentialYVal[0]);
-				voronoiCellVertices.add(pt);
-			} else if (pointToLineDistance[1] < pointToLineDistance[0]) {
-				Point2D.Double pt = new Point2D.Double(increment, potentialYVal[1]);
-				voronoiCellVertices.add(pt);
-			} else {
-				Point2D.Double pt = new Point2D.Double(increment, potentialYVal[0]);
-				voronoiCellVertices.add(pt);
-			}
-			if (increment >= rightX) {
-				break;
-			}
-			increment += incrementX;
-		}
+		tessellator().tessellate(b);
+		return this.tessellator.toSegments();
+	}
 
-		// Construct segment with voronoi cell vertices
-		for (int i = 0; i < voronoiCellVertices.size() - 1; i++) {
-			Point2D.Double p1 = voronoiCellVertices.get(i);
-			Point2D.Double p2 = voronoiCellVertices.get(i + 1);
-			Segment newSeg = Util.pointsToSeg(p1, p2);
-			voronoiCellSegment.add(newSeg);
+	/* Tessellator for the current bisectorTolerance */
+	private BisectorTessellator tessellator() {
+		if (this.tessellator == null || this.tessellator.getTolerance() != this.bisectorTolerance) {
+			this.tessellator = new BisectorTessellator(this.bisectorTolerance);
 		}
-
-		return voronoiCellSegment;
+		return this.tessellator;
 	}
 
 	public ArrayList<VoronoiCell> realAugusteAlgo(Point2D.Double site1, Point2D.Double site2) {
@@ -788,28 +1184,23 @@ public class Voronoi {
 		Convex c = this.geometry.convex;
 
 		// construct sectors
-		KdTree<KdTree.XYZPoint> graph = this.constructGraph(site1, site2);
+		SectorGraph graph = this.constructSectorGraph(site1, site2);
 
-		// get site1 neighbor - arraylist
-		KdTree.XYZPoint s1XYZ = KdTree.getNode(graph, Util.toXYZPoint(site1)).getID();
-		ArrayList<EdgeData> s1Neighbors = s1XYZ.getNeighbors();
-
-		// sort neighbors base on angular coordinates
-		ArrayList<Double> s1Angles = Convex.computeAngles(s1Neighbors, site1);
-		Convex.quickSort(s1Neighbors, s1Angles, 0, s1Neighbors.size() - 1);
+		// neighbors of site1, sorted by angular coordinates
+		SectorGraph.Vertex s1Vertex = graph.getVertex(site1);
 
 		// find site1, site2 segment angular coordinates
 		Double toAngle = Voronoi.spokeAngle(site1, site2);
 		
 		// find the immediate left spokes
-		int counter = s1Neighbors.size() - 1;
-		for (int i = 0; i < s1Neighbors.size(); i++) {
-			if (toAngle < s1Angles.get(i)) {
+		int counter = s1Vertex.degree() - 1;
+		for (int i = 0; i < s1Vertex.degree(); i++) {
+			if (toAngle < s1Vertex.getHalfEdge(i).getAngle()) {
 				counter = i;
 				break;
 			}
 		}
-		Point2D.Double v = s1Neighbors.get(counter).otherNode;
+		Point2D.Double v = s1Vertex.getHalfEdge(counter).target().point;
 		Segment sharedEdge = Util.pointsToSeg(site1, v);
 
 		// construct sector
@@ -1176,6 +1567,38 @@ public class Voronoi {
 	}
 	
 
+	/**
+	 * Segments of the graph of two sites: the hull edges and the spokes of both
+	 * sites, subdivided where they meet.
+	 */
+	private List<Segment> graphSegments(Point2D.Double s1, Point2D.Double s2) {
+		// get arrays of hull and site vertices
+		Convex c = this.geometry.convex;
+		Point2D.Double[] hullVertices = Arrays.copyOfRange(c.convexHull, 0, c.convexHull.length - 1);
+		Point2D.Double[] siteVertices = new Point2D.Double[] { s1, s2 };
+
+		List<Segment> edgeSegments = c.spokeHullIntersection(hullVertices, siteVertices);
+		List<Segment> spokeSegments = c.spokeSegments(hullVertices, siteVertices);
+
+		// combine lists
+		List<Segment> allSegments = new ArrayList<Segment>();
+		allSegments.addAll(edgeSegments);
+		allSegments.addAll(spokeSegments);
+		return allSegments;
+	}
+
+	/**
+	 * Same graph as constructGraph, as a doubly-connected edge list whose faces
+	 * are the sectors of the two sites.
+	 * 
+	 * @param s1 first site
+	 * @param s2 second site
+	 * @return the arrangement of the spokes of the sites and the hull edges
+	 */
+	public SectorGraph constructSectorGraph(Point2D.Double s1, Point2D.Double s2) {
+		return new SectorGraph(this.graphSegments(s1, s2));
+	}
+
 	/**
 	 * Given a convex hull and two sites, this method a construct the graph whose
 	 * nodes are either the sites or intersection points between a spoke and another
@@ -1189,20 +1612,7 @@ public class Voronoi {
 	 *         any pair of spokes or edges
 	 */
 	public KdTree<KdTree.XYZPoint> constructGraph(Point2D.Double s1, Point2D.Double s2) {
-		// get arrays of hull and site vertices
-		Convex c = this.geometry.convex;
-		Point2D.Double[] hullVertices = Arrays.copyOfRange(c.convexHull, 0, c.convexHull.length - 1);
-		Point2D.Double[] siteVertices = new Point2D.Double[] { s1, s2 };
-
-		List<Segment> edgeSegments = c.spokeHullIntersection(hullVertices, siteVertices);
-		List<Segment> site1Segments = c.spokeIntersects(hullVertices, new Point2D.Double[] { s2 }, s1);
-		List<Segment> site2Segments = c.spokeIntersects(hullVertices, new Point2D.Double[] { s1 }, s2);
-
-		// combine lists
-		List<Segment> allSegments = new ArrayList<Segment>();
-		allSegments.addAll(edgeSegments);
-		allSegments.addAll(site1Segments);
-		allSegments.addAll(site2Segments);
+		List<Segment> allSegments = this.graphSegments(s1, s2);
 
 		// construct graph
 		KdTree<KdTree.XYZPoint> tree = new KdTree<KdTree.XYZPoint>(null, 2);
@@ -1236,25 +1646,251 @@ public class Voronoi {
 	}
 
 	/*
-	 * Construct the Trapezoidal map for all Voronoi cells
+	 * Construct the Trapezoidal map for all Voronoi cells. The cell edges make a
+	 * subdivision of the domain: each edge shared by two cells is taken once,
+	 * from the cell of the smaller site, and its curved pieces are tessellated
+	 * within bisectorTolerance. A vertex where cells meet is computed by each of
+	 * them, so it is identified by those cells rather than by its coordinates,
+	 * and all segments ending there share it. Each segment records the sites of
+	 * the cells on both of its sides, and each trapezoid then lies in the cell
+	 * below its upper segment.
 	 */
 	public void constructVoronoiCellTrapMap() {
 		// if there are no Voronoi cells, then return
-		if (this.centerPoints.size() < 1)
+		if (this.sites.size() < 1) {
+			this.voronoiCells = null;
 			return;
+		}
 
-		// if there is one Voronoi cells, make a trapmap using only the sides of the
-		// convex body
-//		else if(this.centerPoints.size() == 1) {
-//			LinkedList<Segment> edges = new LinkedList();
-//			for(Segment s : this.geometry.convex.lineSegments)
-//				edges.add(s);
-//			this.voronoiCells = new TrapMap(edges);
-//		}
+		ArrayList<VoronoiCell> cells = computeVoronoiCells();
+		BoundaryLines boundary = this.geometry.convex.getBoundaryLines();
+		HashMap<Long, Integer> corners = new HashMap<Long, Integer>();
+		for (int i = 0; i < boundary.size(); i++) {
+			corners.put(floatKey(boundary.getX(i), boundary.getY(i)), i);
+		}
+		HashMap<Long, PVector> shared = new HashMap<Long, PVector>();
+		ArrayList<Segment> segments = new ArrayList<Segment>();
+		for (int s = 0; s < cells.size(); s++) {
+			VoronoiCell cell = cells.get(s);
+			int n = cell.getVertices().size();
+			PVector[] vertices = new PVector[n];
+			for (int i = 0; i < n; i++) {
+				vertices[i] = sharedVertex(shared, corners, cells.size(), s, cell.getNeighbor((i + n - 1) % n),
+						cell.getNeighbor(i), cell.getVertexIndex(i));
+			}
+			// a bend that rounds next to a vertex would only leave an edge
+			// shorter than the float resolution, which rounding may cross
+			for (int i = 0; i < n; i++) {
+				if (cell.getNeighbor((i + n - 1) % n) != cell.getNeighbor(i)) {
+					continue;
+				}
+				PVector previous = vertices[(i + n - 1) % n], next = vertices[(i + 1) % n];
+				if (closeInFloat(vertices[i], previous)) {
+					vertices[i] = previous;
+				} else if (closeInFloat(vertices[i], next)) {
+					vertices[i] = next;
+				}
+			}
+			for (int i = 0; i < n; i++) {
+				int neighbor = cell.getNeighbor(i);
+				if (neighbor != VoronoiCellBuilder.BOUNDARY && neighbor < s) {
+					continue;
+				}
+				PVector p = vertices[i], q = vertices[(i + 1) % n];
+				if (neighbor == VoronoiCellBuilder.BOUNDARY) {
+					addCellSegment(segments, p, q, s, neighbor);
+					continue;
+				}
+				// curved edges within bisectorTolerance of their conic
+				Point2D.Double from = cell.getVertexIndex(i), to = cell.getVertexIndex((i + 1) % n);
+				int count = tessellator().tessellate(cell.getConic(i), from.x, from.y, to.x, to.y);
+				for (int k = 1; k < count; k++) {
+					PVector r = (k + 1 < count)
+							? new PVector((float) this.tessellator.getX(k), (float) this.tessellator.getY(k))
+							: q;
+					addCellSegment(segments, p, r, s, neighbor);
+					p = r;
+				}
+			}
+		}
+		this.voronoiCells = new TrapMap(segments);
+		this.trapMapVersion = this.sites.getVersion();
+		this.trapMapBoundary = boundary;
+	}
+
+	/*
+	 * Gives the vertex of the trapezoidal map at p, the vertex of the cell of
+	 * site between its edges shared with the cells before and after. The cells
+	 * meeting at a vertex each compute it, so it is keyed by them: by the three
+	 * sites, or by the two sites and the boundary, in the order they come around
+	 * the vertex. Any number of cells may meet at a corner of the domain, so a
+	 * vertex that rounds to a corner is keyed by the corner instead.
+	 */
+	private static PVector sharedVertex(HashMap<Long, PVector> shared, HashMap<Long, Integer> corners, int size,
+			int site, int before, int after, Point2D.Double p) {
+		long m = size + 1;
+		Integer corner = corners.get(floatKey(p.x, p.y));
+		long key;
+		if (corner != null) {
+			key = -1 - corner;
+		} else if (before == after) {
+			// a bend of an edge, or between two boundary edges: no other cell has it
+			return new PVector((float) p.x, (float) p.y);
+		} else if (before == VoronoiCellBuilder.BOUNDARY) {
+			key = (site * m + after) * m + size;
+		} else if (after == VoronoiCellBuilder.BOUNDARY) {
+			key = (before * m + site) * m + size;
+		} else if (site < before && site < after) {
+			// three cells may meet at two vertices, in opposite orders
+			key = (site * m + after) * m + before;
+		} else if (before < after) {
+			key = (before * m + site) * m + after;
+		} else {
+			key = (after * m + before) * m + site;
+		}
+		PVector vertex = shared.get(key);
+		if (vertex == null) {
+			vertex = new PVector((float) p.x, (float) p.y);
+			shared.put(key, vertex);
+		}
+		return vertex;
+	}
+
+	/* True if p and q are a few float steps apart at most */
+	private static boolean closeInFloat(PVector p, PVector q) {
+		return Math.abs(p.x - q.x) <= 4 * Math.ulp(p.x) && Math.abs(p.y - q.y) <= 4 * Math.ulp(p.y);
+	}
+
+	/* Key of the point (x, y) rounded to the float coordinates of the map */
+	private static long floatKey(double x, double y) {
+		return ((long) Float.floatToIntBits((float) x) << 32) | (Float.floatToIntBits((float) y) & 0xffffffffL);
+	}
 
-		// for cases where there are more than one site
-		else {
-			return; // to implemented later
+	/*
+	 * Adds the segment from p to q of the boundary of the cell of site, which
+	 * lies on its left, across from the cell of neighbor. Segments that vanish
+	 * in float coordinates are skipped.
+	 */
+	private void addCellSegment(List<Segment> segments, PVector p, PVector q, int site, int neighbor) {
+		if (p.x == q.x && p.y == q.y) {
+			return;
+		}
+		Segment segment = new Segment(p, q);
+		Point2D.Double cellSite = this.sites.get(site);
+		Point2D.Double other = (neighbor < 0) ? null : this.sites.get(neighbor);
+		// going left to right, the cell on the left is above the segment
+		if (segment.getLeftPoint() == p) {
+			segment.setSites(cellSite, site, other, neighbor);
+		} else {
+			segment.setSites(other, neighbor, cellSite, site);
+		}
+		segments.add(segment);
+	}
+
+	/*
+	 * Gives the index of the site whose Voronoi cell contains (x, y), or -1 if
+	 * (x, y) is outside of the domain. The trapezoidal map of the cells is built
+	 * again if the sites or the domain changed since it was built. Points closer
+	 * than bisectorTolerance to a curved cell edge may get the site across it.
+	 */
+	public int locateSite(double x, double y) {
+		if (this.sites.size() < 1 || !this.geometry.convex.isInConvex(x, y)) {
+			return -1;
+		}
+		updateVoronoiCellTrapMap();
+		return trapezoidSite(x, y, this.voronoiCells.findContainingTrapezoid(x, y));
+	}
+
+	/*
+	 * Gives the sites of count points, as locateSite does, into out. The
+	 * points are located in the trapezoidal map in one batch, and their
+	 * trapezoids are then turned into sites in chunks of LOCATE_CHUNK points
+	 * on the common fork-join pool.
+	 */
+	public void locateSites(double[] xs, double[] ys, int count, int[] out) {
+		if (this.sites.size() < 1) {
+			Arrays.fill(out, 0, count, -1);
+			return;
+		}
+		// built here, so that the tasks only read the map and the site index
+		updateVoronoiCellTrapMap();
+		if (this.sites.size() >= SITE_INDEX_MIN_SIZE) {
+			siteIndex();
+		}
+		this.voronoiCells.findContainingTrapezoidIds(xs, ys, count, out, false);
+		SiteBatch batch = new SiteBatch(this.voronoiCells, xs, ys, out, 0, count);
+		if (count > LOCATE_CHUNK) {
+			ForkJoinPool.commonPool().invoke(batch);
+		} else {
+			batch.label();
+		}
+	}
+
+	/*
+	 * Builds the trapezoidal map of the cells again if the sites or the domain
+	 * changed since it was built.
+	 */
+	private void updateVoronoiCellTrapMap() {
+		if (this.voronoiCells == null || this.trapMapVersion != this.sites.getVersion()
+				|| this.trapMapBoundary != this.geometry.convex.getBoundaryLines()) {
+			constructVoronoiCellTrapMap();
+		}
+	}
+
+	/*
+	 * Gives the site of (x, y), in the domain, given the trapezoid of the map
+	 * containing it, which may be null.
+	 */
+	private int trapezoidSite(double x, double y, Trapezoid t) {
+		if (t == null || t.getSiteIndex() < 0) {
+			// between the boundary of the domain and its float rounding
+			return nearestSite(x, y);
+		}
+		return t.getSiteIndex();
+	}
+
+	/*
+	 * Turns the trapezoid IDs of points [from, to) of a batch into sites,
+	 * splitting the range in two while it is too large.
+	 */
+	private class SiteBatch extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final TrapMap map;
+		private final double[] xs, ys;
+		/* Trapezoid IDs of the points, replaced by their sites */
+		private final int[] siteIds;
+		private final int from, to;
+
+		SiteBatch(TrapMap map, double[] xs, double[] ys, int[] siteIds, int from, int to) {
+			this.map = map;
+			this.xs = xs;
+			this.ys = ys;
+			this.siteIds = siteIds;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.to - this.from <= LOCATE_CHUNK) {
+				label();
+			} else {
+				int mid = (this.from + this.to) >>> 1;
+				invokeAll(new SiteBatch(this.map, this.xs, this.ys, this.siteIds, this.from, mid),
+						new SiteBatch(this.map, this.xs, this.ys, this.siteIds, mid, this.to));
+			}
+		}
+
+		void label() {
+			for (int i = this.from; i < this.to; i++) {
+				double x = this.xs[i], y = this.ys[i];
+				if (!geometry.convex.isInConvex(x, y)) {
+					this.siteIds[i] = -1;
+				} else {
+					int id = this.siteIds[i];
+					this.siteIds[i] = trapezoidSite(x, y, (id < 0) ? null : this.map.getTrapezoid(id));
+				}
+			}
 		}
 	}
 
@@ -12,6 +12,15 @@ public class VoronoiCell {
 	// ArrayList<Segment> cellWall = new ArrayList<Segment>();
 	// Store the vertices as a list of cells
 	ArrayList<Point2D.Double> cellVertices = new ArrayList<Point2D.Double>();
+	// Index of the site across the edge from each vertex to the next one, -1 on
+	// the boundary of the domain; null if unknown
+	int[] neighbors = null;
+	// Sites whose cells share an edge with this one, in increasing order; null
+	// if unknown
+	int[] adjacent = null;
+	// Coefficients A..F of the bisector conic along each edge, null on the
+	// boundary of the domain; null if unknown
+	double[][] conics = null;
 
 	// constructor
 	public VoronoiCell(Point2D.Double site, ArrayList<Point2D.Double> cellVertices) {
@@ -33,6 +42,36 @@ public class VoronoiCell {
 
 	}
 
+	/*
+	 * Cell whose vertices are already sorted by angle around the site.
+	 * neighbors[i] is the index of the site across the edge from vertex i to
+	 * vertex i + 1, or -1 if that edge is on the boundary of the domain.
+	 */
+	public VoronoiCell(Point2D.Double site, ArrayList<Point2D.Double> cellVertices, int[] neighbors) {
+		this.site = site;
+		this.cellVertices = cellVertices;
+		this.neighbors = neighbors;
+	}
+
+	/*
+	 * Same, with the sites whose cells share an edge with this one: the
+	 * distinct neighbors of the edges.
+	 */
+	public VoronoiCell(Point2D.Double site, ArrayList<Point2D.Double> cellVertices, int[] neighbors, int[] adjacent) {
+		this(site, cellVertices, neighbors);
+		this.adjacent = adjacent;
+	}
+
+	/*
+	 * Same, with conics[i] the bisector conic A x^2 + B y^2 + C xy + D x + E y +
+	 * F = 0 along the edge from vertex i to vertex i + 1, null on the boundary.
+	 */
+	public VoronoiCell(Point2D.Double site, ArrayList<Point2D.Double> cellVertices, int[] neighbors, int[] adjacent,
+			double[][] conics) {
+		this(site, cellVertices, neighbors, adjacent);
+		this.conics = conics;
+	}
+
 //	public Segment getWallIndex(int index) {
 //		return this.cellWall.get(index);
 //	}
@@ -62,6 +101,37 @@ public class VoronoiCell {
 		return this.site;
 	}
 
+	/*
+	 * Index of the site across the edge from vertex index to the next vertex, -1
+	 * on the boundary of the domain.
+	 */
+	public int getNeighbor(int index) {
+		return this.neighbors[index];
+	}
+
+	public boolean hasNeighbors() {
+		return this.neighbors != null;
+	}
+
+	/*
+	 * Sites whose cells share an edge with this one, or null if unknown.
+	 */
+	public int[] getAdjacentSites() {
+		return this.adjacent;
+	}
+
+	/*
+	 * Bisector conic along the edge from vertex index to the next vertex, null
+	 * on the boundary of the domain.
+	 */
+	public double[] getConic(int index) {
+		return this.conics[index];
+	}
+
+	public boolean hasConics() {
+		return this.conics != null;
+	}
+
 	private double calculateAnglePointSite(Point2D.Double point) {
 		double angle = Math.toDegrees(Math.atan2(point.x - site.x, point.y - site.y));
 		// Keep angle between 0 and 360
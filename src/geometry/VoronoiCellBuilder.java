@@ -0,0 +1,1614 @@
+package geometry;
+
+import java.awt.geom.Line2D;
+import java.awt.geom.Point2D;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/*
+ * Builds the Voronoi cells of any number of center points in the Hilbert
+ * metric of a convex domain, with edges on the bisector conics.
+ *
+ * Seen from a site s, the domain is cut into wedges by the spokes of s, the
+ * lines through s and each vertex of the domain. Within a wedge, the chords
+ * through s hit the same forward and backward edges, so the distance to s has
+ * a fixed formula there, and where a wedge of s meets a wedge of another site
+ * t the bisector of s and t is the conic of Bisector.computeConic for these
+ * four edges. Every zero of that conic inside both wedges is on the bisector.
+ *
+ * Voronoi cells are star-shaped with respect to their site, so a cell is
+ * stored as the pieces its boundary is made of, in angular order around the
+ * site: each piece lies in one wedge of the site and is either on an edge of
+ * the domain or on one conic of the bisector with a neighbor. The bisector of
+ * s and t is traced piece by piece from the segment between both sites, in
+ * both directions, from one spoke of s or t to the next, until it leaves the
+ * domain. Clipping the cell of s by t keeps, along each ray from s, the
+ * closest of the old boundary and of that bisector; the pieces change where
+ * the conics cross, at the Voronoi vertices given by
+ * ConicKernel.intersectConics.
+ *
+ * Sites are inserted one at a time, in the breadth-first order of the site
+ * index, so that each new site lands in a small cell. The new site t lies in
+ * the cell of the inserted site u nearest to it, which it cuts. The cell t
+ * gets is connected, so every cell it cuts is reached from the cell of u
+ * through edges of which t takes a part on both sides: only the neighbors of
+ * the cells that t cuts are tried. Those cells are exactly the neighbors of
+ * t, and the cell of t is the domain clipped by each of them.
+ *
+ * Vertices are exact up to the rounding of the conic intersections, the
+ * neighbors of a cell are the sites across its edges, and a cell costs
+ * O(m + k) conics on a domain with m vertices and a cell with k neighbors.
+ */
+public class VoronoiCellBuilder {
+	/* Neighbor of the cell edges on the boundary of the domain */
+	public static final int BOUNDARY = -1;
+	private static final double TWO_PI = 2 * Math.PI;
+	/* Angles closer than that are the same spoke, or the same breakpoint */
+	private static final double ANGLE_EPSILON = 1e-9;
+	/* Closure of the wedges, for points computed on their sides */
+	private static final double WEDGE_EPSILON = 1e-8;
+	/* Distance outside of the domain at which points are still in it */
+	private static final double DOMAIN_EPSILON = 1e-7;
+	/* Relative difference of distances under which a point is on a bisector */
+	private static final double RESIDUAL_EPSILON = 1e-9;
+	/* Difference of angles, or log of the ratio of distances, under which a bisector is degenerate */
+	private static final double DEGENERATE_EPSILON = 1e-6;
+	/* Curve of a ray of traceRays that reaches the boundary first */
+	private static final int NO_CURVE = -1;
+	/* Relative size of the quadratic terms of a conic under which it is a line */
+	private static final double LINEAR_EPSILON = 1e-12;
+	/* Relative difference of radii above which the boundary of a cell jumps along a ray */
+	private static final double JUMP_EPSILON = 1e-9;
+	/* Relative distance from the end of a ray under which a root on it is that end */
+	private static final double TANGENT_EPSILON = 1e-6;
+	/* Bisection steps locating a bisector point the conic missed */
+	private static final int BISECTION_STEPS = 100;
+
+	private final BoundaryLines boundary;
+	/* Edge lines of the domain with unit normals, positive inside */
+	private final double[] lines;
+	/* Edge lines as degenerate conics, the curves of the boundary pieces */
+	private final double[][] edgeConics;
+	private final double[] xs, ys;
+	private final int n;
+	/* Largest coordinate of a vertex of the domain */
+	private final double reach;
+	/* Index of the sites, null to scan them */
+	private final SiteIndex index;
+	/*
+	 * Spokes of each site at least DOMAIN_EPSILON inside the domain, null for
+	 * the others: the distances to a site on the boundary are infinite
+	 */
+	private final Spokes[] spokes;
+	/* Pieces of the cell of each inserted site, in angular order */
+	private final ArrayList<ArrayList<Piece>> cells;
+	private final boolean[] inserted;
+	/* Insertion during which each site was last queued */
+	private final int[] queued;
+	private int insertion = 0;
+
+	/*
+	 * Builder for the count first sites of siteX and siteY. index must have been
+	 * built on these sites, or be null for a linear search of the nearest site.
+	 */
+	public VoronoiCellBuilder(HilbertGeometry geometry, double[] siteX, double[] siteY, int count, SiteIndex index) {
+		this.boundary = geometry.convex.getBoundaryLines();
+		this.xs = Arrays.copyOf(siteX, count);
+		this.ys = Arrays.copyOf(siteY, count);
+		this.n = count;
+		this.index = index;
+
+		int m = this.boundary.n;
+		this.lines = new double[3 * m];
+		this.edgeConics = new double[m][];
+		for (int e = 0; e < m; e++) {
+			double a = this.boundary.lines[3 * e], b = this.boundary.lines[3 * e + 1], c = this.boundary.lines[3 * e + 2];
+			double norm = Math.hypot(a, b);
+			this.lines[3 * e] = a / norm;
+			this.lines[3 * e + 1] = b / norm;
+			this.lines[3 * e + 2] = c / norm;
+			this.edgeConics[e] = new double[] { 0, 0, 0, a / norm, b / norm, c / norm };
+		}
+		double reach = 0;
+		for (int j = 0; j < m; j++) {
+			reach = Math.max(reach, Math.max(Math.abs(this.boundary.xs[j]), Math.abs(this.boundary.ys[j])));
+		}
+		this.reach = reach;
+
+		this.spokes = new Spokes[count];
+		if (m >= 3) {
+			for (int s = 0; s < count; s++) {
+				if (inInterior(this.xs[s], this.ys[s])) {
+					this.spokes[s] = new Spokes(s);
+				}
+			}
+		}
+		this.cells = new ArrayList<ArrayList<Piece>>(count);
+		for (int s = 0; s < count; s++) {
+			this.cells.add(null);
+		}
+		this.inserted = new boolean[count];
+		this.queued = new int[count];
+	}
+
+	/*
+	 * Cells of all sites, in site order. Sites at the same place share the cell
+	 * of the smallest of them; the other ones, and the sites that are not inside
+	 * the domain or are on its boundary, get empty cells.
+	 */
+	public ArrayList<VoronoiCell> buildCells() {
+		// label[u] is the site given the cell inserted for u
+		int[] label = new int[this.n];
+		for (int s = 0; s < this.n; s++) {
+			label[s] = s;
+		}
+		int[] order = this.index != null ? this.index.breadthFirstOrder() : identity(this.n);
+		for (int t : order) {
+			if (this.spokes[t] == null) {
+				continue;
+			}
+			int u = nearestInserted(this.xs[t], this.ys[t]);
+			if (u < 0) {
+				this.cells.set(t, initialCell(t));
+				this.inserted[t] = true;
+			} else if (this.xs[u] == this.xs[t] && this.ys[u] == this.ys[t]) {
+				label[u] = Math.min(label[u], t);
+			} else {
+				insert(t, u);
+			}
+		}
+
+		Outline[] outlines = new Outline[this.n];
+		for (int u = 0; u < this.n; u++) {
+			if (this.inserted[u]) {
+				outlines[label[u]] = outline(label[u], u, this.cells.get(u), label);
+			}
+		}
+		// cells with an edge with each cell, which may be across its jumps
+		ArrayList<ArrayList<Integer>> bordering = new ArrayList<ArrayList<Integer>>(this.n);
+		for (int s = 0; s < this.n; s++) {
+			bordering.add(new ArrayList<Integer>());
+		}
+		for (Outline o : outlines) {
+			for (int j = 0; o != null && j < o.size; j++) {
+				ArrayList<Integer> list = (o.neighbors[j] == BOUNDARY) ? null : bordering.get(o.neighbors[j]);
+				if (list != null && (list.isEmpty() || list.get(list.size() - 1) != o.site)) {
+					list.add(o.site);
+				}
+			}
+		}
+		VoronoiCell[] result = new VoronoiCell[this.n];
+		for (int s = 0; s < this.n; s++) {
+			if (outlines[s] != null) {
+				splitJumps(outlines[s], outlines, bordering.get(s));
+				result[s] = toVoronoiCell(outlines[s]);
+			}
+		}
+		for (int s = 0; s < this.n; s++) {
+			if (result[s] == null) {
+				result[s] = emptyCell(s);
+			}
+		}
+		return new ArrayList<VoronoiCell>(Arrays.asList(result));
+	}
+
+	/*
+	 * Cell of site s alone, clipped by every other site, without building the
+	 * cells of the others. Its edges are those buildCells gives, but a jump
+	 * has the neighbor of its closest piece, even where other cells share its
+	 * far side. The cell is empty if s is not inside the domain or is at the
+	 * same place as a smaller site. A builder on some of the sites gives a
+	 * cell containing the cell of s among all of them.
+	 */
+	public VoronoiCell buildCell(int s) {
+		if (this.spokes[s] == null) {
+			return emptyCell(s);
+		}
+		ArrayList<Piece> cell = initialCell(s);
+		for (int t = 0; t < this.n; t++) {
+			if (t == s || this.spokes[t] == null) {
+				continue;
+			}
+			if (this.xs[t] == this.xs[s] && this.ys[t] == this.ys[s]) {
+				if (t < s) {
+					return emptyCell(s);
+				}
+				continue;
+			}
+			ArrayList<Piece> next = clip(s, cell, t);
+			if (next != null) {
+				cell = next;
+			}
+		}
+		return toVoronoiCell(outline(s, s, cell, identity(this.n)));
+	}
+
+	private VoronoiCell emptyCell(int s) {
+		return new VoronoiCell(new Point2D.Double(this.xs[s], this.ys[s]), new ArrayList<Point2D.Double>(), new int[0],
+				new int[0], new double[0][]);
+	}
+
+	private static int[] identity(int n) {
+		int[] order = new int[n];
+		for (int i = 0; i < n; i++) {
+			order[i] = i;
+		}
+		return order;
+	}
+
+	/*
+	 * Inserts site t, which lies in the cell of u: the cells that t cuts are
+	 * searched from u and clipped, and t gets the domain clipped by them and
+	 * by the cells around them. Those keep all of their cell, but may still
+	 * share an edge with t where they win a region over which both tie.
+	 */
+	private void insert(int t, int u) {
+		this.insertion++;
+		ArrayDeque<Integer> queue = new ArrayDeque<Integer>();
+		ArrayList<Integer> cut = new ArrayList<Integer>();
+		ArrayList<Integer> kept = new ArrayList<Integer>();
+		ArrayList<ArrayList<Piece>> clipped = new ArrayList<ArrayList<Piece>>();
+		queue.add(u);
+		this.queued[u] = this.insertion;
+		while (!queue.isEmpty()) {
+			int v = queue.poll();
+			ArrayList<Piece> cell = clip(v, this.cells.get(v), t);
+			if (cell == null) {
+				kept.add(v);
+				continue;
+			}
+			cut.add(v);
+			clipped.add(cell);
+			for (Piece piece : this.cells.get(v)) {
+				int w = piece.owner;
+				if (w != BOUNDARY && this.queued[w] != this.insertion) {
+					this.queued[w] = this.insertion;
+					queue.add(w);
+				}
+			}
+		}
+		if (!cut.contains(u)) {
+			// u was missed by rounding: t must still stay out of its cell
+			cut.add(u);
+			clipped.add(this.cells.get(u));
+			kept.remove(Integer.valueOf(u));
+		}
+
+		ArrayList<Piece> cell = initialCell(t);
+		for (int v : cut) {
+			ArrayList<Piece> next = clip(t, cell, v);
+			if (next != null) {
+				cell = next;
+			}
+		}
+		for (int v : kept) {
+			ArrayList<Piece> next = clip(t, cell, v);
+			if (next != null) {
+				cell = next;
+			}
+		}
+		for (int j = 0; j < cut.size(); j++) {
+			this.cells.set(cut.get(j), clipped.get(j));
+		}
+		this.cells.set(t, cell);
+		this.inserted[t] = true;
+	}
+
+	/* Inserted site nearest to (x, y), -1 if there is none */
+	private int nearestInserted(double x, double y) {
+		if (this.index != null) {
+			return this.index.nearest(x, y, this.inserted);
+		}
+		int nearest = -1;
+		double nearestDistance = Double.POSITIVE_INFINITY;
+		for (int i = 0; i < this.n; i++) {
+			if (!this.inserted[i]) {
+				continue;
+			}
+			double d = this.boundary.distance(x, y, this.xs[i], this.ys[i]);
+			if (nearest < 0 || d < nearestDistance) {
+				nearestDistance = d;
+				nearest = i;
+			}
+		}
+		return nearest;
+	}
+
+	/* Cell of s alone in the domain: a boundary piece per wedge */
+	private ArrayList<Piece> initialCell(int s) {
+		Spokes sp = this.spokes[s];
+		ArrayList<Piece> cell = new ArrayList<Piece>(sp.size());
+		for (int i = 0; i < sp.size(); i++) {
+			double x, y;
+			if (sp.vertex[i] >= 0) {
+				x = this.boundary.xs[sp.vertex[i]];
+				y = this.boundary.ys[sp.vertex[i]];
+			} else {
+				double ux = Math.cos(sp.angle[i]), uy = Math.sin(sp.angle[i]);
+				double lambda = hitParameter(sp.forward[i], this.xs[s], this.ys[s], ux, uy);
+				x = this.xs[s] + lambda * ux;
+				y = this.ys[s] + lambda * uy;
+			}
+			cell.add(new Piece(sp.start[i], x, y, BOUNDARY, i, -1, this.edgeConics[sp.forward[i]]));
+		}
+		return cell;
+	}
+
+	/*
+	 * Cell of s clipped by the bisector of s and t: along each ray from s, the
+	 * boundary of the cell is the closest of the old boundary and of the
+	 * bisector. Returns null if t takes no part of the cell.
+	 */
+	private ArrayList<Piece> clip(int s, ArrayList<Piece> cell, int t) {
+		ArrayList<Arc> arcs = trace(s, t);
+		if (arcs.isEmpty()) {
+			return null;
+		}
+		Clipper clipper = new Clipper(s, t, cell.size() + 2 * arcs.size());
+		for (int j = 0; j < cell.size(); j++) {
+			Piece piece = cell.get(j);
+			double a = piece.start;
+			double b = (j + 1 < cell.size()) ? cell.get(j + 1).start : TWO_PI;
+			double from = a;
+			for (Arc arc : arcs) {
+				double c = Math.max(a, arc.start), d = Math.min(b, arc.end);
+				if (arc.wedge != piece.wedge || d - c <= ANGLE_EPSILON) {
+					continue;
+				}
+				if (c > from) {
+					clipper.append(piece, from, null);
+				}
+				// split the overlap at the crossings, and keep the closest curve
+				// between them
+				double[] cuts = crossings(s, piece, t, arc, c, d);
+				int count = cuts.length / 3;
+				double left = c;
+				for (int k = 0; k <= count; k++) {
+					double right = (k < count) ? cuts[3 * k] : d;
+					double[] point = (k > 0) ? new double[] { cuts[3 * k - 2], cuts[3 * k - 1] } : null;
+					double middle = this.spokes[s].angle[0] + 0.5 * (left + right);
+					double old = rootOnRay(s, piece.q, piece.owner, middle);
+					if (old == Double.POSITIVE_INFINITY) {
+						old = boundaryOnRay(s, piece.wedge, middle);
+					}
+					// where t ties with the owner of the piece over a region, the
+					// curves are the same and the smaller of both keeps it
+					double radius = rootOnRay(s, arc.q, t, middle);
+					boolean taken = (Math.abs(radius - old) <= RESIDUAL_EPSILON * old) ? t < piece.owner : radius < old;
+					clipper.append(taken ? arc : piece, left, point);
+					left = right;
+				}
+				from = d;
+			}
+			if (from < b) {
+				clipper.append(piece, from, null);
+			}
+		}
+		return clipper.taken ? clipper.pieces() : null;
+	}
+
+	/*
+	 * Pieces of a clipped cell, appended in angular order as the curve along
+	 * each interval is decided.
+	 */
+	private final class Clipper {
+		final int s, t;
+		final ArrayList<Object> sources;
+		final ArrayList<Piece> pieces;
+		/* True once an interval was given to the bisector */
+		boolean taken = false;
+
+		Clipper(int s, int t, int capacity) {
+			this.s = s;
+			this.t = t;
+			this.sources = new ArrayList<Object>(capacity);
+			this.pieces = new ArrayList<Piece>(capacity);
+		}
+
+		/*
+		 * The curve of source, an old Piece or an Arc of the bisector, starts at
+		 * angle start, at point if known.
+		 */
+		void append(Object source, double start, double[] point) {
+			Object last = this.sources.isEmpty() ? null : this.sources.get(this.sources.size() - 1);
+			if (source == last) {
+				return;
+			}
+			double x, y;
+			if (point != null) {
+				x = point[0];
+				y = point[1];
+			} else if (source instanceof Piece && Math.abs(((Piece) source).start - start) <= ANGLE_EPSILON) {
+				x = ((Piece) source).x;
+				y = ((Piece) source).y;
+			} else if (source instanceof Arc && Math.abs(((Arc) source).start - start) <= ANGLE_EPSILON) {
+				x = ((Arc) source).x0;
+				y = ((Arc) source).y0;
+			} else if (last instanceof Arc && Math.abs(((Arc) last).end - start) <= ANGLE_EPSILON) {
+				x = ((Arc) last).x1;
+				y = ((Arc) last).y1;
+			} else {
+				// the curves meet where no crossing was found: start on the new one
+				double angle = spokes[this.s].angle[0] + start;
+				double[] q = (source instanceof Piece) ? ((Piece) source).q : ((Arc) source).q;
+				int owner = (source instanceof Piece) ? ((Piece) source).owner : this.t;
+				int wedge = (source instanceof Piece) ? ((Piece) source).wedge : ((Arc) source).wedge;
+				double lambda = rootOnRay(this.s, q, owner, angle);
+				if (lambda == Double.POSITIVE_INFINITY) {
+					lambda = boundaryOnRay(this.s, wedge, angle);
+				}
+				x = xs[this.s] + lambda * Math.cos(angle);
+				y = ys[this.s] + lambda * Math.sin(angle);
+			}
+			if (source instanceof Piece) {
+				Piece piece = (Piece) source;
+				this.pieces.add(new Piece(start, x, y, piece.owner, piece.wedge, piece.ownerWedge, piece.q));
+			} else {
+				Arc arc = (Arc) source;
+				this.pieces.add(new Piece(start, x, y, this.t, arc.wedge, arc.ownerWedge, arc.q));
+				this.taken = true;
+			}
+			this.sources.add(source);
+		}
+
+		/* The pieces, without those too short to have an angle */
+		ArrayList<Piece> pieces() {
+			ArrayList<Piece> kept = new ArrayList<Piece>(this.pieces.size());
+			for (int j = 0; j < this.pieces.size(); j++) {
+				double end = (j + 1 < this.pieces.size()) ? this.pieces.get(j + 1).start : TWO_PI;
+				if (end - this.pieces.get(j).start > ANGLE_EPSILON) {
+					kept.add(this.pieces.get(j));
+				}
+			}
+			// the first piece starts on the first spoke
+			Piece first = kept.get(0);
+			if (first.start != 0) {
+				kept.set(0, new Piece(0, first.x, first.y, first.owner, first.wedge, first.ownerWedge, first.q));
+			}
+			return kept;
+		}
+	}
+
+	/*
+	 * Points where the curve of piece crosses the arc of the bisector of s and
+	 * t, strictly between the angles c and d: each crossing is stored as its
+	 * angle, x and y, in angular order.
+	 */
+	private double[] crossings(int s, Piece piece, int t, Arc arc, double c, double d) {
+		double[] points = new double[8];
+		int count;
+		if (isLinear(piece.q)) {
+			count = ConicKernel.intersectLine(arc.q, piece.q[3], piece.q[4], piece.q[5], points);
+		} else if (isLinear(arc.q)) {
+			count = ConicKernel.intersectLine(piece.q, arc.q[3], arc.q[4], arc.q[5], points);
+		} else {
+			count = ConicKernel.intersectConics(piece.q, arc.q, points);
+		}
+		double[] cuts = new double[3 * count];
+		int found = 0;
+		for (int k = 0; k < count; k++) {
+			double x = points[2 * k], y = points[2 * k + 1];
+			double angle = offset(s, piece.wedge, x, y);
+			if (!(angle > c + ANGLE_EPSILON && angle < d - ANGLE_EPSILON) || !inWedge(t, arc.ownerWedge, x, y)
+					|| (piece.owner != BOUNDARY && !inWedge(piece.owner, piece.ownerWedge, x, y)) || !inDomain(x, y)) {
+				continue;
+			}
+			// insertion sort, dropping the points found twice
+			int at = found;
+			while (at > 0 && cuts[3 * (at - 1)] > angle) {
+				at--;
+			}
+			if ((at > 0 && angle - cuts[3 * (at - 1)] <= ANGLE_EPSILON)
+					|| (at < found && cuts[3 * at] - angle <= ANGLE_EPSILON)) {
+				continue;
+			}
+			System.arraycopy(cuts, 3 * at, cuts, 3 * at + 3, 3 * (found - at));
+			cuts[3 * at] = angle;
+			cuts[3 * at + 1] = x;
+			cuts[3 * at + 2] = y;
+			found++;
+		}
+		if (found == 0) {
+			return crossingsOnRays(s, piece, t, arc, c, d);
+		}
+		return Arrays.copyOf(cuts, 3 * found);
+	}
+
+	/*
+	 * Same, where the conics gave no crossing, which happens when one of them
+	 * is close to a line and its other branch is far: the curves cross where
+	 * the closer one along the rays from s changes, found by bisection from
+	 * the ends and the middle of the angles.
+	 */
+	private double[] crossingsOnRays(int s, Piece piece, int t, Arc arc, double c, double d) {
+		double[] angles = { c, 0.5 * (c + d), d };
+		double[] gaps = new double[3];
+		for (int k = 0; k < 3; k++) {
+			gaps[k] = gapOnRay(s, piece, t, arc, angles[k]);
+		}
+		double[] cuts = new double[6];
+		int found = 0;
+		for (int k = 0; k < 2; k++) {
+			if (!(gaps[k] * gaps[k + 1] < 0)) {
+				continue;
+			}
+			double lo = angles[k], hi = angles[k + 1];
+			boolean negative = gaps[k] < 0;
+			for (int step = 0; step < BISECTION_STEPS && hi - lo > ANGLE_EPSILON * ANGLE_EPSILON; step++) {
+				double mid = 0.5 * (lo + hi);
+				if ((gapOnRay(s, piece, t, arc, mid) < 0) == negative) {
+					lo = mid;
+				} else {
+					hi = mid;
+				}
+			}
+			double angle = 0.5 * (lo + hi);
+			if (!(angle > c + ANGLE_EPSILON && angle < d - ANGLE_EPSILON)) {
+				continue;
+			}
+			double direction = this.spokes[s].angle[0] + angle;
+			double lambda = rootOnRay(s, arc.q, t, direction);
+			cuts[3 * found] = angle;
+			cuts[3 * found + 1] = this.xs[s] + lambda * Math.cos(direction);
+			cuts[3 * found + 2] = this.ys[s] + lambda * Math.sin(direction);
+			found++;
+		}
+		return Arrays.copyOf(cuts, 3 * found);
+	}
+
+	/*
+	 * Distance from s to the arc, less the distance to the curve of piece,
+	 * along the ray at angle from the first spoke of s. NaN if the ray misses
+	 * the arc.
+	 */
+	private double gapOnRay(int s, Piece piece, int t, Arc arc, double angle) {
+		double direction = this.spokes[s].angle[0] + angle;
+		double old = rootOnRay(s, piece.q, piece.owner, direction);
+		if (old == Double.POSITIVE_INFINITY) {
+			old = boundaryOnRay(s, piece.wedge, direction);
+		}
+		double radius = rootOnRay(s, arc.q, t, direction);
+		return (radius == Double.POSITIVE_INFINITY) ? Double.NaN : radius - old;
+	}
+
+	/*
+	 * Bisector of s and t as arcs of conics in angular order around s, each
+	 * within one wedge of s and one wedge of t. The angles of the arcs are
+	 * taken from the first spoke of s; the bisector is missing from the angles
+	 * between its ends on the boundary, away from t.
+	 */
+	private ArrayList<Arc> trace(int s, int t) {
+		if (degenerate(s, t)) {
+			return traceRays(s, t);
+		}
+		Spokes ss = this.spokes[s], st = this.spokes[t];
+		double sx = this.xs[s], sy = this.ys[s], tx = this.xs[t], ty = this.ys[t];
+		// the bisector crosses the segment from s to t once
+		int i = ss.wedge(Math.atan2(ty - sy, tx - sx));
+		int k = st.wedge(Math.atan2(sy - ty, sx - tx));
+		double[] q = conic(s, i, t, k);
+		double[] points = new double[4];
+		int count = ConicKernel.intersectLine(q, sx, sy, tx, ty, points);
+		double mx = Double.NaN, my = Double.NaN, residual = Double.POSITIVE_INFINITY;
+		double length2 = (tx - sx) * (tx - sx) + (ty - sy) * (ty - sy);
+		for (int j = 0; j < count; j++) {
+			double x = points[2 * j], y = points[2 * j + 1];
+			double lambda = ((x - sx) * (tx - sx) + (y - sy) * (ty - sy)) / length2;
+			if (lambda > 0 && lambda < 1) {
+				double r = Math.abs(this.boundary.distance(x, y, sx, sy) - this.boundary.distance(x, y, tx, ty));
+				if (r < residual) {
+					residual = r;
+					mx = x;
+					my = y;
+				}
+			}
+		}
+		if (Double.isNaN(mx)) {
+			// rounding lost the root: bisect the difference of the distances
+			double lo = 0, hi = 1;
+			for (int step = 0; step < BISECTION_STEPS; step++) {
+				double mid = 0.5 * (lo + hi);
+				double x = sx + mid * (tx - sx), y = sy + mid * (ty - sy);
+				if (this.boundary.distance(x, y, sx, sy) < this.boundary.distance(x, y, tx, ty)) {
+					lo = mid;
+				} else {
+					hi = mid;
+				}
+			}
+			mx = sx + lo * (tx - sx);
+			my = sy + lo * (ty - sy);
+		}
+
+		ArrayList<Arc> arcs = new ArrayList<Arc>();
+		double angle = offset(s, i, mx, my);
+		follow(s, t, 1, i, k, mx, my, angle, arcs);
+		follow(s, t, -1, i, k, mx, my, angle, arcs);
+
+		// back to the wedges and angles of s, each arc within one turn
+		ArrayList<Arc> normalized = new ArrayList<Arc>(arcs.size());
+		for (Arc arc : arcs) {
+			int lap = Math.floorDiv(arc.wedge, ss.size());
+			arc.wedge -= lap * ss.size();
+			arc.start -= lap * TWO_PI;
+			arc.end -= lap * TWO_PI;
+			if (arc.end - arc.start > ANGLE_EPSILON * ANGLE_EPSILON) {
+				normalized.add(arc);
+			}
+		}
+		normalized.sort((a, b) -> Double.compare(a.start, b.start));
+		// the two arcs on both sides of the start are one
+		ArrayList<Arc> merged = new ArrayList<Arc>(normalized.size());
+		for (Arc arc : normalized) {
+			Arc last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+			if (last != null && last.wedge == arc.wedge && last.ownerWedge == arc.ownerWedge
+					&& Math.abs(last.end - arc.start) <= ANGLE_EPSILON) {
+				last.end = arc.end;
+				last.x1 = arc.x1;
+				last.y1 = arc.y1;
+			} else {
+				merged.add(arc);
+			}
+		}
+		return merged;
+	}
+
+	/*
+	 * True if the conic of the bisector of s and t cannot be followed: one site
+	 * is on a spoke of the other, or both see the same forward and backward
+	 * edges from wedges where the difference of their distances, constant
+	 * there, is close to 0. The sites are then collinear with the point where
+	 * these edges meet, and tie over a whole region.
+	 */
+	private boolean degenerate(int s, int t) {
+		Spokes ss = this.spokes[s], st = this.spokes[t];
+		if (onSpoke(s, this.xs[t], this.ys[t]) || onSpoke(t, this.xs[s], this.ys[s])) {
+			return true;
+		}
+		for (int i = 0; i < ss.size(); i++) {
+			if (st.wedgeOf(ss.forward[i], ss.backward[i]) >= 0 && Math.abs(gap(s, i, t)) <= DEGENERATE_EPSILON) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/* True if the direction from s to (x, y) is within DEGENERATE_EPSILON of a spoke of s */
+	private boolean onSpoke(int s, double x, double y) {
+		Spokes sp = this.spokes[s];
+		double angle = Math.atan2(y - this.ys[s], x - this.xs[s]);
+		int i = sp.wedge(angle);
+		double relative = ccw(sp.angle[i], angle);
+		return relative <= DEGENERATE_EPSILON || sp.width(i) - relative <= DEGENERATE_EPSILON;
+	}
+
+	/*
+	 * Distance to s minus distance to t where both sites see the forward edge f
+	 * and the backward edge b of wedge i of s. Along a chord, the distances of
+	 * its points to the line of an edge are proportional to their distances to
+	 * the end point on that edge, so the cross ratios only differ by the factor
+	 * of the distances of s and t to both lines.
+	 */
+	private double gap(int s, int i, int t) {
+		Spokes ss = this.spokes[s];
+		int f = 3 * ss.forward[i], b = 3 * ss.backward[i];
+		double sf = this.lines[f] * this.xs[s] + this.lines[f + 1] * this.ys[s] + this.lines[f + 2];
+		double sb = this.lines[b] * this.xs[s] + this.lines[b + 1] * this.ys[s] + this.lines[b + 2];
+		double tf = this.lines[f] * this.xs[t] + this.lines[f + 1] * this.ys[t] + this.lines[f + 2];
+		double tb = this.lines[b] * this.xs[t] + this.lines[b + 1] * this.ys[t] + this.lines[b + 2];
+		return Math.log((sf * tb) / (sb * tf));
+	}
+
+	/*
+	 * Bisector of s and t, as given by trace, for a degenerate pair. Along each
+	 * ray from s, the distance to s grows as fast as the ray and the distance
+	 * to t at most as fast, so the ray enters the part of the domain closer to
+	 * t once: on a bisector conic, or on a spoke of t where it enters a region
+	 * where both sites see the same edges and t is closer, or ties and has the
+	 * smaller index. Within a wedge of s, that point only changes curve where
+	 * a spoke of t meets a conic, the boundary or t, and where a conic leaves
+	 * the domain. The wedge is cut at these angles, the curve between two cuts
+	 * is the one the ray through their middle enters on, and the arcs jump
+	 * along the spokes of s.
+	 */
+	private ArrayList<Arc> traceRays(int s, int t) {
+		Spokes ss = this.spokes[s], st = this.spokes[t];
+		double tx = this.xs[t], ty = this.ys[t];
+		ArrayList<Arc> arcs = new ArrayList<Arc>();
+		double[] points = new double[4];
+		double[] hit = new double[1];
+		for (int i = 0; i < ss.size(); i++) {
+			int e = 3 * ss.forward[i];
+			Cuts cuts = new Cuts();
+			cuts.add(ss.start[i]);
+			cuts.add(ss.start[i] + ss.width(i));
+			cuts.add(offset(s, i, tx, ty));
+			for (int k = 0; k < st.size(); k++) {
+				// where spoke k of t leaves the domain
+				double wx = Math.cos(st.angle[k]), wy = Math.sin(st.angle[k]);
+				double mu = hitParameter(st.forward[k], tx, ty, wx, wy);
+				cuts.add(offset(s, i, tx + mu * wx, ty + mu * wy));
+				if (sameEdges(s, i, t, k)) {
+					continue;
+				}
+				// where the conic of wedge k of t leaves the domain, and meets the
+				// spokes on both sides of the wedge
+				double[] q = conic(s, i, t, k);
+				int count = ConicKernel.intersectLine(q, this.lines[e], this.lines[e + 1], this.lines[e + 2], points);
+				for (int j = 0; j < count; j++) {
+					if (inDomain(points[2 * j], points[2 * j + 1])) {
+						cuts.add(offset(s, i, points[2 * j], points[2 * j + 1]));
+					}
+				}
+				for (int side = 0; side < 2; side++) {
+					double spoke = st.angle[(k + side) % st.size()];
+					double vx = Math.cos(spoke), vy = Math.sin(spoke);
+					count = ConicKernel.intersectLine(q, tx, ty, tx + vx, ty + vy, points);
+					for (int j = 0; j < count; j++) {
+						double x = points[2 * j], y = points[2 * j + 1];
+						if ((x - tx) * vx + (y - ty) * vy > 0 && inDomain(x, y)) {
+							cuts.add(offset(s, i, x, y));
+						}
+					}
+				}
+			}
+			Arrays.sort(cuts.angles, 0, cuts.size);
+
+			// consecutive intervals entered on the same curve make one arc
+			Arc arc = null;
+			int curve = NO_CURVE;
+			double last = Double.NaN;
+			for (int c = 0; c + 1 < cuts.size; c++) {
+				double a = cuts.angles[c], b = cuts.angles[c + 1];
+				if (b - a <= ANGLE_EPSILON) {
+					continue;
+				}
+				int next = rayHit(s, t, i, ss.angle[0] + 0.5 * (a + b), hit);
+				if (arc != null && next == curve) {
+					arc.end = b;
+					last = a;
+					continue;
+				}
+				if (arc != null) {
+					endArc(s, t, i, arc, curve, last, hit);
+				}
+				arc = null;
+				curve = next;
+				last = a;
+				if (next != NO_CURVE) {
+					double[] q = (next >= 0) ? conic(s, i, t, next) : spokeLine(t, -2 - next);
+					double[] point = pointOnCurve(s, t, i, q, next, a, a + 1e-3 * (b - a), hit);
+					arc = new Arc(1, i, (next >= 0) ? next : -2 - next, q, point[0], point[1], a, point[0], point[1], b);
+					arcs.add(arc);
+				}
+			}
+			if (arc != null) {
+				endArc(s, t, i, arc, curve, last, hit);
+			}
+		}
+		return arcs;
+	}
+
+	/* Ends arc on its curve at its end angle, the last interval starting at last */
+	private void endArc(int s, int t, int i, Arc arc, int curve, double last, double[] hit) {
+		double[] point = pointOnCurve(s, t, i, arc.q, curve, arc.end, arc.end - 1e-3 * (arc.end - last), hit);
+		arc.x1 = point[0];
+		arc.y1 = point[1];
+	}
+
+	/*
+	 * Point of the curve q, entered by the rays of wedge i of s on curve as
+	 * rayHit gives it, on the ray at angle from the first spoke of s. A conic
+	 * crosses the ray twice at most: the root kept is the closest to where the
+	 * ray at angle near enters, among those in the domain.
+	 */
+	private double[] pointOnCurve(int s, int t, int i, double[] q, int curve, double angle, double near, double[] hit) {
+		Spokes ss = this.spokes[s];
+		double sx = this.xs[s], sy = this.ys[s];
+		double ux = Math.cos(ss.angle[0] + angle), uy = Math.sin(ss.angle[0] + angle);
+		double target = (rayHit(s, t, i, ss.angle[0] + near, hit) == curve) ? hit[0] : Double.NaN;
+		double[] points = new double[4];
+		int count = ConicKernel.intersectLine(q, sx, sy, sx + ux, sy + uy, points);
+		double best = Double.NaN, error = Double.POSITIVE_INFINITY;
+		for (int j = 0; j < count; j++) {
+			double lambda = (points[2 * j] - sx) * ux + (points[2 * j + 1] - sy) * uy;
+			double e = Double.isNaN(target) ? -lambda : Math.abs(lambda - target);
+			if (lambda > 0 && e < error && inDomain(points[2 * j], points[2 * j + 1])) {
+				error = e;
+				best = lambda;
+			}
+		}
+		if (Double.isNaN(best)) {
+			// the ray misses the curve by rounding: end on the boundary
+			best = boundaryOnRay(s, i, ss.angle[0] + angle);
+		}
+		return new double[] { sx + best * ux, sy + best * uy };
+	}
+
+	/*
+	 * Curve on which the ray at angle, in wedge i of s, enters the part of the
+	 * domain closer to t: the conic of wedge k of t as k, spoke j of t as
+	 * -2 - j, or NO_CURVE if the ray reaches the boundary first. The distance
+	 * along the ray is stored in hit[0].
+	 */
+	private int rayHit(int s, int t, int i, double angle, double[] hit) {
+		Spokes st = this.spokes[t];
+		double sx = this.xs[s], sy = this.ys[s], tx = this.xs[t], ty = this.ys[t];
+		double ux = Math.cos(angle), uy = Math.sin(angle);
+		double end = boundaryOnRay(s, i, angle);
+		// where the ray crosses the spokes of t, in order
+		double[] at = new double[st.size() + 1];
+		int[] spoke = new int[st.size() + 1];
+		int count = 0;
+		for (int j = 0; j < st.size(); j++) {
+			double wx = Math.cos(st.angle[j]), wy = Math.sin(st.angle[j]);
+			double det = ux * wy - uy * wx;
+			double lambda = ((tx - sx) * wy - (ty - sy) * wx) / det;
+			double mu = ((tx - sx) * uy - (ty - sy) * ux) / det;
+			if (!(lambda > 0 && lambda < end && mu > 0)) {
+				continue;
+			}
+			int k = count++;
+			while (k > 0 && at[k - 1] > lambda) {
+				at[k] = at[k - 1];
+				spoke[k] = spoke[k - 1];
+				k--;
+			}
+			at[k] = lambda;
+			spoke[k] = j;
+		}
+		at[count] = end;
+		spoke[count++] = -1;
+
+		double[] points = new double[4];
+		double a = 0;
+		int entry = -1;
+		for (int c = 0; c < count; c++) {
+			double b = at[c];
+			if (b - a > RESIDUAL_EPSILON * end) {
+				double middle = 0.5 * (a + b);
+				int k = st.wedge(Math.atan2(sy + middle * uy - ty, sx + middle * ux - tx));
+				if (sameEdges(s, i, t, k)) {
+					double gap = gap(s, i, t);
+					if (gap > RESIDUAL_EPSILON || (gap >= -RESIDUAL_EPSILON && t < s)) {
+						hit[0] = a;
+						return (entry >= 0) ? -2 - entry : k;
+					}
+				} else {
+					// the first root of the conic in the interval, if any
+					double root = b;
+					int found = ConicKernel.intersectLine(conic(s, i, t, k), sx, sy, sx + ux, sy + uy, points);
+					for (int j = 0; j < found; j++) {
+						double lambda = (points[2 * j] - sx) * ux + (points[2 * j + 1] - sy) * uy;
+						if (lambda > a && lambda < root) {
+							root = lambda;
+						}
+					}
+					if (closerToT(s, t, sx + 0.5 * (a + root) * ux, sy + 0.5 * (a + root) * uy)) {
+						hit[0] = a;
+						return (entry >= 0) ? -2 - entry : k;
+					}
+					// next to a region where both sites tie, the conic is the spoke
+					// on its side, and the root is not entered
+					if (root < b && closerToT(s, t, sx + 0.5 * (root + b) * ux, sy + 0.5 * (root + b) * uy)) {
+						hit[0] = root;
+						return k;
+					}
+				}
+			}
+			a = b;
+			entry = spoke[c];
+		}
+		hit[0] = end;
+		return NO_CURVE;
+	}
+
+	/* True if (x, y) is closer to t than to s, or as close and t is smaller */
+	private boolean closerToT(int s, int t, double x, double y) {
+		double ds = this.boundary.distance(x, y, this.xs[s], this.ys[s]);
+		double gap = ds - this.boundary.distance(x, y, this.xs[t], this.ys[t]);
+		double tolerance = RESIDUAL_EPSILON * (1 + ds);
+		return gap > tolerance || (gap >= -tolerance && t < s);
+	}
+
+	/* True if wedge i of s and wedge k of t see the same forward and backward edges */
+	private boolean sameEdges(int s, int i, int t, int k) {
+		Spokes ss = this.spokes[s], st = this.spokes[t];
+		return ss.forward[i] == st.forward[k] && ss.backward[i] == st.backward[k];
+	}
+
+	/* Line of spoke j of t, as a degenerate conic */
+	private double[] spokeLine(int t, int j) {
+		double a = -Math.sin(this.spokes[t].angle[j]), b = Math.cos(this.spokes[t].angle[j]);
+		return new double[] { 0, 0, 0, a, b, -(a * this.xs[t] + b * this.ys[t]) };
+	}
+
+	/* Angles cutting a wedge, the NaN ones left out */
+	private static final class Cuts {
+		double[] angles = new double[16];
+		int size = 0;
+
+		void add(double angle) {
+			if (Double.isNaN(angle)) {
+				return;
+			}
+			if (this.size == this.angles.length) {
+				this.angles = Arrays.copyOf(this.angles, 2 * this.size);
+			}
+			this.angles[this.size++] = angle;
+		}
+	}
+
+	/*
+	 * Follows the bisector of s and t from the point (px, py) at angle around
+	 * s, counter-clockwise around s for dir = 1 and clockwise for dir = -1, in
+	 * the wedges i of s and k of t, until it leaves the domain. Wedge indices
+	 * and angles are unwrapped: they keep growing past a full turn. Going
+	 * counter-clockwise around s, the bisector goes clockwise around t, so the
+	 * next breakpoint is on the next spoke of s, on the previous spoke of t, or
+	 * on the edge of the domain ahead of s, whichever comes first.
+	 */
+	private void follow(int s, int t, int dir, int i, int k, double px, double py, double angle, ArrayList<Arc> arcs) {
+		Spokes ss = this.spokes[s], st = this.spokes[t];
+		double sx = this.xs[s], sy = this.ys[s], tx = this.xs[t], ty = this.ys[t];
+		double[] points = new double[4];
+		double[] q = conic(s, Math.floorMod(i, ss.size()), t, Math.floorMod(k, st.size()));
+		for (int step = 4 * (ss.size() + st.size()) + 8; step > 0; step--) {
+			int iw = Math.floorMod(i, ss.size()), kw = Math.floorMod(k, st.size());
+
+			// next spoke of s: the root on its ray within the wedge of t. Points
+			// on the boundary are left to the edge below
+			int si = (dir > 0) ? i + 1 : i;
+			double sAngle = ss.angle[Math.floorMod(si, ss.size())];
+			double sOffset = ss.unwrapped(si);
+			double sAdvance = dir * (sOffset - angle);
+			double spx = Double.NaN, spy = Double.NaN, best = Double.POSITIVE_INFINITY;
+			int count = ConicKernel.intersectLine(q, sx, sy, sx + Math.cos(sAngle), sy + Math.sin(sAngle), points);
+			for (int j = 0; j < count; j++) {
+				double x = points[2 * j], y = points[2 * j + 1];
+				if ((x - sx) * Math.cos(sAngle) + (y - sy) * Math.sin(sAngle) > 0 && inWedge(t, kw, x, y)
+						&& inInterior(x, y)) {
+					double r = residual(s, t, x, y);
+					if (r < best) {
+						best = r;
+						spx = x;
+						spy = y;
+					}
+				}
+			}
+			boolean sFound = !Double.isNaN(spx) && sAdvance >= -WEDGE_EPSILON;
+
+			// next spoke of t, on the ray from t
+			int tk = (dir > 0) ? k : k + 1;
+			double tAngle = st.angle[Math.floorMod(tk, st.size())];
+			double tAdvance = Double.POSITIVE_INFINITY, tpx = Double.NaN, tpy = Double.NaN, tOffset = Double.NaN;
+			count = ConicKernel.intersectLine(q, tx, ty, tx + Math.cos(tAngle), ty + Math.sin(tAngle), points);
+			for (int j = 0; j < count; j++) {
+				double x = points[2 * j], y = points[2 * j + 1];
+				if (!((x - tx) * Math.cos(tAngle) + (y - ty) * Math.sin(tAngle) > 0) || !inInterior(x, y)) {
+					continue;
+				}
+				double relative = relative(ss, iw, x - sx, y - sy);
+				if (relative < -WEDGE_EPSILON || relative > ss.width(iw) + WEDGE_EPSILON) {
+					continue;
+				}
+				double offset = ss.unwrapped(i) + relative;
+				double advance = dir * (offset - angle);
+				if (advance >= -WEDGE_EPSILON && advance < tAdvance) {
+					tAdvance = advance;
+					tpx = x;
+					tpy = y;
+					tOffset = offset;
+				}
+			}
+			boolean tFound = !Double.isNaN(tpx);
+
+			// the edge of the domain the wedge of s looks at. The conic vanishes
+			// where the forward edges of s and t meet, which is where the bisector
+			// leaves the domain only if the ray from s there does not cross it
+			// before
+			int e = ss.forward[iw];
+			double bAdvance = Double.POSITIVE_INFINITY, bpx = Double.NaN, bpy = Double.NaN, bOffset = Double.NaN;
+			count = ConicKernel.intersectLine(q, this.lines[3 * e], this.lines[3 * e + 1], this.lines[3 * e + 2], points);
+			for (int j = 0; j < count; j++) {
+				double x = points[2 * j], y = points[2 * j + 1];
+				if (!inWedge(t, kw, x, y) || !inDomain(x, y) || crossedBefore(s, t, kw, q, x, y)) {
+					continue;
+				}
+				double relative = relative(ss, iw, x - sx, y - sy);
+				if (relative < -WEDGE_EPSILON || relative > ss.width(iw) + WEDGE_EPSILON) {
+					continue;
+				}
+				double offset = ss.unwrapped(i) + relative;
+				double advance = dir * (offset - angle);
+				if (advance >= -WEDGE_EPSILON && advance < bAdvance) {
+					bAdvance = advance;
+					bpx = x;
+					bpy = y;
+					bOffset = offset;
+				}
+			}
+			boolean bFound = !Double.isNaN(bpx);
+
+			double first = Math.min(sFound ? sAdvance : Double.POSITIVE_INFINITY, Math.min(tAdvance, bAdvance));
+			if (first == Double.POSITIVE_INFINITY) {
+				// rounding lost the bisector: end it here
+				return;
+			}
+			if (bFound && bAdvance <= first + WEDGE_EPSILON) {
+				arcs.add(new Arc(dir, i, kw, q, px, py, angle, bpx, bpy, bOffset));
+				return;
+			}
+			boolean sNext = sFound && sAdvance <= first + WEDGE_EPSILON;
+			boolean tNext = tFound && tAdvance <= first + WEDGE_EPSILON;
+			double nx = sNext ? spx : tpx, ny = sNext ? spy : tpy, next = sNext ? sOffset : tOffset;
+			arcs.add(new Arc(dir, i, kw, q, px, py, angle, nx, ny, next));
+			if (sNext) {
+				i += dir;
+			}
+			if (tNext) {
+				k -= dir;
+			}
+			px = nx;
+			py = ny;
+			angle = next;
+			q = conic(s, Math.floorMod(i, ss.size()), t, Math.floorMod(k, st.size()));
+		}
+	}
+
+	/*
+	 * True if the ray from s to the point (x, y) of the boundary crosses the
+	 * bisector of s and t, of conic q in wedge k of t, inside the domain. Where
+	 * the ray is tangent to the conic at (x, y), rounding splits the double
+	 * root into two close to it, which are not crossings.
+	 */
+	private boolean crossedBefore(int s, int t, int k, double[] q, double x, double y) {
+		double sx = this.xs[s], sy = this.ys[s];
+		double length2 = (x - sx) * (x - sx) + (y - sy) * (y - sy);
+		double[] points = new double[4];
+		int count = ConicKernel.intersectLine(q, sx, sy, x, y, points);
+		for (int j = 0; j < count; j++) {
+			double px = points[2 * j], py = points[2 * j + 1];
+			double along = (px - sx) * (x - sx) + (py - sy) * (y - sy);
+			if (along > 0 && along < (1 - TANGENT_EPSILON) * length2 && inWedge(t, k, px, py) && inInterior(px, py)
+					&& residual(s, t, px, py) <= RESIDUAL_EPSILON * (1 + this.boundary.distance(px, py, sx, sy))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/* Difference of the distances from (x, y) to s and t */
+	private double residual(int s, int t, double x, double y) {
+		return Math.abs(this.boundary.distance(x, y, this.xs[s], this.ys[s])
+				- this.boundary.distance(x, y, this.xs[t], this.ys[t]));
+	}
+
+	/*
+	 * Bisector of s in its wedge i and t in its wedge k, from the forward and
+	 * backward edges of both sites. When the edges are parallel two by two, the
+	 * quadratic terms cancel and the bisector is the line left by rounding.
+	 */
+	private double[] conic(int s, int i, int t, int k) {
+		double[] q = new double[6];
+		Spokes ss = this.spokes[s], st = this.spokes[t];
+		Bisector.computeConic(this.lines, ss.forward[i], ss.backward[i], st.forward[k], st.backward[k], this.xs[s],
+				this.ys[s], this.xs[t], this.ys[t], q);
+		if ((Math.abs(q[0]) + Math.abs(q[1]) + Math.abs(q[2])) * this.reach <= LINEAR_EPSILON
+				* (Math.abs(q[3]) + Math.abs(q[4]))) {
+			q[0] = 0;
+			q[1] = 0;
+			q[2] = 0;
+		}
+		return q;
+	}
+
+	private static boolean isLinear(double[] q) {
+		return q[0] == 0 && q[1] == 0 && q[2] == 0;
+	}
+
+	/*
+	 * Distance from s, along the ray at angle, to the curve q of a piece shared
+	 * with owner: the point of the bisector of s and owner, or of the edge of
+	 * the domain. Infinite if the ray misses it. The difference of the
+	 * distances to s and owner does not decrease along the ray, so where both
+	 * roots are on the bisector the first one is the end of the cell.
+	 */
+	private double rootOnRay(int s, double[] q, int owner, double angle) {
+		double sx = this.xs[s], sy = this.ys[s];
+		double ux = Math.cos(angle), uy = Math.sin(angle);
+		double[] points = new double[4];
+		int count = ConicKernel.intersectLine(q, sx, sy, sx + ux, sy + uy, points);
+		double best = Double.POSITIVE_INFINITY, residual = Double.POSITIVE_INFINITY;
+		boolean onBisector = false;
+		for (int j = 0; j < count; j++) {
+			double x = points[2 * j], y = points[2 * j + 1];
+			double lambda = (x - sx) * ux + (y - sy) * uy;
+			if (!(lambda > 0)) {
+				continue;
+			}
+			if (owner == BOUNDARY) {
+				return lambda;
+			}
+			if (!inDomain(x, y)) {
+				continue;
+			}
+			double ds = this.boundary.distance(x, y, sx, sy);
+			double r = Math.abs(ds - this.boundary.distance(x, y, this.xs[owner], this.ys[owner]));
+			if (r <= RESIDUAL_EPSILON * (1 + ds)) {
+				if (!onBisector || lambda < best) {
+					best = lambda;
+				}
+				onBisector = true;
+			} else if (!onBisector && r < residual) {
+				residual = r;
+				best = lambda;
+			}
+		}
+		return best;
+	}
+
+	/* Distance from s to the boundary along the ray at angle, in wedge i */
+	private double boundaryOnRay(int s, int i, double angle) {
+		return hitParameter(this.spokes[s].forward[i], this.xs[s], this.ys[s], Math.cos(angle), Math.sin(angle));
+	}
+
+	/* Parameter at which the line (px, py) + lambda (ux, uy) meets edge e */
+	private double hitParameter(int e, double px, double py, double ux, double uy) {
+		double a = this.lines[3 * e], b = this.lines[3 * e + 1];
+		return -(a * px + b * py + this.lines[3 * e + 2]) / (a * ux + b * uy);
+	}
+
+	/*
+	 * Angle of (x, y) around s from its first spoke, if the point is in wedge i
+	 * of s, and NaN otherwise.
+	 */
+	private double offset(int s, int i, double x, double y) {
+		Spokes sp = this.spokes[s];
+		double relative = ccw(sp.angle[i], Math.atan2(y - this.ys[s], x - this.xs[s]));
+		double width = sp.width(i);
+		if (relative <= width + WEDGE_EPSILON) {
+			return sp.start[i] + Math.min(relative, width);
+		}
+		if (relative >= TWO_PI - WEDGE_EPSILON) {
+			return sp.start[i];
+		}
+		return Double.NaN;
+	}
+
+	/*
+	 * Angle of the direction (dx, dy) from spoke i, in (-pi, pi] around the
+	 * middle of the wedge, so that points a little outside of it get a little
+	 * negative angle or a little more than its width.
+	 */
+	private static double relative(Spokes sp, int i, double dx, double dy) {
+		double relative = ccw(sp.angle[i], Math.atan2(dy, dx));
+		if (relative > 0.5 * sp.width(i) + Math.PI) {
+			relative -= TWO_PI;
+		}
+		return relative;
+	}
+
+	/* True if (x, y) is in wedge k of site p, its sides included */
+	private boolean inWedge(int p, int k, double x, double y) {
+		Spokes sp = this.spokes[p];
+		double relative = ccw(sp.angle[k], Math.atan2(y - this.ys[p], x - this.xs[p]));
+		return relative <= sp.width(k) + WEDGE_EPSILON || relative >= TWO_PI - WEDGE_EPSILON;
+	}
+
+	/* True if (x, y) is in the domain or within DOMAIN_EPSILON of it */
+	private boolean inDomain(double x, double y) {
+		for (int k = 0; k < this.lines.length; k += 3) {
+			if (this.lines[k] * x + this.lines[k + 1] * y + this.lines[k + 2] < -DOMAIN_EPSILON) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/* True if (x, y) is in the domain, at least DOMAIN_EPSILON away from its boundary */
+	private boolean inInterior(double x, double y) {
+		for (int k = 0; k < this.lines.length; k += 3) {
+			if (!(this.lines[k] * x + this.lines[k + 1] * y + this.lines[k + 2] >= DOMAIN_EPSILON)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/* Counter-clockwise angle from direction from to direction to, in [0, 2 pi) */
+	private static double ccw(double from, double to) {
+		double angle = to - from;
+		while (angle < 0) {
+			angle += TWO_PI;
+		}
+		while (angle >= TWO_PI) {
+			angle -= TWO_PI;
+		}
+		return angle;
+	}
+
+	/*
+	 * Outline of the cell of site s with the pieces of u, whose owners are
+	 * relabelled. The boundary pieces along a common edge are merged. Where a
+	 * piece does not end where the next one starts, the boundary jumps along
+	 * the ray from u between them, which is an edge with the owner of the
+	 * closest piece until splitJumps looks at the cells across it.
+	 */
+	private Outline outline(int s, int u, ArrayList<Piece> pieces, int[] label) {
+		ArrayList<Piece> merged = new ArrayList<Piece>(pieces.size());
+		for (Piece piece : pieces) {
+			Piece last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+			if (last == null || piece.owner != BOUNDARY || last.owner != BOUNDARY || last.q != piece.q) {
+				merged.add(piece);
+			}
+		}
+		while (merged.size() > 1 && merged.get(0).owner == BOUNDARY
+				&& merged.get(merged.size() - 1).owner == BOUNDARY && merged.get(0).q == merged.get(merged.size() - 1).q) {
+			merged.remove(0);
+		}
+		int size = merged.size();
+		Outline outline = new Outline(s, this.xs[u], this.ys[u], 2 * size);
+		double ux = this.xs[u], uy = this.ys[u];
+		for (int j = 0; j < size; j++) {
+			Piece piece = merged.get(j), next = merged.get((j + 1) % size);
+			outline.add(piece.x, piece.y, (piece.owner == BOUNDARY) ? BOUNDARY : label[piece.owner], piece.q, false);
+
+			double angle = this.spokes[u].angle[0] + ((j + 1 < size) ? next.start : TWO_PI);
+			double lambda = rootOnRay(u, piece.q, piece.owner, angle);
+			if (lambda == Double.POSITIVE_INFINITY) {
+				lambda = boundaryOnRay(u, this.spokes[u].wedge(angle), angle);
+			}
+			double reach = Math.hypot(next.x - ux, next.y - uy);
+			if (size > 1 && Math.abs(lambda - reach) > JUMP_EPSILON * reach) {
+				double dx = Math.cos(angle), dy = Math.sin(angle);
+				int owner = (lambda < reach) ? piece.owner : next.owner;
+				outline.add(ux + lambda * dx, uy + lambda * dy, (owner == BOUNDARY) ? BOUNDARY : label[owner],
+						new double[] { 0, 0, 0, -dy, dx, dy * ux - dx * uy }, true);
+			}
+		}
+		return outline;
+	}
+
+	/*
+	 * Splits the jumps of the outline of c where the cells across them change.
+	 * The far side of a jump is a region the bisector of u and the owner of
+	 * the closest piece gives to that owner, but a later site may take part of
+	 * it: the cells there have straight edges with c along the jump, and their
+	 * ends on the jump are the vertices to add.
+	 */
+	private void splitJumps(Outline c, Outline[] outlines, ArrayList<Integer> bordering) {
+		Outline split = new Outline(c.site, c.x, c.y, c.size);
+		double tolerance = DOMAIN_EPSILON * (1 + this.reach);
+		for (int j = 0; j < c.size; j++) {
+			Point2D.Double a = c.vertices.get(j), b = c.vertices.get((j + 1) % c.size);
+			split.add(a.x, a.y, c.neighbors[j], c.conics[j], c.jumps[j]);
+			if (!c.jumps[j]) {
+				continue;
+			}
+			double dx = b.x - a.x, dy = b.y - a.y, length = Math.hypot(dx, dy);
+			if (length <= 2 * tolerance) {
+				continue;
+			}
+			Cuts cuts = new Cuts();
+			for (int w : bordering) {
+				Outline o = outlines[w];
+				for (int k = 0; k < o.size; k++) {
+					if (o.neighbors[k] != c.site) {
+						continue;
+					}
+					for (int end = 0; end < 2; end++) {
+						Point2D.Double p = o.vertices.get((k + end) % o.size);
+						double along = ((p.x - a.x) * dx + (p.y - a.y) * dy) / length;
+						double off = Math.abs((p.x - a.x) * dy - (p.y - a.y) * dx) / length;
+						if (off <= tolerance && along > tolerance && along < length - tolerance) {
+							cuts.add(along);
+						}
+					}
+				}
+			}
+			double[] along = Arrays.copyOf(cuts.angles, cuts.size);
+			Arrays.sort(along);
+			int owner = c.neighbors[j];
+			double from = 0;
+			for (int k = 0; k <= along.length; k++) {
+				double to = (k < along.length) ? along[k] : length;
+				if (to - from <= tolerance) {
+					continue;
+				}
+				double middle = (from + to) / 2;
+				int across = across(c.site, a.x + middle * dx / length, a.y + middle * dy / length, outlines, bordering,
+						tolerance);
+				if (across == NO_CURVE) {
+					across = c.neighbors[j];
+				}
+				if (across != owner) {
+					if (from == 0) {
+						split.neighbors[split.size - 1] = across;
+						split.conics[split.size - 1] = (across == BOUNDARY) ? null : c.conics[j];
+					} else {
+						double[] q = (across == BOUNDARY) ? null : c.conics[j];
+						split.add(a.x + from * dx / length, a.y + from * dy / length, across, q, true);
+					}
+					owner = across;
+				}
+				from = to;
+			}
+		}
+		outlines[c.site] = split;
+	}
+
+	/*
+	 * Cell among bordering with a straight edge with c through (x, y), or
+	 * NO_CURVE if there is none.
+	 */
+	private static int across(int c, double x, double y, Outline[] outlines, ArrayList<Integer> bordering,
+			double tolerance) {
+		for (int w : bordering) {
+			Outline o = outlines[w];
+			for (int k = 0; k < o.size; k++) {
+				double[] q = o.conics[k];
+				if (o.neighbors[k] != c || q == null || q[0] != 0 || q[1] != 0 || q[2] != 0) {
+					continue;
+				}
+				Point2D.Double a = o.vertices.get(k), b = o.vertices.get((k + 1) % o.size);
+				if (Line2D.ptSegDist(a.x, a.y, b.x, b.y, x, y) <= tolerance) {
+					return w;
+				}
+			}
+		}
+		return NO_CURVE;
+	}
+
+	/* Cell of an outline, with its adjacent sites */
+	private static VoronoiCell toVoronoiCell(Outline outline) {
+		int[] adjacent = new int[outline.size];
+		int count = 0;
+		for (int j = 0; j < outline.size; j++) {
+			if (outline.neighbors[j] != BOUNDARY) {
+				adjacent[count++] = outline.neighbors[j];
+			}
+		}
+		adjacent = Arrays.copyOf(adjacent, count);
+		Arrays.sort(adjacent);
+		int distinct = 0;
+		for (int j = 0; j < count; j++) {
+			if (distinct == 0 || adjacent[distinct - 1] != adjacent[j]) {
+				adjacent[distinct++] = adjacent[j];
+			}
+		}
+		return new VoronoiCell(new Point2D.Double(outline.x, outline.y), outline.vertices,
+				Arrays.copyOf(outline.neighbors, outline.size), Arrays.copyOf(adjacent, distinct),
+				Arrays.copyOf(outline.conics, outline.size));
+	}
+
+	/*
+	 * Vertices of a cell in counter-clockwise order, with the neighbor and the
+	 * conic of the edge from each one to the next, and whether that edge is a
+	 * jump along a ray from the site the cell was built for.
+	 */
+	private static final class Outline {
+		final int site;
+		/* Site the pieces were built for, whose rays the jumps follow */
+		final double x, y;
+		final ArrayList<Point2D.Double> vertices;
+		int[] neighbors;
+		double[][] conics;
+		boolean[] jumps;
+		int size;
+
+		Outline(int site, double x, double y, int capacity) {
+			this.site = site;
+			this.x = x;
+			this.y = y;
+			this.vertices = new ArrayList<Point2D.Double>(capacity);
+			this.neighbors = new int[Math.max(capacity, 1)];
+			this.conics = new double[this.neighbors.length][];
+			this.jumps = new boolean[this.neighbors.length];
+		}
+
+		void add(double x, double y, int neighbor, double[] q, boolean jump) {
+			if (this.size == this.neighbors.length) {
+				this.neighbors = Arrays.copyOf(this.neighbors, 2 * this.size);
+				this.conics = Arrays.copyOf(this.conics, 2 * this.size);
+				this.jumps = Arrays.copyOf(this.jumps, 2 * this.size);
+			}
+			this.vertices.add(new Point2D.Double(x, y));
+			this.neighbors[this.size] = neighbor;
+			this.conics[this.size] = (neighbor == BOUNDARY) ? null : q;
+			this.jumps[this.size++] = jump;
+		}
+	}
+
+	/*
+	 * Spokes of a site, in increasing angle in (-pi, pi], and the edges of the
+	 * domain the chords through the site hit in the wedge following each one.
+	 */
+	private final class Spokes {
+		final double[] angle;
+		/* Angle of each spoke from the first one */
+		final double[] start;
+		/* Edges hit ahead of and behind the site in each wedge */
+		final int[] forward, backward;
+		/* Vertex of the domain each spoke points to, -1 for the opposite ones */
+		final int[] vertex;
+		/* Wedges by forward, then backward edge */
+		final int[] byEdges;
+
+		Spokes(int s) {
+			double sx = xs[s], sy = ys[s];
+			int m = boundary.n;
+			double[] angles = new double[2 * m];
+			int[] vertices = new int[2 * m];
+			Integer[] order = new Integer[2 * m];
+			for (int j = 0; j < m; j++) {
+				double a = Math.atan2(boundary.ys[j] - sy, boundary.xs[j] - sx);
+				angles[2 * j] = a;
+				vertices[2 * j] = j;
+				angles[2 * j + 1] = (a > 0) ? a - Math.PI : a + Math.PI;
+				vertices[2 * j + 1] = -1;
+				order[2 * j] = 2 * j;
+				order[2 * j + 1] = 2 * j + 1;
+			}
+			// by angle, the spokes towards a vertex first among equal ones
+			Arrays.sort(order, (a, b) -> angles[a] != angles[b] ? Double.compare(angles[a], angles[b])
+					: Integer.compare(vertices[b], vertices[a]));
+			double[] kept = new double[2 * m];
+			int[] keptVertex = new int[2 * m];
+			int size = 0;
+			for (int j : order) {
+				if (size > 0 && angles[j] - kept[size - 1] <= ANGLE_EPSILON) {
+					if (keptVertex[size - 1] < 0) {
+						keptVertex[size - 1] = vertices[j];
+					}
+					continue;
+				}
+				kept[size] = angles[j];
+				keptVertex[size++] = vertices[j];
+			}
+			if (size > 1 && kept[0] + TWO_PI - kept[size - 1] <= ANGLE_EPSILON) {
+				if (keptVertex[0] < 0) {
+					keptVertex[0] = keptVertex[size - 1];
+				}
+				size--;
+			}
+			this.angle = Arrays.copyOf(kept, size);
+			this.vertex = Arrays.copyOf(keptVertex, size);
+			this.start = new double[size];
+			this.forward = new int[size];
+			this.backward = new int[size];
+			for (int i = 0; i < size; i++) {
+				this.start[i] = this.angle[i] - this.angle[0];
+				double end = (i + 1 < size) ? this.angle[i + 1] : this.angle[0] + TWO_PI;
+				double middle = 0.5 * (this.angle[i] + end);
+				double ux = Math.cos(middle), uy = Math.sin(middle);
+				long edges = boundary.crossingEdges(-uy, ux, uy * sx - ux * sy);
+				int up = (int) (edges >>> 32), down = (int) edges;
+				if (hitParameter(up, sx, sy, ux, uy) > 0) {
+					this.forward[i] = up;
+					this.backward[i] = down;
+				} else {
+					this.forward[i] = down;
+					this.backward[i] = up;
+				}
+			}
+			Integer[] sorted = new Integer[size];
+			for (int i = 0; i < size; i++) {
+				sorted[i] = i;
+			}
+			Arrays.sort(sorted, (a, b) -> this.forward[a] != this.forward[b] ? Integer.compare(this.forward[a], this.forward[b])
+					: Integer.compare(this.backward[a], this.backward[b]));
+			this.byEdges = new int[size];
+			for (int i = 0; i < size; i++) {
+				this.byEdges[i] = sorted[i];
+			}
+		}
+
+		int size() {
+			return this.angle.length;
+		}
+
+		/* Angle between spoke i and the next one */
+		double width(int i) {
+			return ((i + 1 < this.angle.length) ? this.start[i + 1] : TWO_PI) - this.start[i];
+		}
+
+		/* Angle of spoke i from the first one, i counting turns past the last */
+		double unwrapped(int i) {
+			return this.start[Math.floorMod(i, size())] + TWO_PI * Math.floorDiv(i, size());
+		}
+
+		/* Wedge whose chords hit edge f forward and edge b backward, -1 if none */
+		int wedgeOf(int f, int b) {
+			int lo = 0, hi = this.byEdges.length - 1;
+			while (lo <= hi) {
+				int mid = (lo + hi) >>> 1, i = this.byEdges[mid];
+				int order = (this.forward[i] != f) ? Integer.compare(this.forward[i], f) : Integer.compare(this.backward[i], b);
+				if (order == 0) {
+					return i;
+				} else if (order < 0) {
+					lo = mid + 1;
+				} else {
+					hi = mid - 1;
+				}
+			}
+			return -1;
+		}
+
+		/* Wedge containing the direction at angle */
+		int wedge(double angle) {
+			double offset = ccw(this.angle[0], angle);
+			int lo = 0, hi = size() - 1;
+			while (lo < hi) {
+				int mid = (lo + hi + 1) >>> 1;
+				if (this.start[mid] <= offset) {
+					lo = mid;
+				} else {
+					hi = mid - 1;
+				}
+			}
+			return lo;
+		}
+	}
+
+	/*
+	 * Piece of the boundary of a cell, from its start to the start of the next
+	 * piece: on the bisector with owner within wedge ownerWedge of the owner,
+	 * or on an edge of the domain. Both lie in wedge wedge of the site.
+	 */
+	private static final class Piece {
+		/* Angle of the start from the first spoke of the site, in [0, 2 pi) */
+		final double start;
+		final double x, y;
+		final int owner;
+		final int wedge, ownerWedge;
+		/* Bisector conic, or line of the edge of the domain */
+		final double[] q;
+
+		Piece(double start, double x, double y, int owner, int wedge, int ownerWedge, double[] q) {
+			this.start = start;
+			this.x = x;
+			this.y = y;
+			this.owner = owner;
+			this.wedge = wedge;
+			this.ownerWedge = ownerWedge;
+			this.q = q;
+		}
+	}
+
+	/*
+	 * Arc of a bisector on conic q, from (x0, y0) at angle start to (x1, y1) at
+	 * angle end around the site, within wedge wedge of the site and ownerWedge
+	 * of the other site.
+	 */
+	private static final class Arc {
+		int wedge;
+		final int ownerWedge;
+		final double[] q;
+		double start, end;
+		double x0, y0, x1, y1;
+
+		/* Arc followed in direction dir from (px, py) at angle to (nx, ny) at next */
+		Arc(int dir, int wedge, int ownerWedge, double[] q, double px, double py, double angle, double nx, double ny,
+				double next) {
+			this.wedge = wedge;
+			this.ownerWedge = ownerWedge;
+			this.q = q;
+			if (dir > 0) {
+				this.start = angle;
+				this.x0 = px;
+				this.y0 = py;
+				this.end = next;
+				this.x1 = nx;
+				this.y1 = ny;
+			} else {
+				this.start = next;
+				this.x0 = nx;
+				this.y0 = ny;
+				this.end = angle;
+				this.x1 = px;
+				this.y1 = py;
+			}
+		}
+	}
+}
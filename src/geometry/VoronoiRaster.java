@@ -0,0 +1,159 @@
+package geometry;
+
+import java.awt.geom.Point2D;
+import java.util.Arrays;
+
+/*
+ * Label buffer of a brute-force Voronoi diagram. The domain's bounding box is
+ * sampled on a regular grid of spacing stride, and for each grid node the index
+ * of the nearest center point is stored in a flat int array (row major). Nodes
+ * that fall outside of the convex domain are labelled OUTSIDE.
+ */
+public class VoronoiRaster {
+	/* Label of grid nodes outside of the domain */
+	public static final int OUTSIDE = -1;
+
+	private final int originX, originY, stride;
+	private final int width, height;
+	private final int[] labels;
+	/*
+	 * Bounding box of the nodes of each site, as minI, minJ, maxI, maxJ. The
+	 * boxes may be larger than the cells after incremental updates.
+	 */
+	private int[] bounds = new int[0];
+
+	public VoronoiRaster(int originX, int originY, int width, int height, int stride) {
+		this.originX = originX;
+		this.originY = originY;
+		this.width = Math.max(0, width);
+		this.height = Math.max(0, height);
+		this.stride = stride;
+		this.labels = new int[this.width * this.height];
+	}
+
+	public int getOriginX() {
+		return this.originX;
+	}
+
+	public int getOriginY() {
+		return this.originY;
+	}
+
+	public int getWidth() {
+		return this.width;
+	}
+
+	public int getHeight() {
+		return this.height;
+	}
+
+	public int getStride() {
+		return this.stride;
+	}
+
+	/* Number of grid nodes */
+	public int size() {
+		return this.labels.length;
+	}
+
+	/* x coordinate of column i */
+	public int x(int i) {
+		return this.originX + i * this.stride;
+	}
+
+	/* y coordinate of row j */
+	public int y(int j) {
+		return this.originY + j * this.stride;
+	}
+
+	/* Label of the grid node at column i, row j */
+	public int label(int i, int j) {
+		return this.labels[j * this.width + i];
+	}
+
+	public void setLabel(int i, int j, int label) {
+		this.labels[j * this.width + i] = label;
+	}
+
+	/* Direct access to the row major label buffer */
+	public int[] getLabels() {
+		return this.labels;
+	}
+
+	/*
+	 * Label of the grid node closest to (x, y), or OUTSIDE if (x, y) is not
+	 * covered by the grid.
+	 */
+	public int labelAt(double x, double y) {
+		int i = (int) Math.round((x - this.originX) / this.stride);
+		int j = (int) Math.round((y - this.originY) / this.stride);
+		if (i < 0 || j < 0 || i >= this.width || j >= this.height) {
+			return OUTSIDE;
+		}
+		return this.labels[j * this.width + i];
+	}
+
+	public int labelAt(Point2D.Double p) {
+		return labelAt(p.x, p.y);
+	}
+
+	/*
+	 * Bounding box of the grid nodes labelled site, as {minI, minJ, maxI, maxJ}.
+	 * The box is empty (minI > maxI) if the site has no node.
+	 */
+	public int[] getCellBounds(int site) {
+		return new int[] { this.bounds[4 * site], this.bounds[4 * site + 1], this.bounds[4 * site + 2],
+				this.bounds[4 * site + 3] };
+	}
+
+	/* Computes the bounding boxes of the cells of sites [0, count) */
+	void computeBounds(int count) {
+		this.bounds = new int[4 * count];
+		for (int site = 0; site < count; site++) {
+			clearBounds(site);
+		}
+		for (int j = 0; j < this.height; j++) {
+			for (int i = 0; i < this.width; i++) {
+				int label = this.labels[j * this.width + i];
+				if (label >= 0 && label < count) {
+					includeInBounds(label, i, j);
+				}
+			}
+		}
+	}
+
+	/* Makes room for the bounding boxes of sites [0, count) */
+	void setSiteCount(int count) {
+		int old = this.bounds.length / 4;
+		this.bounds = Arrays.copyOf(this.bounds, 4 * count);
+		for (int site = old; site < count; site++) {
+			clearBounds(site);
+		}
+	}
+
+	void clearBounds(int site) {
+		this.bounds[4 * site] = Integer.MAX_VALUE;
+		this.bounds[4 * site + 1] = Integer.MAX_VALUE;
+		this.bounds[4 * site + 2] = Integer.MIN_VALUE;
+		this.bounds[4 * site + 3] = Integer.MIN_VALUE;
+	}
+
+	/* Grows the bounding box of a site to contain node (i, j) */
+	void includeInBounds(int site, int i, int j) {
+		int k = 4 * site;
+		if (i < this.bounds[k])
+			this.bounds[k] = i;
+		if (j < this.bounds[k + 1])
+			this.bounds[k + 1] = j;
+		if (i > this.bounds[k + 2])
+			this.bounds[k + 2] = i;
+		if (j > this.bounds[k + 3])
+			this.bounds[k + 3] = j;
+	}
+
+	/* Gives the bounding box of site from to site to */
+	void moveBounds(int from, int to) {
+		System.arraycopy(this.bounds, 4 * from, this.bounds, 4 * to, 4);
+		clearBounds(from);
+	}
+}
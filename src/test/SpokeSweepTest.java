@@ -0,0 +1,42 @@
+package test;
+
+import geometry.Convex;
+import geometry.Util;
+import trapmap.Segment;
+
+import java.awt.geom.Point2D;
+import java.util.Arrays;
+import java.util.List;
+
+public class SpokeSweepTest {
+	/*
+	 * Spokes of sites on the boundary: on an edge, where some spokes have no
+	 * exit point and some run along the edge, and on a vertex, which has no
+	 * spoke to that vertex. The sweep used to fail on the empty spoke halves.
+	 */
+	public static void testBoundarySites() {
+		Convex c = new Convex();
+		c.addPoint(new Point2D.Double(100d, 100d));
+		c.addPoint(new Point2D.Double(500d, 120d));
+		c.addPoint(new Point2D.Double(520d, 480d));
+		c.addPoint(new Point2D.Double(90d, 450d));
+		c.addPoint(new Point2D.Double(300d, 40d));
+		Point2D.Double[] hull = Arrays.copyOf(c.convexHull, c.convexHull.length - 1);
+
+		Point2D.Double inside = new Point2D.Double(310d, 300d);
+		Point2D.Double[] boundary = { new Point2D.Double(200d, 70d), new Point2D.Double(305d, 465d),
+				new Point2D.Double(100d, 100d) };
+		for (Point2D.Double site : boundary) {
+			List<Segment> segs = c.spokeSegments(hull, new Point2D.Double[] { inside, site });
+			for (Segment s : segs) {
+				if (s.getLeftPoint().equals(s.getRightPoint()))
+					throw new IllegalStateException("empty spoke segment at " + Util.printCoordinate(site));
+			}
+			System.out.println(Util.printCoordinate(site) + ": " + segs.size() + " segments");
+		}
+	}
+
+	public static void main(String[] argv) {
+		SpokeSweepTest.testBoundarySites();
+	}
+}
@@ -22,9 +22,9 @@ public class Segment {
 	PShape faceA; // segment will always have one face
 	PShape faceB; // possible (such as mesh)
 	
-	// for TrapMap
-//	private Point2D.Double site1;
-//	private Point2D.Double site2;
+	// for TrapMap: Voronoi cells above and below the segment, null and -1 if none
+	private Point2D.Double siteAbove, siteBelow;
+	private int siteAboveIndex = -1, siteBelowIndex = -1;
 	
 	// for sector graph
 //	private Segment edge;
@@ -154,42 +154,57 @@ public class Segment {
 	}
 	
 	/**
-	 * Get the site1 label of the Segment
+	 * Sets the sites of the Voronoi cells on both sides of the segment. A
+	 * vertical segment has the cell to its left above it and the cell to its
+	 * right below it, as TrapMap orders points by x, then by y.
 	 * 
-	 * @return site1 label
+	 * @param above      site of the cell above the segment, or null
+	 * @param aboveIndex index of that site, or -1
+	 * @param below      site of the cell below the segment, or null
+	 * @param belowIndex index of that site, or -1
 	 */
-//	public Point2D.Double getSite1() {
-//		return this.site1;
-//	}
+	public void setSites(Point2D.Double above, int aboveIndex, Point2D.Double below, int belowIndex) {
+		this.siteAbove = above;
+		this.siteAboveIndex = aboveIndex;
+		this.siteBelow = below;
+		this.siteBelowIndex = belowIndex;
+	}
 
 	/**
-	 * Get the site2 label of the Segment
+	 * Get the site of the Voronoi cell above the segment
 	 * 
-	 * @return site2 label
+	 * @return the site, or null if there is none
 	 */
-//	public Point2D.Double getSite2() {
-//		return this.site2;
-//	}
+	public Point2D.Double getSiteAbove() {
+		return this.siteAbove;
+	}
 
 	/**
-	 * Updates the site1 label to the new site p
+	 * Get the index of the site of the Voronoi cell above the segment
 	 * 
-	 * @param p1, the new site to update site1
+	 * @return the site index, or -1 if there is none
 	 */
-//	public void setSites(Point2D.Double p1) {
-//		this.site1 = p1;
-//	}
+	public int getSiteAboveIndex() {
+		return this.siteAboveIndex;
+	}
 
 	/**
-	 * Updates the site1 label to the new site p1, and updates the site2 label to the new site p2
+	 * Get the site of the Voronoi cell below the segment
 	 * 
-	 * @param p1, the new site to update site1
-	 * @param p2, the new site to update site2
+	 * @return the site, or null if there is none
 	 */
-//	public void setSites(Point2D.Double p1, Point2D.Double p2) {
-//		this.site1 = p1;
-//		this.site2 = p2;
-//	}
+	public Point2D.Double getSiteBelow() {
+		return this.siteBelow;
+	}
+
+	/**
+	 * Get the index of the site of the Voronoi cell below the segment
+	 * 
+	 * @return the site index, or -1 if there is none
+	 */
+	public int getSiteBelowIndex() {
+		return this.siteBelowIndex;
+	}
 	
 //	public Segment getEdge() {
 //		return this.edge;
@@ -1,12 +1,17 @@
 package trapmap;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import trapmap.graph.Leaf;
 import trapmap.graph.Node;
@@ -35,6 +40,31 @@ public class TrapMap {
 
 	private PVector leftBound, rightBound; // coordinates of bounding box: lower left & upper right corners
 
+	/*
+	 * The history graph compiled into arrays for queries (see compile()). Node i
+	 * is an x-node if xNode[i], testing the point (coords[4i], coords[4i+1]), or
+	 * else a y-node, testing the segment from (coords[4i], coords[4i+1]) to
+	 * (coords[4i+2], coords[4i+3]). Its children are children[2i] (left) and
+	 * children[2i+1] (right); a child ~j < 0 is the leaf of leafData[j].
+	 */
+	private boolean[] xNode;
+	private double[] coords;
+	private int[] children;
+	private Trapezoid[] leafData;
+	private int rootIndex;
+	private int[] faceIds; // face of each trapezoid, built lazily
+
+	/**
+	 * Batches larger than this are split across the common fork-join pool.
+	 */
+	private static final int BATCH_CHUNK = 1 << 13;
+	/**
+	 * Sorted batches are ordered along a Hilbert curve over a grid of
+	 * 2^HILBERT_ORDER cells a side covering the bounding box. Curve indices then
+	 * fit in 30 bits.
+	 */
+	private static final int HILBERT_ORDER = 15;
+
 	/**
 	 * Builds a trapezoidal map from a collection of line segments (or a planar
 	 * straight-line graph).
@@ -153,7 +183,7 @@ public class TrapMap {
 				top.setLeaf(topN);
 				Leaf bottomN = new Leaf(bottom);
 				bottom.setLeaf(bottomN);
-				if (!(lefty.hasZeroWidth() || righty.hasZeroWidth())) {
+				if (!(lefty.isEmpty() || righty.isEmpty())) {
 
 					// link all the nodes for the trapezoids
 					ll.setLeftChildNode(leftyN);
@@ -188,7 +218,7 @@ public class TrapMap {
 					lowerLink(bottom, righty);
 					upperLink(righty, old.getUpperRightNeighbor());
 					upperLink(top, righty);
-				} else if (lefty.hasZeroWidth() && !righty.hasZeroWidth()) {// only left has zero width
+				} else if (lefty.isEmpty() && !righty.isEmpty()) {// only left is empty
 					// link all the nodes for the trapezoids
 					rr.setLeftChildNode(ss);
 					rr.setRightChildNode(rightyN);
@@ -218,7 +248,7 @@ public class TrapMap {
 					lowerLink(bottom, righty);
 					upperLink(righty, old.getUpperRightNeighbor());
 					upperLink(top, righty);
-				} else if (righty.hasZeroWidth() && !lefty.hasZeroWidth()) { // only right has zero width
+				} else if (righty.isEmpty() && !lefty.isEmpty()) { // only right is empty
 					// link all the nodes for the trapezoids
 					ll.setLeftChildNode(leftyN);
 					ll.setRightChildNode(ss);
@@ -249,7 +279,7 @@ public class TrapMap {
 					lowerLink(bottom, old.getLowerRightNeighbor());
 					upperLink(top, old.getUpperRightNeighbor());
 				} else {
-					// both have zero width
+					// both are empty
 
 					// build the search structure
 					ss.setLeftChildNode(topN);
@@ -460,7 +490,8 @@ public class TrapMap {
 					lowerLink(leftmost, botArr[0]);
 					upperLink(leftmost, topArr[0]);
 				} else // link top & bot arr with appropriate left links of oldLeft
-				if (oldLeft.getUpperBound().getLeftPoint().equals(oldLeft.getLowerBound().getLeftPoint())) {
+				if (oldLeft.getUpperBound().getLeftPoint().equals(oldLeft.getLowerBound().getLeftPoint())
+						&& oldLeft.getUpperBound().getLeftPoint().equals(oldLeft.getLeftBound())) {
 					// triangles, so no neighbors to worry about
 				} else if (oldLeft.getUpperBound().getLeftPoint().equals(oldLeft.getLeftBound())) {
 					// upper half degenerates to a triangle
@@ -480,7 +511,8 @@ public class TrapMap {
 					lowerLink(botArr[botArr.length - 1], rightmost);
 					upperLink(topArr[topArr.length - 1], rightmost);
 				} else // link the top & bot arr with the appropriate right links of oldRight
-				if (oldRight.getUpperBound().getRightPoint().equals(oldRight.getLowerBound().getRightPoint())) {
+				if (oldRight.getUpperBound().getRightPoint().equals(oldRight.getLowerBound().getRightPoint())
+						&& oldRight.getUpperBound().getRightPoint().equals(oldRight.getRightBound())) {
 					// triangles, hence no right neighbors
 				} else if (oldRight.getUpperBound().getRightPoint().equals(oldRight.getRightBound())) {
 					// upper half degenerates to a triangle
@@ -562,6 +594,71 @@ public class TrapMap {
 				}
 			}
 		}
+
+		// 3. Flatten the history graph for queries
+		compile();
+	}
+
+	/**
+	 * Flattens the history graph into arrays, numbering the nodes depth first
+	 * so that a query mostly reads nearby entries. Queries then run a loop over
+	 * primitive arrays instead of following node objects and testing their
+	 * type, and read the segment end points without going through PVectors.
+	 * Nodes shared by several parents are numbered once.
+	 */
+	private void compile() {
+		final IdentityHashMap<Node, Integer> index = new IdentityHashMap<>();
+		final List<Node> nodes = new ArrayList<>();
+		final List<Trapezoid> leaves = new ArrayList<>();
+		rootIndex = number(root, index, nodes, leaves);
+
+		final int n = nodes.size();
+		xNode = new boolean[n];
+		coords = new double[4 * n];
+		children = new int[2 * n];
+		for (int i = 0; i < n; i++) {
+			final Node node = nodes.get(i);
+			if (node instanceof XNode) {
+				final PVector p = ((XNode) node).getData();
+				xNode[i] = true;
+				coords[4 * i] = p.x;
+				coords[4 * i + 1] = p.y;
+			} else {
+				final Segment s = ((YNode) node).getData();
+				coords[4 * i] = s.getLeftPoint().x;
+				coords[4 * i + 1] = s.getLeftPoint().y;
+				coords[4 * i + 2] = s.getRightPoint().x;
+				coords[4 * i + 3] = s.getRightPoint().y;
+			}
+			children[2 * i] = index.get(node.getLeftChildNode());
+			children[2 * i + 1] = index.get(node.getRightChildNode());
+		}
+		leafData = leaves.toArray(new Trapezoid[leaves.size()]);
+	}
+
+	/**
+	 * Numbers the node and its descendants in preorder, inner nodes from 0 up
+	 * and leaves from -1 down. The graph has logarithmic expected depth, so
+	 * the recursion stays shallow.
+	 */
+	private static int number(Node node, IdentityHashMap<Node, Integer> index, List<Node> nodes, List<Trapezoid> leaves) {
+		final Integer known = index.get(node);
+		if (known != null) {
+			return known;
+		}
+		final int i;
+		if (node instanceof Leaf) {
+			i = ~leaves.size();
+			leaves.add(((Leaf) node).getData());
+			index.put(node, i);
+		} else {
+			i = nodes.size();
+			nodes.add(node);
+			index.put(node, i);
+			number(node.getLeftChildNode(), index, nodes, leaves);
+			number(node.getRightChildNode(), index, nodes, leaves);
+		}
+		return i;
 	}
 
 	/**
@@ -684,24 +781,254 @@ public class TrapMap {
 	 *         if none contain the point)
 	 */
 	public Trapezoid findNearestTrapezoid(double x, double y) {
-		Node current = root;
-		while (!(current instanceof Leaf)) {
-			if (current instanceof XNode) { // point query: does p lie to the left or the right of a given point?
-				final int val = compareTo(x, y, ((XNode) current).getData());
-				if (val < 0) {
-					current = current.getLeftChildNode();
-				} else {
-					current = current.getRightChildNode();
+		return leafData[findNearestTrapezoidId(x, y)];
+	}
+
+	/**
+	 * Locates the trapezoid which contains the query point, or the nearest one,
+	 * like {@link #findNearestTrapezoid(double, double) findNearestTrapezoid()},
+	 * and returns its ID.
+	 * 
+	 * @param x x-coordinate of query point
+	 * @param y y-coordinate of query point
+	 * @return ID of the trapezoid, see {@link #getTrapezoid(int) getTrapezoid()}
+	 */
+	public int findNearestTrapezoidId(double x, double y) {
+		final boolean[] xNode = this.xNode;
+		final double[] coords = this.coords;
+		final int[] children = this.children;
+		int i = rootIndex;
+		while (i >= 0) {
+			final int c = 4 * i;
+			final boolean left;
+			if (xNode[i]) { // point query: does p lie to the left or the right of a given point?
+				// Handle degeneracies by using comparison rules to mimic x-coordinate shearing
+				left = x < coords[c] || (x == coords[c] && y < coords[c + 1]);
+			} else { // segment query: is p above the segment, at the x of p?
+				left = (x - coords[c]) * coords[c + 3] + (coords[c + 2] - x) * coords[c + 1] < y * (coords[c + 2] - coords[c]);
+			}
+			i = children[left ? 2 * i : 2 * i + 1];
+		}
+		return ~i;
+	}
+
+	/**
+	 * Returns the number of trapezoid IDs: IDs go from 0 to this number
+	 * excluded. Unlike {@link #getAllTrapezoids()}, this counts degenerate
+	 * trapezoids as well.
+	 * 
+	 * @return number of trapezoids in the search structure
+	 */
+	public int getTrapezoidCount() {
+		return leafData.length;
+	}
+
+	/**
+	 * Returns the trapezoid of an ID given by a query.
+	 * 
+	 * @param id trapezoid ID
+	 * @return the trapezoid
+	 */
+	public Trapezoid getTrapezoid(int id) {
+		return leafData[id];
+	}
+
+	/**
+	 * Returns the face of a trapezoid. Trapezoids are in the same face when
+	 * they are linked by neighbors, as in
+	 * {@link #findFaceTrapezoids(double, double) findFaceTrapezoids()}. Faces
+	 * are numbered from 0, and are computed on first use.
+	 * 
+	 * @param id trapezoid ID
+	 * @return face ID of the trapezoid
+	 */
+	public int getFaceId(int id) {
+		return faceIds()[id];
+	}
+
+	private int[] faceIds() {
+		if (faceIds == null) {
+			final IdentityHashMap<Trapezoid, Integer> ids = new IdentityHashMap<>(2 * leafData.length);
+			for (int i = 0; i < leafData.length; i++) {
+				ids.put(leafData[i], i);
+			}
+			final int[] faces = new int[leafData.length];
+			Arrays.fill(faces, -1);
+			final ArrayDeque<Trapezoid> stack = new ArrayDeque<>();
+			int face = 0;
+			for (int i = 0; i < leafData.length; i++) {
+				if (faces[i] >= 0) {
+					continue;
 				}
-			} else // we are searching for a point, without segment information
-					// segment query: does p lie above or below a given line segment?
-			if (isPointAboveLine(x, y, ((YNode) current).getData())) {
-				current = current.getLeftChildNode();
+				faces[i] = face;
+				stack.push(leafData[i]);
+				while (!stack.isEmpty()) {
+					final Trapezoid t = stack.pop();
+					for (Trapezoid n : new Trapezoid[] { t.getLowerLeftNeighbor(), t.getLowerRightNeighbor(),
+							t.getUpperLeftNeighbor(), t.getUpperRightNeighbor() }) {
+						final Integer j = (n == null) ? null : ids.get(n);
+						if (j != null && faces[j] < 0) {
+							faces[j] = face;
+							stack.push(n);
+						}
+					}
+				}
+				face++;
+			}
+			faceIds = faces;
+		}
+		return faceIds;
+	}
+
+	/**
+	 * Locates a batch of query points, writing for each the ID of the trapezoid
+	 * that contains it, or -1 if it lies outside the bounding box (as
+	 * {@link #findContainingTrapezoid(double, double) findContainingTrapezoid()}
+	 * returns null).
+	 * <p>
+	 * Large batches are split across the common fork-join pool. If sort is set,
+	 * the queries are first ordered along a Hilbert curve, so that consecutive
+	 * queries walk mostly the same nodes of the search structure. The sort costs
+	 * about as much as the queries, so it only pays off for scattered queries
+	 * on maps too large for the cache, not for queries already in scanline
+	 * order such as raster pixels.
+	 * 
+	 * @param xs    x-coordinates of the query points
+	 * @param ys    y-coordinates of the query points
+	 * @param count number of query points
+	 * @param ids   receives the trapezoid IDs, see {@link #getTrapezoid(int)
+	 *              getTrapezoid()}
+	 * @param sort  whether to order the queries along a space-filling curve
+	 */
+	public void findContainingTrapezoidIds(double[] xs, double[] ys, int count, int[] ids, boolean sort) {
+		locateAll(xs, ys, count, ids, sort, false);
+	}
+
+	/**
+	 * Locates a batch of query points like
+	 * {@link #findContainingTrapezoidIds(double[], double[], int, int[], boolean)
+	 * findContainingTrapezoidIds()}, but writes face IDs (see
+	 * {@link #getFaceId(int) getFaceId()}) instead of trapezoid IDs.
+	 * 
+	 * @param xs    x-coordinates of the query points
+	 * @param ys    y-coordinates of the query points
+	 * @param count number of query points
+	 * @param ids   receives the face IDs, or -1 outside the bounding box
+	 * @param sort  whether to order the queries along a space-filling curve
+	 */
+	public void findFaceIds(double[] xs, double[] ys, int count, int[] ids, boolean sort) {
+		faceIds(); // built before the queries share it between threads
+		locateAll(xs, ys, count, ids, sort, true);
+	}
+
+	private void locateAll(double[] xs, double[] ys, int count, int[] ids, boolean sort, boolean faces) {
+		final int[] order = sort ? hilbertOrder(xs, ys, count) : null;
+		final Batch batch = new Batch(xs, ys, order, ids, faces, 0, count);
+		if (count > BATCH_CHUNK) {
+			ForkJoinPool.commonPool().invoke(batch);
+		} else {
+			batch.locate();
+		}
+	}
+
+	/**
+	 * Orders the query points by their index along a Hilbert curve over the
+	 * bounding box. The curve index and the query index are packed in a long,
+	 * so that the order is sorted without boxing.
+	 */
+	private int[] hilbertOrder(double[] xs, double[] ys, int count) {
+		final int side = 1 << HILBERT_ORDER;
+		final double w = Math.max(rightBound.x - leftBound.x, Float.MIN_VALUE);
+		final double h = Math.max(rightBound.y - leftBound.y, Float.MIN_VALUE);
+		final long[] keys = new long[count];
+		for (int i = 0; i < count; i++) {
+			final int u = (int) Math.max(0, Math.min(side - 1, (xs[i] - leftBound.x) / w * side));
+			final int v = (int) Math.max(0, Math.min(side - 1, (ys[i] - leftBound.y) / h * side));
+			keys[i] = ((long) hilbertIndex(u, v) << 32) | i;
+		}
+		if (count > BATCH_CHUNK) {
+			Arrays.parallelSort(keys);
+		} else {
+			Arrays.sort(keys);
+		}
+		final int[] order = new int[count];
+		for (int i = 0; i < count; i++) {
+			order[i] = (int) keys[i];
+		}
+		return order;
+	}
+
+	/**
+	 * Index of the cell (u, v) along the Hilbert curve of order HILBERT_ORDER.
+	 */
+	private static int hilbertIndex(int u, int v) {
+		int d = 0;
+		for (int s = 1 << (HILBERT_ORDER - 1); s > 0; s >>>= 1) {
+			final int ru = (u & s) != 0 ? 1 : 0;
+			final int rv = (v & s) != 0 ? 1 : 0;
+			d += s * s * ((3 * ru) ^ rv);
+			// rotate the quadrant so that the curve stays continuous
+			if (rv == 0) {
+				if (ru == 1) {
+					u = s - 1 - u;
+					v = s - 1 - v;
+				}
+				final int t = u;
+				u = v;
+				v = t;
+			}
+		}
+		return d;
+	}
+
+	/**
+	 * Locates the queries of positions [from, to) of a batch, splitting the
+	 * range in two while it is too large.
+	 */
+	private final class Batch extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final double[] xs, ys;
+		private final int[] order; // query of each position, or null for the identity
+		private final int[] ids;
+		private final boolean faces;
+		private final int from, to;
+
+		Batch(double[] xs, double[] ys, int[] order, int[] ids, boolean faces, int from, int to) {
+			this.xs = xs;
+			this.ys = ys;
+			this.order = order;
+			this.ids = ids;
+			this.faces = faces;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= BATCH_CHUNK) {
+				locate();
 			} else {
-				current = current.getRightChildNode();
+				final int mid = (from + to) >>> 1;
+				invokeAll(new Batch(xs, ys, order, ids, faces, from, mid), new Batch(xs, ys, order, ids, faces, mid, to));
+			}
+		}
+
+		void locate() {
+			final int[] faceIds = faces ? TrapMap.this.faceIds : null;
+			final float minX = leftBound.x, minY = leftBound.y, maxX = rightBound.x, maxY = rightBound.y;
+			for (int k = from; k < to; k++) {
+				final int i = (order == null) ? k : order[k];
+				final double x = xs[i], y = ys[i];
+				int id = -1;
+				if (x >= minX && x <= maxX && y >= minY && y <= maxY) {
+					id = findNearestTrapezoidId(x, y);
+					if (faceIds != null) {
+						id = faceIds[id];
+					}
+				}
+				ids[i] = id;
 			}
 		}
-		return ((Leaf) current).getData();
 	}
 
 	/**
@@ -798,20 +1125,6 @@ public class TrapMap {
 				* (s.getRightPoint().x - s.getLeftPoint().x);
 	}
 
-	/**
-	 * Checks to see if a point is above the segment. Works by calculating y of the
-	 * segment at x of the point
-	 *
-	 * @param x x-coordinate of point of interest
-	 * @param y y-coordinate of point of interest
-	 * @param s The segment of interest
-	 * @return true if on or above the segment; false otherwise
-	 */
-	private static boolean isPointAboveLine(double x, double y, Segment s) {
-		return (x - s.getLeftPoint().x) * s.getRightPoint().y + (s.getRightPoint().x - x) * s.getLeftPoint().y < y
-				* (s.getRightPoint().x - s.getLeftPoint().x);
-	}
-
 	/**
 	 * Checks if the input point on the given old segment lies above or below the
 	 * new segment. If the input PVector lies on the new segment, we determine
@@ -41,9 +41,6 @@ public final class Trapezoid {
 	private Segment botSeg;
 	private PShape poly; // polygonal representation of trapezoid
 	private List<PVector> polyVertices;
-	
-	// determine Voronoi cell Trapezoid belongs to
-	private Point2D.Double site = null;
 
 	/**
 	 * Boolean flag that indicates whether the mapping to the polygonal face this
@@ -77,27 +74,6 @@ public final class Trapezoid {
 		neighborUR = null;
 		neighborLR = null;
 		owner = null;
-		
-//		if(topSeg.getSite1() != null && botSeg.getSite1() != null) {
-//			if(topSeg.getSite1().equals(botSeg.getSite1()))
-//				this.site = topSeg.getSite1();
-//
-//			else if(topSeg.getSite2() != null) {
-//				if(topSeg.getSite2().equals(botSeg.getSite1())) 
-//					this.site = topSeg.getSite2();
-//			}
-//			
-//			else if(botSeg.getSite2() != null) {
-//				if(topSeg.getSite1().equals(botSeg.getSite2()))
-//					this.site = topSeg.getSite1();
-//				
-//			}
-//			
-//			else if(topSeg.getSite2() != null && botSeg.getSite2() != null) {
-//				if(topSeg.getSite2().equals(botSeg.getSite2())) 
-//					this.site = topSeg.getSite2();
-//			}
-//		}
 	}
 
 	/**
@@ -164,8 +140,23 @@ public final class Trapezoid {
 		return neighborUR;
 	}
 	
+	/**
+	 * Gets the site whose Voronoi cell contains this trapezoid, the site of the
+	 * cell below its upper segment.
+	 * 
+	 * @return the site, or null if the trapezoid is outside of all cells
+	 */
 	public Point2D.Double getSite() {
-		return this.site;
+		return topSeg.getSiteBelow();
+	}
+
+	/**
+	 * Gets the index of the site whose Voronoi cell contains this trapezoid.
+	 * 
+	 * @return the site index, or -1 if the trapezoid is outside of all cells
+	 */
+	public int getSiteIndex() {
+		return topSeg.getSiteBelowIndex();
 	}
 
 	void setLowerLeftNeighbor(Trapezoid t) {
@@ -297,6 +288,18 @@ public final class Trapezoid {
 		return polygon;
 	}
 
+	/**
+	 * Return true if this trapezoid is empty. Points are ordered by x, then by
+	 * y, as if the plane were sheared by an infinitesimal amount, so a
+	 * trapezoid between two points of a vertical line is not empty: it lies
+	 * along the vertical segments there.
+	 * 
+	 * @return True if both bounding points are the same point
+	 */
+	boolean isEmpty() {
+		return leftP.x == rightP.x && leftP.y == rightP.y;
+	}
+
 	/**
 	 * Return true if this trapezoid has zero width
 	 * 
@@ -317,10 +320,10 @@ public final class Trapezoid {
 		final PVector bl = botSeg.intersect(leftP.x);
 		final PVector br = botSeg.intersect(rightP.x);
 		String strSite = "";
-		if(this.site == null)
+		if(getSite() == null)
 			strSite = "null";
 		else
-			strSite = Util.printCoordinate(this.site);
+			strSite = Util.printCoordinate(getSite());
 
 		return String.join(", ", tl.toString(), tr.toString(), br.toString(), bl.toString(), strSite);
 	}